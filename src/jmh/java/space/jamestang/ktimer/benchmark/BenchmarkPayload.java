@@ -0,0 +1,34 @@
+package space.jamestang.ktimer.benchmark;
+
+/**
+ * Payload shaped like a typical business object, with a description sized to the payload under test.
+ */
+public class BenchmarkPayload {
+
+    public String id;
+    public String name;
+    public String description;
+    public int value;
+    public boolean active;
+
+    public BenchmarkPayload() {
+    }
+
+    /**
+     * @param size small (about 100 bytes as JSON), medium (about 1 KB) or large (about 64 KB)
+     */
+    public static BenchmarkPayload of(String size) {
+        var payload = new BenchmarkPayload();
+        payload.id = "10086";
+        payload.name = "order-timeout";
+        payload.description = "x".repeat(switch (size) {
+            case "small" -> 16;
+            case "medium" -> 1024;
+            case "large" -> 64 * 1024;
+            default -> throw new IllegalArgumentException("Unknown payload size: " + size);
+        });
+        payload.value = 4396;
+        payload.active = true;
+        return payload;
+    }
+}
@@ -0,0 +1,48 @@
+package space.jamestang.ktimer.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jamestang.ktimer.message.JacksonMessageCodec;
+import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.MessageCodec;
+import space.jamestang.ktimer.message.TimerCallbackData;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decoding an inbound TIMER_CALLBACK frame, the work done on the I/O thread for every callback. The
+ * payload stays buffered, it's bound to its type when dispatched, see {@link DispatchBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DecodeBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String payloadSize;
+
+    @Param({"json", "smile"})
+    public String codecName;
+
+    private MessageCodec codec;
+    private byte[] frame;
+
+    @Setup
+    public void setUp() throws IOException {
+        codec = codecName.equals("json") ? JacksonMessageCodec.json() : JacksonMessageCodec.smile();
+        frame = codec.encode(callback("timer-1", BenchmarkPayload.of(payloadSize)));
+    }
+
+    @Benchmark
+    public KTimerMessage decodeTimerCallback() throws IOException {
+        return codec.decode(ByteBuffer.wrap(frame));
+    }
+
+    static KTimerMessage callback(String timerId, Object payload) {
+        long now = System.currentTimeMillis();
+        return new KTimerMessage("1.0", MessageType.TIMER_CALLBACK, "server-msg-1", "server", now,
+                new TimerCallbackData(timerId, now - 1000, now, 1, payload, payload.getClass().getCanonicalName()));
+    }
+}
@@ -0,0 +1,113 @@
+package space.jamestang.ktimer.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import space.jamestang.ktimer.core.*;
+import space.jamestang.ktimer.message.JacksonMessageCodec;
+import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.MessageBuilder;
+import space.jamestang.ktimer.message.MessageIdGenerator;
+import space.jamestang.ktimer.message.TimerCallbackData;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Dispatching a decoded TIMER_CALLBACK: resolving the payload class, binding the payload, running the
+ * handler and queuing and encoding its ACK. The handler runs on the calling thread, so queueing in the
+ * handler pool is left out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class DispatchBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String payloadSize;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private GenericMessageProcessor processor;
+    private KTimerMessage message;
+    private TimerCallbackData callbackData;
+    private Object encodedPayload;
+
+    @Setup
+    public void setUp(Blackhole blackhole) throws IOException {
+        var codec = JacksonMessageCodec.json();
+        Map<Class<?>, CallbackHandler<?>> handlers = new ConcurrentHashMap<>();
+        handlers.put(BenchmarkPayload.class, (CallbackHandler<BenchmarkPayload>) (payload, raw) -> blackhole.consume(payload));
+        var messages = new MessageBuilder(MessageIdGenerator.unique("bench"));
+        var ackBatcher = new AckBatcher("bench", messages, ack -> blackhole.consume(codec.encode(ack)), scheduler, 256, 5);
+        processor = new GenericMessageProcessor(
+                handlers,
+                new CallerRunsExecutor(),
+                new PendingRequests(new HashedWheelTimer("bench-ack-timer", 100, 512)),
+                new PayloadTypeResolver(handlers, getClass().getClassLoader(), codec.mapper(), 1024),
+                Map.of(),
+                null,
+                new CallbackQueue(10000, CallbackOverflowPolicy.BLOCK),
+                ackBatcher,
+                null,
+                new TimerTagIndex(),
+                new ClientMetrics(),
+                null);
+        message = codec.decode(ByteBuffer.wrap(codec.encode(
+                DecodeBenchmark.callback("timer-1", BenchmarkPayload.of(payloadSize)))));
+        callbackData = (TimerCallbackData) message.getData();
+        encodedPayload = callbackData.getPayload();
+    }
+
+    @TearDown
+    public void tearDown() {
+        scheduler.shutdownNow();
+    }
+
+    @Benchmark
+    public void dispatchTimerCallback() {
+        // Dispatching replaces the buffered payload with the bound one, put it back
+        callbackData.setPayload(encodedPayload);
+        processor.processMessage(message);
+    }
+
+    /**
+     * Runs every task on the calling thread.
+     */
+    private static class CallerRunsExecutor extends AbstractExecutorService {
+
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+
+        @Override
+        public void shutdown() {
+        }
+
+        @Override
+        public List<Runnable> shutdownNow() {
+            return List.of();
+        }
+
+        @Override
+        public boolean isShutdown() {
+            return false;
+        }
+
+        @Override
+        public boolean isTerminated() {
+            return false;
+        }
+
+        @Override
+        public boolean awaitTermination(long timeout, TimeUnit unit) {
+            return true;
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package space.jamestang.ktimer.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jamestang.ktimer.message.JacksonMessageCodec;
+import space.jamestang.ktimer.message.MessageBuilder;
+import space.jamestang.ktimer.message.MessageCodec;
+import space.jamestang.ktimer.message.MessageIdGenerator;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building and encoding a TIMER_REGISTER frame, the work done by scheduleTask before the frame is queued.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EncodeBenchmark {
+
+    @Param({"small", "medium", "large"})
+    public String payloadSize;
+
+    @Param({"json", "smile"})
+    public String codecName;
+
+    private final MessageBuilder messages = new MessageBuilder(MessageIdGenerator.unique("bench"));
+    private MessageCodec codec;
+    private BenchmarkPayload payload;
+
+    @Setup
+    public void setUp() {
+        codec = codecName.equals("json") ? JacksonMessageCodec.json() : JacksonMessageCodec.smile();
+        payload = BenchmarkPayload.of(payloadSize);
+    }
+
+    @Benchmark
+    public byte[] createAndEncodeTimerRegister() throws IOException {
+        return codec.encode(messages.createTimerRegister("bench", "timer-1", 60000L, payload,
+                BenchmarkPayload.class.getCanonicalName(), TimerPriority.NORMAL, null));
+    }
+}
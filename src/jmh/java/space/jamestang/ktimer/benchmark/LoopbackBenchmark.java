@@ -0,0 +1,73 @@
+package space.jamestang.ktimer.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jamestang.ktimer.KTimerClient;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.io.IOException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * End-to-end scheduleTask against an in-process server over loopback TCP: building, encoding, the writer
+ * thread, the socket, and decoding and matching the ACK.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class LoopbackBenchmark {
+
+    private static final int PIPELINE_DEPTH = 1000;
+
+    @Param({"small", "medium", "large"})
+    public String payloadSize;
+
+    private final AtomicLong timerIds = new AtomicLong();
+    private FakeKTimerServer server;
+    private KTimerClient client;
+    private BenchmarkPayload payload;
+
+    @Setup
+    public void setUp() throws IOException {
+        server = new FakeKTimerServer();
+        // Timers are only acknowledged, firing them would measure the callback path as well
+        server.setFireTimers(false);
+        client = new KTimerClient("127.0.0.1", server.port(), "bench", "bench-1", "bench");
+        client.registerCallbackHandler(BenchmarkPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+        payload = BenchmarkPayload.of(payloadSize);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        client.shutdown();
+        server.close();
+    }
+
+    /**
+     * One request at a time, each waits for its ACK.
+     */
+    @Benchmark
+    public void scheduleTask() throws IOException {
+        client.scheduleTask(nextTimerId(), payload, 3_600_000L, null, null);
+    }
+
+    /**
+     * {@value #PIPELINE_DEPTH} requests in flight, then waits for all ACKs.
+     */
+    @Benchmark
+    @OperationsPerInvocation(PIPELINE_DEPTH)
+    public void scheduleTaskAsyncPipelined() {
+        var acks = new CompletableFuture<?>[PIPELINE_DEPTH];
+        for (int i = 0; i < acks.length; i++) {
+            acks[i] = client.scheduleTaskAsync(nextTimerId(), payload, 3_600_000L, null, null);
+        }
+        CompletableFuture.allOf(acks).join();
+    }
+
+    private String nextTimerId() {
+        return "timer-" + timerIds.incrementAndGet();
+    }
+}
@@ -0,0 +1,29 @@
+package space.jamestang.ktimer.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import space.jamestang.ktimer.message.MessageIdGenerator;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Generating message IDs on every core at once, the former format-and-random IDs against
+ * {@link MessageIdGenerator#unique}. Every outbound message takes one ID, from any thread.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(Threads.MAX)
+public class MessageIdBenchmark {
+
+    private final MessageIdGenerator unique = MessageIdGenerator.unique("bench");
+
+    @Benchmark
+    public String formatAndRandom() {
+        return String.format("msg_%d_%04d", System.currentTimeMillis(), (int) (Math.random() * 10000));
+    }
+
+    @Benchmark
+    public String uniqueGenerator() {
+        return unique.nextId();
+    }
+}
@@ -0,0 +1,293 @@
+package space.jamestang.ktimer;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.core.AckBatcher;
+import space.jamestang.ktimer.core.ClientMetrics;
+import space.jamestang.ktimer.core.FlowControl;
+import space.jamestang.ktimer.core.GenericMessageProcessor;
+import space.jamestang.ktimer.core.MessageSender;
+import space.jamestang.ktimer.jfr.FrameReceivedEvent;
+import space.jamestang.ktimer.jfr.FrameSentEvent;
+import space.jamestang.ktimer.message.*;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+import space.jamestang.ktimer.transport.FrameListener;
+import space.jamestang.ktimer.transport.Transport;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * One registered connection to a server. Each has its own transport, ACK batcher and codec; the
+ * callback queue, handler pool and pending requests are shared by all connections of the client.
+ * Inbound frames are received on the I/O thread of the transport.
+ */
+@Slf4j
+class ClientConnection implements FrameListener, MessageSender {
+
+    // Read once, reported with the registration of every connection
+    private static final String ENVIRONMENT = System.getenv("KTIMER_ENVIRONMENT") != null
+            ? System.getenv("KTIMER_ENVIRONMENT") : "default";
+
+    /**
+     * What the connections of a client have in common.
+     *
+     * @param registrationTimeoutMillis how long the server may take to answer the registration
+     * @param ackBatchers               creates the ACK batcher of a connection, sending over it
+     * @param processors                creates the message processor of a connection from its ACK batcher and transport
+     * @param onLost                    called when a connection is closed by an error, not when it's closed by the client
+     */
+    record Settings(
+            @NonNull String clientId,
+            @NonNull String serviceName,
+            @NonNull String version,
+            @NonNull MessageBuilder messages,
+            @NonNull MessageCodec preferredCodec,
+            long registrationTimeoutMillis,
+            @NonNull ClientMetrics metrics,
+            @NonNull Function<MessageSender, AckBatcher> ackBatchers,
+            @NonNull BiFunction<AckBatcher, FlowControl, GenericMessageProcessor> processors,
+            @NonNull BiConsumer<ClientConnection, Throwable> onLost
+    ) {
+    }
+
+    final ServerEndpoint endpoint;
+    final String instanceId;
+    final Transport transport;
+    final AckBatcher ackBatcher;
+    private final GenericMessageProcessor messageProcessor;
+    private final Settings settings;
+    // JSON until the server agrees to preferredCodec, fixed once registered
+    volatile MessageCodec codec = JacksonMessageCodec.json();
+    private volatile CompletableFuture<KTimerMessage> handshake;
+    // System.nanoTime() of the last frame handed to the transport, any frame proves liveness
+    volatile long lastSentNanos;
+
+    ClientConnection(ServerEndpoint endpoint, String instanceId, Transport transport, Settings settings) {
+        this.endpoint = endpoint;
+        this.instanceId = instanceId;
+        this.transport = transport;
+        this.settings = settings;
+        this.ackBatcher = settings.ackBatchers().apply(this);
+        this.messageProcessor = settings.processors().apply(ackBatcher, transport);
+    }
+
+    /**
+     * Connects and registers with the server, negotiating the codec and ACK batching.
+     */
+    void register() throws IOException {
+        // The first frame from the server answers the registration, see onFrame
+        var registration = new CompletableFuture<KTimerMessage>();
+        handshake = registration;
+        transport.connect(endpoint.host, endpoint.port, this);
+        var metadata = readMetadata();
+
+        var preferredCodec = settings.preferredCodec();
+        var capabilities = new ArrayList<String>();
+        capabilities.add(MessageCodec.CAPABILITY_PREFIX + preferredCodec.name());
+        if (!preferredCodec.name().equals(codec.name())) {
+            capabilities.add(MessageCodec.CAPABILITY_PREFIX + codec.name());
+        }
+        capabilities.add(AckBatchData.CAPABILITY);
+        send(settings.messages().createClientRegister(settings.clientId(), instanceId, settings.serviceName(),
+                settings.version(), metadata, capabilities));
+
+        var response = awaitRegistration(registration);
+        if (response.getType() != MessageType.ACK) {
+            throw new IOException(response.getType().toString());
+        }
+        AckData ackData = (AckData) response.getData();
+        if (ackData.getStatus() != AckStatus.SUCCESS) {
+            throw new IOException("Failed to register client: " + ackData.getMessage());
+        }
+        ackBatcher.setBatchFrames(ackData.getDetails() != null
+                && Boolean.TRUE.equals(ackData.getDetails().get(AckBatchData.ACK_DETAIL)));
+        log.debug("Client instance {} registered with {}, using codec: {}", instanceId, endpoint, codec.name());
+    }
+
+    private KTimerMessage awaitRegistration(CompletableFuture<KTimerMessage> registration) throws IOException {
+        long timeoutMillis = settings.registrationTimeoutMillis();
+        try {
+            return registration.get(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while waiting for client registration");
+        } catch (ExecutionException e) {
+            throw new IOException("Connection lost during client registration", e.getCause());
+        } catch (TimeoutException e) {
+            throw new IOException("No response to client registration within " + timeoutMillis + "ms");
+        } finally {
+            handshake = null;
+        }
+    }
+
+    /**
+     * Switches to the preferred codec if the server accepted it in its registration ACK.
+     * Runs on the I/O thread before the next frame is decoded.
+     */
+    private void applyNegotiatedCodec(KTimerMessage response) {
+        var preferredCodec = settings.preferredCodec();
+        if (response.getData() instanceof AckData ack
+                && ack.getStatus() == AckStatus.SUCCESS
+                && ack.getDetails() != null
+                && preferredCodec.name().equals(ack.getDetails().get(MessageCodec.ACK_DETAIL))) {
+            codec = preferredCodec;
+        }
+    }
+
+    /**
+     * Describes the local end of the connection. The host name may take a reverse DNS lookup.
+     */
+    private ClientMetadata readMetadata() {
+        var localAddress = transport.localAddress();
+        return new ClientMetadata(
+                localAddress.getAddress().getHostName(),
+                localAddress.getAddress().getHostAddress(),
+                localAddress.getPort(),
+                ENVIRONMENT
+        );
+    }
+
+    byte[] encode(KTimerMessage message) throws IOException {
+        long start = System.nanoTime();
+        var encoded = codec.encode(message);
+        settings.metrics().frameEncoded(System.nanoTime() - start);
+        return encoded;
+    }
+
+    @Override
+    public void send(KTimerMessage message) throws IOException {
+        send(message, encode(message));
+    }
+
+    /**
+     * Hands an encoded message to the transport. Safe to call from any thread.
+     *
+     * @param message the message encoded in frame, for the metrics and JFR
+     */
+    void send(KTimerMessage message, @NonNull byte[] frame) throws IOException {
+        var event = new FrameSentEvent();
+        event.begin();
+        var type = message.getType();
+        transport.send(frame, priorityOf(message), type == MessageType.TIMER_CANCEL);
+        lastSentNanos = System.nanoTime();
+        settings.metrics().frameSent(type, frame.length);
+        if (event.shouldCommit()) {
+            event.messageType = type.name();
+            event.size = frame.length;
+            event.batchSize = batchSize(message.getData());
+            event.commit();
+        }
+    }
+
+    void close() {
+        transport.close();
+    }
+
+    @Override
+    public void onFrame(ByteBuffer frame) {
+        KTimerMessage message;
+        int length = frame.remaining();
+        var event = new FrameReceivedEvent();
+        event.begin();
+        long start = System.nanoTime();
+        try {
+            message = codec.decode(frame);
+        } catch (IOException e) {
+            reportError(e);
+            return;
+        }
+        settings.metrics().frameReceived(message.getType(), length, System.nanoTime() - start);
+        if (event.shouldCommit()) {
+            event.messageType = message.getType().name();
+            event.size = length;
+            event.commit();
+        }
+        if (message.getData() instanceof TimerCallbackData callback) {
+            settings.metrics().callbackReceived(callback, System.currentTimeMillis());
+        }
+        var registration = handshake;
+        if (registration != null) {
+            handshake = null;
+            applyNegotiatedCodec(message);
+            registration.complete(message);
+            return;
+        }
+        try {
+            messageProcessor.processMessage(message);
+        } catch (Exception e) {
+            reportError(e);
+        }
+    }
+
+    @Override
+    public void onClosed(Throwable cause) {
+        if (cause == null) {
+            return;
+        }
+        var registration = handshake;
+        if (registration != null) {
+            registration.completeExceptionally(cause);
+        }
+        settings.onLost().accept(this, cause);
+    }
+
+    private void reportError(Exception e) {
+        var errMsg = settings.messages().createError(settings.clientId(), "", e.getLocalizedMessage(), e.toString(), null, null);
+        log.error("Error receiving message: {}", e.getMessage(), e);
+        try {
+            send(errMsg);
+        } catch (IOException ex) {
+            if (ex instanceof SocketException) {
+                settings.onLost().accept(this, ex);
+            }
+        }
+    }
+
+    /**
+     * Lane of an outbound message. Timers go in the lane of their priority, a batch in the lane of its most
+     * urgent timer. Everything else is a small control message and goes first. That includes cancellations:
+     * they are sent ordered, so they never overtake the registration they cancel, and once that is sent
+     * they must not wait behind later registrations while their timer may fire.
+     */
+    private static TimerPriority priorityOf(KTimerMessage message) {
+        var data = message.getData();
+        if (data instanceof TimerRegisterData timer) {
+            return timer.getPriority();
+        }
+        if (data instanceof TimerRegisterBatchData batch && batch.getTimers() != null) {
+            return batch.getTimers().stream()
+                    .map(TimerRegisterData::getPriority)
+                    .map(priority -> priority != null ? priority : TimerPriority.NORMAL)
+                    .min(Comparator.naturalOrder())
+                    .orElse(TimerPriority.NORMAL);
+        }
+        return TimerPriority.HIGH;
+    }
+
+    /**
+     * Number of timers or ACKs a frame carries, for the JFR events.
+     */
+    private static int batchSize(MessageData data) {
+        if (data instanceof TimerRegisterBatchData batch && batch.getTimers() != null) {
+            return batch.getTimers().size();
+        }
+        if (data instanceof AckBatchData batch && batch.getAcks() != null) {
+            return batch.getAcks().size();
+        }
+        return 1;
+    }
+}
@@ -0,0 +1,20 @@
+package space.jamestang.ktimer;
+
+/**
+ * Connection state of a {@link KTimerClient}.
+ */
+public enum ConnectionState {
+    /**
+     * Not started yet, or shut down.
+     */
+    DISCONNECTED,
+    /**
+     * Registered with the server, or with at least one of the servers; requests are sent immediately.
+     */
+    CONNECTED,
+    /**
+     * The connections to all servers were lost and the client is reconnecting; requests are journaled and
+     * sent once reconnected.
+     */
+    RECONNECTING
+}
@@ -0,0 +1,16 @@
+package space.jamestang.ktimer;
+
+/**
+ * How a {@link KTimerClient} with several connections picks the connection for a request.
+ */
+public enum ConnectionStriping {
+    /**
+     * By hash of the timer ID, so all requests for a timer use the same connection and stay in order.
+     * Batches go to the least loaded connection.
+     */
+    TIMER_ID,
+    /**
+     * To the connection with the fewest frames waiting to be written.
+     */
+    LEAST_LOADED
+}
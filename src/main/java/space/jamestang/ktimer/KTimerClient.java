@@ -1,36 +1,66 @@
 package space.jamestang.ktimer;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.NonNull;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.core.AckBatcher;
+import space.jamestang.ktimer.core.Bulkhead;
 import space.jamestang.ktimer.core.CallbackHandler;
+import space.jamestang.ktimer.core.CallbackLanes;
+import space.jamestang.ktimer.core.CallbackOverflowPolicy;
+import space.jamestang.ktimer.core.CallbackQueue;
+import space.jamestang.ktimer.core.ClientMetrics;
 import space.jamestang.ktimer.core.GenericMessageProcessor;
+import space.jamestang.ktimer.core.HashedWheelTimer;
+import space.jamestang.ktimer.core.LocalTimers;
+import space.jamestang.ktimer.core.MappedOutbox;
+import space.jamestang.ktimer.core.PayloadTypeResolver;
+import space.jamestang.ktimer.core.PendingRequests;
+import space.jamestang.ktimer.core.RecentCallbackSet;
+import space.jamestang.ktimer.core.RequestJournal;
+import space.jamestang.ktimer.core.TimerTagIndex;
 import space.jamestang.ktimer.message.*;
 import space.jamestang.ktimer.message.enums.AckStatus;
-import space.jamestang.ktimer.message.enums.MessageType;
 import space.jamestang.ktimer.message.enums.TimerPriority;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
+import space.jamestang.ktimer.transport.BlockingSocketTransport;
+import space.jamestang.ktimer.transport.TransportFactory;
+import space.jamestang.ktimer.transport.TransportOptions;
 import java.io.IOException;
-import java.net.Socket;
-import java.net.SocketException;
+import java.lang.management.ManagementFactory;
+import javax.management.JMException;
+import javax.management.ObjectName;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ThreadPoolExecutor;
 
 @Slf4j
 public class KTimerClient {
 
+    // Shared by all clients in the JVM, one wheel thread tracks every in-flight request
+    private static final HashedWheelTimer ACK_TIMER = new HashedWheelTimer("ktimer-ack-timer", 100, 512);
+    // Shared by all clients in the JVM, heartbeats and ACK flushes are tiny and don't need a thread per client
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("ktimer-scheduler").daemon().factory());
+    // Disk usage reported with heartbeats is sampled at most this often
+    private static final long DISK_SAMPLE_INTERVAL_MILLIS = 60_000;
 
-    private final ObjectMapper serializer = new ObjectMapper().findAndRegisterModules();
-
-    @NonNull
-    private final String host;
-    @NonNull
-    private final Integer port;
+    // The servers, timers are spread over them by consistent hashing of their ID
+    private final List<ServerEndpoint> endpoints;
     @NonNull
     private final String clientId;
     @NonNull
@@ -45,21 +75,165 @@ public class KTimerClient {
     @Setter
     private String version = "1.0.0"; // Default version, can be overridden
 
-    private final Map<Class<?>, CallbackHandler<?>> callbackHandlers = new ConcurrentHashMap<>();
-    Socket socket;
-    private DataOutputStream out;
-    private DataInputStream in;
-    private volatile boolean running = false;
-    private volatile boolean connected = false;
-    private final Object connectionLock = new Object();
-    private final ExecutorService handlerThreadPool = Executors.newFixedThreadPool(8);
+    @Setter
+    private Integer writeQueueCapacity = 65536; // Max frames waiting for the writer thread
+    @Setter
+    private Integer maxWriteBatchSize = 1024; // Max frames coalesced into one flush
+    @Setter
+    private Long maxWriteLingerMicros = 0L; // How long the writer may wait to fill a batch, 0 flushes immediately
+    @Setter
+    private Long ackTimeoutMillis = 30000L; // How long scheduleTaskAsync waits for the server ACK
+    @Setter
+    private Integer maxBatchItems = 1000; // Max timers per TIMER_REGISTER_BATCH frame
+    @Setter
+    private Integer maxBatchFrameBytes = 1024 * 1024; // Max encoded size of a TIMER_REGISTER_BATCH frame
+    @Setter
+    private Integer maxFrameLength = 16 * 1024 * 1024; // Largest inbound frame accepted, guards against corrupt length prefixes
+    @Setter
+    private MessageCodec preferredCodec = JacksonMessageCodec.json(); // e.g. JacksonMessageCodec.smile(), used if the server supports it
+    @Setter
+    private Integer handlerPoolSize = 8; // Threads of the default callback pool
+    @Setter
+    private Boolean virtualThreadHandlers = false; // Run every callback on its own virtual thread instead of the pool
+    @Setter
+    private ExecutorService handlerExecutor; // Custom executor for callbacks, overrides the two settings above; not shut down by the client
+    @Setter
+    private Integer maxPendingCallbacks = 10000; // Max callbacks queued or running before the overflow policy applies
+    @Setter
+    private CallbackOverflowPolicy callbackOverflowPolicy = CallbackOverflowPolicy.BLOCK; // BLOCK pushes back via TCP, REJECT sends FAILED ACKs
+    @Setter
+    private Integer maxAckBatchSize = 256; // Max callback ACKs per frame
+    @Setter
+    private Long ackFlushIntervalMillis = 5L; // Max time a callback ACK waits to be batched, 0 sends it immediately
+    @Setter
+    private Long callbackDedupWindowMillis = 0L; // How long delivered callbacks are remembered to drop redeliveries, 0 disables deduplication
+    @Setter
+    private Integer callbackDedupMaxEntries = 65536; // Max callbacks remembered per dedup window
+    @Setter
+    private Boolean autoReconnect = true; // Reconnect when the connection is lost instead of shutting down
+    @Setter
+    private Long reconnectInitialDelayMillis = 100L; // Backoff before the first reconnect attempt, doubled per attempt
+    @Setter
+    private Long reconnectMaxDelayMillis = 30000L; // Upper bound of the reconnect backoff
+    @Setter
+    private Integer maxReconnectAttempts = 0; // Reconnect attempts before giving up and shutting down, 0 retries forever
+    @Setter
+    private Integer maxJournalSize = 10000; // Max requests buffered while reconnecting, further requests fail
+    @Setter
+    private Path outboxDirectory; // Keeps unacknowledged registrations and cancellations in memory-mapped files there and replays them on start, null disables the outbox
+    @Setter
+    private Integer outboxSegmentBytes = 64 * 1024 * 1024; // Size of each outbox segment file, also the max size of a request
+    @Setter
+    private Long outboxForceIntervalMillis = 10L; // How often the outbox is flushed to disk, 0 leaves it to the OS
+    @Setter
+    private Long localTimerThresholdMillis = 0L; // Tasks with a shorter delay fire in-process without the server, 0 disables; not with an outbox
+    @Setter
+    private Integer connectionCount = 1; // Connections opened to each server, each registers as instanceId-<n> if more than one
+    @Setter
+    private ConnectionStriping connectionStriping = ConnectionStriping.TIMER_ID; // How requests are spread over the connections
+    @Setter
+    private Integer virtualNodesPerServer = 160; // Positions of each server on the hash ring, more of them spread timers more evenly
+    @Setter
+    private Boolean jmxMetrics = false; // Registers getMetrics() with the platform MBean server as space.jamestang.ktimer:type=ClientMetrics
+    @Setter
+    private MessageIdGenerator messageIdGenerator; // Generates message IDs, null numbers them after instanceId and the start time
+    @Setter
+    private TransportFactory transportFactory = BlockingSocketTransport::new; // e.g. NioTransport.factory() to share one I/O thread
 
-    private GenericMessageProcessor messageProcessor;
+    private final Map<Class<?>, CallbackHandler<?>> callbackHandlers = new ConcurrentHashMap<>();
+    private ServerRouter router;
+    private MessageBuilder messages;
+    private ScheduledFuture<?> heartbeatTask;
+    // Last disk usage sample, only touched by the heartbeat task
+    private long diskSampledAtNanos;
+    private Double diskUsage;
+    // Only touched by the heartbeat task: the last reported state, its message and its frame per codec
+    private HeartbeatData lastHeartbeatData;
+    private KTimerMessage heartbeat;
+    private final Map<MessageCodec, byte[]> heartbeatFrames = new HashMap<>();
+    // Set once started
+    private volatile ServerConnections connections;
+    private MappedOutbox outbox;
+    // Flushes the outbox on its own thread, an msync may take long and must not delay heartbeats or ACKs
+    private ScheduledExecutorService outboxFlusher;
+    private final Map<Class<?>, Bulkhead> bulkheads = new ConcurrentHashMap<>();
+    private ExecutorService handlerThreadPool;
+    private CallbackLanes callbackLanes;
+    private CallbackQueue callbackQueue;
+    private RecentCallbackSet recentCallbacks;
+    private final ClientMetrics metrics = new ClientMetrics();
+    private ObjectName metricsName;
+    private final PendingRequests pendingRequests = new PendingRequests(ACK_TIMER, metrics.ackLatencyHistogram());
+    private final TimerTagIndex taggedTimers = new TimerTagIndex();
+    // Timers firing in-process, see localTimerThresholdMillis
+    private LocalTimers localTimers;
+    private final PayloadTypeResolver payloadTypes = new PayloadTypeResolver(
+            callbackHandlers, payloadClassLoader(), JacksonMessageCodec.json().mapper(), 1024);
 
     public Boolean isRunning() {
-        return running;
+        var current = connections;
+        return current != null && current.isRunning();
+    }
+
+    public ConnectionState getConnectionState() {
+        var current = connections;
+        return current != null ? current.state() : ConnectionState.DISCONNECTED;
+    }
+
+    /**
+     * @return callbacks received but not yet completed by their handler
+     */
+    public int getPendingCallbacks() {
+        return callbackQueue != null ? callbackQueue.depth() : 0;
+    }
+
+    /**
+     * @return callbacks rejected because {@code maxPendingCallbacks} was reached
+     */
+    public long getRejectedCallbacks() {
+        return callbackQueue != null ? callbackQueue.rejectedCount() : 0;
     }
 
+    /**
+     * @return redelivered callbacks dropped by deduplication
+     */
+    public long getDuplicateCallbacks() {
+        return recentCallbacks != null ? recentCallbacks.hits() : 0;
+    }
+
+    /**
+     * @return callbacks checked by deduplication and found to be new
+     */
+    public long getUniqueCallbacks() {
+        return recentCallbacks != null ? recentCallbacks.misses() : 0;
+    }
+
+    /**
+     * @return live metrics of the client, see {@link ClientMetrics}; read them as often as needed
+     */
+    public ClientMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * @return scheduled tasks with tags that have not fired or been cancelled yet, see {@link #cancelTasksByTag}
+     */
+    public int getTaggedTasks() {
+        return taggedTimers.size();
+    }
+
+    /**
+     * @return scheduled tasks, with or without tags, that have not fired or been cancelled yet
+     */
+    public int getActiveTasks() {
+        return taggedTimers.liveTimers();
+    }
+
+
+    private static ClassLoader payloadClassLoader() {
+        var contextLoader = Thread.currentThread().getContextClassLoader();
+        return contextLoader != null ? contextLoader : KTimerClient.class.getClassLoader();
+    }
 
     /**
      * Constructor for KTimerClient.
@@ -77,9 +251,29 @@ public class KTimerClient {
             @NonNull String instanceId,
             @NonNull String serviceName
     ) {
+        this(List.of(InetSocketAddress.createUnresolved(host, port)), clientId, instanceId, serviceName);
+    }
 
-        this.host = host;
-        this.port = port;
+    /**
+     * Constructor for a KTimerClient spreading timers over several KTimer servers. Each timer is routed to
+     * a server by consistent hashing of its ID, and to the next server on the ring while that one is down.
+     * Callbacks are received from all servers.
+     *
+     * @param servers        the KTimer servers, at least one
+     * @param clientId       the unique identifier for the client
+     * @param instanceId     the unique identifier for the client instance
+     * @param serviceName    the name of the service this client is associated with
+     */
+    public KTimerClient(
+            @NonNull List<InetSocketAddress> servers,
+            @NonNull String clientId,
+            @NonNull String instanceId,
+            @NonNull String serviceName
+    ) {
+        if (servers.isEmpty()) {
+            throw new IllegalArgumentException("servers must not be empty");
+        }
+        this.endpoints = servers.stream().map(ServerEndpoint::new).toList();
         this.clientId = clientId;
         this.instanceId = instanceId;
         this.serviceName = serviceName;
@@ -92,38 +286,49 @@ public class KTimerClient {
                 log.warn("Invalid heartbeat interval from environment variable, using default: {}", heartbeatInterval);
             }
         }
+        registerGauges();
     }
 
+    private void registerGauges() {
+        metrics.registerGauge("pendingCallbacks", this::getPendingCallbacks);
+        metrics.registerGauge("rejectedCallbacks", this::getRejectedCallbacks);
+        metrics.registerGauge("handlerPoolQueue",
+                () -> handlerThreadPool instanceof ThreadPoolExecutor pool ? pool.getQueue().size() : 0);
+        metrics.registerGauge("callbackLanesWaiting", () -> callbackLanes != null ? callbackLanes.waiting() : 0);
+        metrics.registerGauge("pendingRequests", pendingRequests::size);
+        metrics.registerGauge("journaledRequests", () -> connections != null ? connections.journaledRequests() : 0);
+        metrics.registerGauge("taggedTasks", taggedTimers::size);
+        metrics.registerGauge("localTimers", () -> localTimers != null ? localTimers.size() : 0);
+        metrics.registerGauge("connectedServers", () -> endpoints.stream().filter(ServerEndpoint::isConnected).count());
+    }
 
-    private void connectAndRegister() throws IOException {
-        socket = new Socket(host, port);
-        out = new DataOutputStream(socket.getOutputStream());
-        in = new DataInputStream(socket.getInputStream());
-        running = true;
-
-        var metaData = new ClientMetadata(
-                socket.getLocalAddress().getHostName(),
-                socket.getLocalAddress().getHostAddress(),
-                socket.getLocalPort(),
-                System.getenv("KTIMER_ENVIRONMENT") != null ? System.getenv("KTIMER_ENVIRONMENT") : "default"
-        );
-
-        var registerData = MessageBuilder.INSTANCE.createClientRegister(clientId, instanceId, serviceName, version, metaData);
-
-        byte[] encodedMessage = serializer.writeValueAsBytes(registerData);
-
-        sendMessage(encodedMessage);
+    /**
+     * Registers the metrics with the platform MBean server. Failures are logged, metrics are optional.
+     */
+    private void registerMetricsMBean() {
+        try {
+            metricsName = new ObjectName("space.jamestang.ktimer:type=ClientMetrics,clientId="
+                    + ObjectName.quote(clientId) + ",instanceId=" + ObjectName.quote(instanceId));
+            ManagementFactory.getPlatformMBeanServer().registerMBean(metrics, metricsName);
+        } catch (JMException e) {
+            log.warn("Failed to register metrics MBean: {}", e.getMessage());
+            metricsName = null;
+        }
+    }
 
-        var response = receiveMessage();
-        if (response.getType() != MessageType.ACK) {
-            throw new IOException(response.getType().toString());
+    private void unregisterMetricsMBean() {
+        if (metricsName == null) {
+            return;
         }
-        AckData ackData = (AckData) response.getData();
-        if (ackData.getStatus() != AckStatus.SUCCESS) {
-            throw new IOException("Failed to register client: " + ackData.getMessage());
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(metricsName);
+        } catch (JMException e) {
+            log.warn("Failed to unregister metrics MBean: {}", e.getMessage());
         }
+        metricsName = null;
     }
 
+
     public void start() throws IOException {
         startAsync();
         try {
@@ -142,14 +347,151 @@ public class KTimerClient {
             log.warn("No callback handlers registered. Please register at least one handler before starting the client.");
         }
 
-        messageProcessor = new GenericMessageProcessor(callbackHandlers, handlerThreadPool);
+        if (connectionCount < 1) {
+            throw new IllegalArgumentException("connectionCount must be at least 1, got: " + connectionCount);
+        }
 
-        synchronized (connectionLock) {
-            connectAndRegister();
-            connected = true;
+        messages = new MessageBuilder(messageIdGenerator != null
+                ? messageIdGenerator : MessageIdGenerator.unique("msg_" + instanceId));
+        router = new ServerRouter(endpoints, virtualNodesPerServer, connectionStriping);
+        handlerThreadPool = createHandlerThreadPool();
+        // Virtual threads start every callback right away, there is nothing to order
+        callbackLanes = handlerThreadPool instanceof ThreadPoolExecutor pool
+                ? new CallbackLanes(pool.getMaximumPoolSize()) : null;
+        callbackQueue = new CallbackQueue(maxPendingCallbacks, callbackOverflowPolicy);
+        recentCallbacks = callbackDedupWindowMillis > 0
+                ? new RecentCallbackSet(callbackDedupWindowMillis, callbackDedupMaxEntries) : null;
+        // Its processor runs the callbacks of local timers and never acknowledges anything
+        localTimers = new LocalTimers(new GenericMessageProcessor(callbackHandlers, handlerThreadPool, pendingRequests,
+                payloadTypes, bulkheads, callbackLanes, callbackQueue, null, null, taggedTimers, metrics, null),
+                taggedTimers, this::isRunning);
+
+        if (outboxDirectory != null) {
+            outbox = MappedOutbox.open(outboxDirectory, outboxSegmentBytes);
+        }
+
+        var connectionSettings = new ClientConnection.Settings(clientId, serviceName, version, messages, preferredCodec,
+                ackTimeoutMillis, metrics,
+                sender -> new AckBatcher(clientId, messages, sender, SCHEDULER, maxAckBatchSize, ackFlushIntervalMillis),
+                (ackBatcher, flowControl) -> new GenericMessageProcessor(callbackHandlers, handlerThreadPool,
+                        pendingRequests, payloadTypes, bulkheads, callbackLanes, callbackQueue, ackBatcher,
+                        recentCallbacks, taggedTimers, metrics, flowControl),
+                (connection, cause) -> connections.connectionLost(connection, cause));
+        connections = new ServerConnections(clientId, instanceId, endpoints, connectionCount,
+                (endpoint, connectionInstanceId) -> new ClientConnection(endpoint, connectionInstanceId,
+                        transportFactory.create(new TransportOptions(
+                                clientId + "-" + connectionInstanceId,
+                                writeQueueCapacity,
+                                maxWriteBatchSize,
+                                TimeUnit.MICROSECONDS.toNanos(maxWriteLingerMicros),
+                                maxFrameLength
+                        )),
+                        connectionSettings),
+                router::connectionFor, pendingRequests, new RequestJournal(maxJournalSize), ackTimeoutMillis,
+                new ServerConnections.ReconnectPolicy(autoReconnect, reconnectInitialDelayMillis,
+                        reconnectMaxDelayMillis, maxReconnectAttempts),
+                this::shutdown);
+        try {
+            connections.connect();
+        } catch (IOException e) {
+            if (outbox != null) {
+                outbox.close();
+            }
+            throw e;
+        }
+        if (outbox != null) {
+            replayOutbox();
+            if (outboxForceInterval() > 0) {
+                outboxFlusher = Executors.newSingleThreadScheduledExecutor(
+                        Thread.ofPlatform().name("ktimer-outbox-" + instanceId).daemon().factory());
+                outboxFlusher.scheduleWithFixedDelay(outbox::force,
+                        outboxForceInterval(), outboxForceInterval(), TimeUnit.MILLISECONDS);
+            }
+        }
+        if (jmxMetrics) {
+            registerMetricsMBean();
         }
         startHeartbeatThread();
-        startMessageReadLoop();
+    }
+
+    private long outboxForceInterval() {
+        return outboxForceIntervalMillis != null ? outboxForceIntervalMillis : 0;
+    }
+
+    /**
+     * Sends the requests a previous run left unacknowledged in the outbox. They keep their message ID and
+     * stay in the outbox until the server ACKs them.
+     */
+    private void replayOutbox() {
+        var records = outbox.recovered();
+        if (records.isEmpty()) {
+            return;
+        }
+        log.info("Replaying {} requests from the outbox", records.size());
+        for (var record : records) {
+            var recordCodec = codecNamed(record.codec());
+            if (recordCodec == null) {
+                log.warn("Skipping outbox request {} encoded with unknown codec: {}", record.messageId(), record.codec());
+                continue;
+            }
+            try {
+                var message = recordCodec.decode(ByteBuffer.wrap(record.frame()));
+                if (message.getData() instanceof TimerRegisterData timer) {
+                    taggedTimers.add(timer.getTimerId(), timer.getTags());
+                }
+                var connection = router.connectionFor(message);
+                byte[] encoded = connection.codec == recordCodec ? record.frame() : connection.encode(message);
+                connections.sendPending(message, connection, encoded, "outbox " + record.messageId())
+                        .thenAccept(ack -> outbox.acknowledge(record.messageId()));
+            } catch (IOException e) {
+                log.warn("Failed to replay outbox request {}: {}", record.messageId(), e.getMessage());
+            }
+        }
+    }
+
+    private MessageCodec codecNamed(String name) {
+        if (preferredCodec.name().equals(name)) {
+            return preferredCodec;
+        }
+        var json = JacksonMessageCodec.json();
+        return json.name().equals(name) ? json : null;
+    }
+
+    private ExecutorService createHandlerThreadPool() {
+        if (handlerExecutor != null) {
+            return handlerExecutor;
+        }
+        if (virtualThreadHandlers) {
+            return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("ktimer-callback-", 0).factory());
+        }
+        return Executors.newFixedThreadPool(handlerPoolSize, Thread.ofPlatform().name("ktimer-callback-", 0).factory());
+    }
+
+    /**
+     * Stops the client: pending outbound frames are flushed, then the connections are closed.
+     */
+    public void shutdown() {
+        var current = connections;
+        if (heartbeatTask != null) {
+            heartbeatTask.cancel(false);
+        }
+        if (current == null || !current.close()) {
+            return;
+        }
+        // Local timers are not durable, they are dropped like the callbacks queued in the handler pool
+        localTimers.cancelAll();
+        if (outboxFlusher != null) {
+            outboxFlusher.shutdown();
+        }
+        if (outbox != null) {
+            // Unacknowledged requests stay in the outbox for the next start
+            outbox.close();
+        }
+        if (handlerThreadPool != null && handlerThreadPool != handlerExecutor) {
+            handlerThreadPool.shutdown();
+        }
+        unregisterMetricsMBean();
+        shutdownLatch.countDown();
     }
 
     /**
@@ -168,21 +510,71 @@ public class KTimerClient {
      */
     public <T> void registerCallbackHandler(@NonNull Class<T> messageType, @NonNull CallbackHandler<T> handler) {
         callbackHandlers.put(messageType, handler);
+        bulkheads.remove(messageType);
+        payloadTypes.handlerRegistered(messageType);
+    }
+
+    /**
+     * Registers a callback handler for a specific message type, running at most {@code maxConcurrency}
+     * callbacks of this type at the same time. Further callbacks of the type wait without occupying a
+     * handler thread, so one slow or hot type can't monopolize callback capacity.
+     *
+     * @param messageType    the class of the message type
+     * @param handler        the callback handler to register
+     * @param maxConcurrency max callbacks of this type running at once
+     * @param <T>            the type of the message
+     */
+    public <T> void registerCallbackHandler(@NonNull Class<T> messageType, @NonNull CallbackHandler<T> handler, int maxConcurrency) {
+        callbackHandlers.put(messageType, handler);
+        bulkheads.put(messageType, new Bulkhead(maxConcurrency));
+        payloadTypes.handlerRegistered(messageType);
     }
 
     /**
      * Schedules a task to be executed after the specified delay.
+     * <p>
+     * Like {@link #scheduleTaskAsync}, but throws right away if the registration could not be sent. The
+     * registration is still tracked until the server acknowledges it, so it is sent again after a reconnect;
+     * the returned future tells whether the server accepted it and may be ignored.
      *
      * @param uniqueTaskID unique identifier for the task, must not be null or empty
      * @param payload task payload data, must not be null
      * @param delay delay in milliseconds before task execution, must be non-negative
      * @param priority task priority, can be null (defaults to NORMAL)
      * @param tags additional metadata tags, can be null
+     * @return future completed with the server ACK, see {@link #scheduleTaskAsync}
      * @throws IllegalStateException if client is not running or not connected
      * @throws IllegalArgumentException if parameters are invalid
      */
-    public void scheduleTask(@NonNull String uniqueTaskID, @NonNull Object payload, @NonNull Long delay,
-                           TimerPriority priority, Map<String, String> tags) {
+    public CompletableFuture<AckData> scheduleTask(@NonNull String uniqueTaskID, @NonNull Object payload, @NonNull Long delay,
+                                                   TimerPriority priority, Map<String, String> tags) {
+        var ack = scheduleTaskAsync(uniqueTaskID, payload, delay, priority, tags);
+        if (ack.isCompletedExceptionally() && ack.exceptionNow() instanceof IOException e) {
+            // Sending failed synchronously, keep the fail-fast behaviour of the blocking API
+            throw new RuntimeException("Failed to schedule task: " + uniqueTaskID, e);
+        }
+        return ack;
+    }
+
+    /**
+     * Schedules a task to be executed after the specified delay without waiting for the server.
+     * <p>
+     * The returned future completes with the server's ACK for this registration; check
+     * {@link AckData#getStatus()} to find out whether the server accepted it. It completes exceptionally
+     * with a {@link java.util.concurrent.TimeoutException} if no ACK arrives within {@code ackTimeoutMillis},
+     * or with an {@link IOException} if the registration could not be sent.
+     *
+     * @param uniqueTaskID unique identifier for the task, must not be null or empty
+     * @param payload task payload data, must not be null
+     * @param delay delay in milliseconds before task execution, must be non-negative
+     * @param priority task priority, can be null (defaults to NORMAL)
+     * @param tags additional metadata tags, can be null
+     * @return future completed with the server ACK
+     * @throws IllegalStateException if client is not running or not connected
+     * @throws IllegalArgumentException if parameters are invalid
+     */
+    public CompletableFuture<AckData> scheduleTaskAsync(@NonNull String uniqueTaskID, @NonNull Object payload, @NonNull Long delay,
+                                                        TimerPriority priority, Map<String, String> tags) {
         // Fast parameter validation without synchronization
         validateScheduleTaskParameters(uniqueTaskID, payload, delay);
 
@@ -195,19 +587,273 @@ public class KTimerClient {
                      uniqueTaskID, delay, priority, tags);
         }
 
-        // Create and send task message
+        final var taskData = messages.createTimerRegister(
+            clientId, uniqueTaskID, delay, payload, payload.getClass().getCanonicalName(), priority, tags);
+        if (isLocal(delay)) {
+            localTimers.schedule((TimerRegisterData) taskData.getData());
+            return CompletableFuture.completedFuture(messages.createAckData(
+                    taskData.getMessageId(), AckStatus.SUCCESS, "Scheduled locally", null));
+        }
+        // Indexed before sending, so the task can be cancelled by tag right away
+        taggedTimers.add(uniqueTaskID, tags);
+        // Returning the dependent stage, not the ACK itself, so callers composing on it see the index updated;
+        // dependents of a single future run in no particular order
+        return sendTracked(taskData, uniqueTaskID).whenComplete((result, error) -> {
+            if (result == null || result.getStatus() != AckStatus.SUCCESS) {
+                taggedTimers.remove(uniqueTaskID);
+            }
+        });
+    }
+
+    /**
+     * Cancels a scheduled task. The request goes to the same server and connection as the registration
+     * of the task.
+     * <p>
+     * The returned future completes with the server's ACK for the cancellation, like
+     * {@link #scheduleTaskAsync}; a task that already fired can't be cancelled. Local tasks, see
+     * {@code localTimerThresholdMillis}, are cancelled without asking the server: the result is SUCCESS,
+     * or FAILED while the callback runs, which is then not retried. Once its callback has completed, a
+     * local task is forgotten.
+     *
+     * @param uniqueTaskID the ID the task was scheduled with
+     * @param reason why the task is cancelled, can be null
+     * @return future completed with the server ACK
+     * @throws IllegalStateException if client is not running or not connected
+     * @throws IllegalArgumentException if uniqueTaskID is empty
+     */
+    public CompletableFuture<AckData> cancelTask(@NonNull String uniqueTaskID, String reason) {
+        if (uniqueTaskID.isEmpty()) {
+            throw new IllegalArgumentException("uniqueTaskID must not be null or empty");
+        }
+        ensureClientConnected();
+
+        var message = messages.createTimerCancel(clientId, uniqueTaskID, reason);
+        switch (localTimers.cancel(uniqueTaskID)) {
+            case CANCELLED -> {
+                return CompletableFuture.completedFuture(messages.createAckData(
+                        message.getMessageId(), AckStatus.SUCCESS, "Cancelled locally", null));
+            }
+            case ALREADY_FIRED -> {
+                return CompletableFuture.completedFuture(messages.createAckData(
+                        message.getMessageId(), AckStatus.FAILED, "Already fired locally", null));
+            }
+            case NOT_LOCAL -> {
+                // Scheduled with the server
+            }
+        }
+        // Removed in the returned stage, so a rescheduling composed on it re-adds the tags afterwards
+        return sendTracked(message, "cancel " + uniqueTaskID).thenApply(result -> {
+            if (result.getStatus() == AckStatus.SUCCESS) {
+                taggedTimers.remove(uniqueTaskID);
+            }
+            return result;
+        });
+    }
+
+    /**
+     * Moves a scheduled task: cancels it, then schedules it again with the given delay, payload and tags.
+     * The new registration is only sent once the server has answered the cancellation, so it can't be
+     * overtaken by it; it is sent whatever the outcome of the cancellation, also if the task already fired
+     * or the cancellation got no ACK in time. The delay counts from the new registration.
+     *
+     * @param uniqueTaskID the ID the task was scheduled with
+     * @param payload task payload data, must not be null
+     * @param delay delay in milliseconds before task execution, must be non-negative
+     * @param priority task priority, can be null (defaults to NORMAL)
+     * @param tags additional metadata tags, can be null
+     * @return future completed with the server ACK of the new registration
+     * @throws IllegalStateException if client is not running or not connected
+     * @throws IllegalArgumentException if parameters are invalid
+     */
+    public CompletableFuture<AckData> rescheduleTask(@NonNull String uniqueTaskID, @NonNull Object payload, @NonNull Long delay,
+                                                     TimerPriority priority, Map<String, String> tags) {
+        validateScheduleTaskParameters(uniqueTaskID, payload, delay);
+        return cancelTask(uniqueTaskID, "rescheduled")
+                .handle((cancelled, error) -> null)
+                .thenCompose(ignored -> scheduleTaskAsync(uniqueTaskID, payload, delay, priority, tags));
+    }
+
+    /**
+     * Cancels all scheduled tasks carrying a tag. The tasks are looked up in a local index of the tagged
+     * tasks this client scheduled and that have not fired yet, so no server round-trip is needed to find
+     * them; one cancellation per task is sent.
+     *
+     * @param key the tag key
+     * @param value the tag value
+     * @param reason why the tasks are cancelled, can be null
+     * @return future completed with one result per task found
+     * @throws IllegalStateException if client is not running or not connected
+     */
+    public CompletableFuture<List<TimerAckResult>> cancelTasksByTag(@NonNull String key, @NonNull String value, String reason) {
+        ensureClientConnected();
+        var cancels = new ArrayList<CompletableFuture<TimerAckResult>>();
+        for (var timerId : taggedTimers.timers(key, value)) {
+            cancels.add(cancelTask(timerId, reason).handle((ack, error) -> error != null
+                    ? new TimerAckResult(timerId, AckStatus.FAILED, null, error.toString())
+                    : new TimerAckResult(timerId, ack.getStatus(), ack.getCode(), ack.getMessage())));
+        }
+        return CompletableFuture.allOf(cancels.toArray(CompletableFuture[]::new))
+                .thenApply(ignored -> cancels.stream().map(CompletableFuture::join).toList());
+    }
+
+    /**
+     * Schedules many tasks at once. Tasks are grouped by server and packed into as few TIMER_REGISTER_BATCH
+     * frames as {@code maxBatchItems} and {@code maxBatchFrameBytes} allow, so the envelope is paid once per batch.
+     * <p>
+     * The returned future completes with one result per task, in the order of {@code tasks}. Tasks whose
+     * batch could not be sent or was not acknowledged in time get a {@link AckStatus#FAILED} result.
+     *
+     * @param tasks the tasks to schedule
+     * @return future completed with the per-task results
+     * @throws IllegalStateException if client is not running or not connected
+     * @throws IllegalArgumentException if any task is invalid
+     */
+    public CompletableFuture<List<TimerAckResult>> scheduleTasks(@NonNull Collection<TaskSpec> tasks) {
+        var timers = new ArrayList<TimerRegisterData>(tasks.size());
+        for (var task : tasks) {
+            validateScheduleTaskParameters(task.uniqueTaskID(), task.payload(), task.delay());
+            timers.add(messages.createTimerRegisterData(task.uniqueTaskID(), task.delay(), task.payload(),
+                    task.payload().getClass().getCanonicalName(), task.priority(), task.tags()));
+        }
+        ensureClientConnected();
+        if (timers.isEmpty()) {
+            return CompletableFuture.completedFuture(List.of());
+        }
+
+        var chunks = new ArrayList<CompletableFuture<List<TimerAckResult>>>();
+        // Index in tasks of every result, in the order the chunks return them
+        var order = new ArrayList<Integer>(timers.size());
+        var remote = new ArrayList<Integer>(timers.size());
+        var localResults = new ArrayList<TimerAckResult>();
+        for (int i = 0; i < timers.size(); i++) {
+            var timer = timers.get(i);
+            if (isLocal(timer.getDelayMillis())) {
+                localTimers.schedule(timer);
+                localResults.add(new TimerAckResult(timer.getTimerId(), AckStatus.SUCCESS, null, "Scheduled locally"));
+                order.add(i);
+            } else {
+                taggedTimers.add(timer.getTimerId(), timer.getTags());
+                remote.add(i);
+            }
+        }
+        if (!localResults.isEmpty()) {
+            chunks.add(CompletableFuture.completedFuture(localResults));
+        }
+        for (var group : router.groupByServer(timers, remote)) {
+            var groupTimers = group.stream().map(timers::get).toList();
+            for (int from = 0; from < groupTimers.size(); from += maxBatchItems) {
+                sendBatch(groupTimers.subList(from, Math.min(from + maxBatchItems, groupTimers.size())), chunks);
+            }
+            order.addAll(group);
+        }
+        return CompletableFuture.allOf(chunks.toArray(CompletableFuture[]::new)).thenApply(ignored -> {
+            var results = new TimerAckResult[timers.size()];
+            int next = 0;
+            for (var chunk : chunks) {
+                for (var result : chunk.join()) {
+                    if (result.getStatus() != AckStatus.SUCCESS) {
+                        taggedTimers.remove(result.getTimerId());
+                    }
+                    results[order.get(next++)] = result;
+                }
+            }
+            return Arrays.asList(results);
+        });
+    }
+
+    /**
+     * Whether a task fires in-process. With an outbox configured timers are meant to be durable, so they
+     * always go to the server.
+     */
+    private boolean isLocal(long delay) {
+        return localTimerThresholdMillis > 0 && delay < localTimerThresholdMillis && outbox == null;
+    }
+
+    /**
+     * Encodes and sends one batch, halving it until the frame fits into {@code maxBatchFrameBytes}.
+     * The encoding is only repeated for batches that turn out too large.
+     */
+    private void sendBatch(List<TimerRegisterData> timers, List<CompletableFuture<List<TimerAckResult>>> chunks) {
+        var message = messages.createTimerRegisterBatch(clientId, timers);
+        byte[] encoded;
+        var connection = router.connectionFor(message);
         try {
-            final var taskData = MessageBuilder.INSTANCE.createTimerRegister(
-                clientId, uniqueTaskID, delay, payload, payload.getClass().getCanonicalName(), priority, tags);
-            final byte[] encodedMessage = serializer.writeValueAsBytes(taskData);
+            encoded = connection.encode(message);
+        } catch (IOException e) {
+            chunks.add(CompletableFuture.completedFuture(failedResults(timers, e)));
+            return;
+        }
+        if (encoded.length > maxBatchFrameBytes && timers.size() > 1) {
+            int half = timers.size() / 2;
+            sendBatch(timers.subList(0, half), chunks);
+            sendBatch(timers.subList(half, timers.size()), chunks);
+            return;
+        }
+        chunks.add(sendTracked(message, connection, encoded, "batch of " + timers.size() + " timers")
+                .handle((ack, error) -> error != null ? failedResults(timers, error) : batchResults(timers, ack)));
+    }
 
-            sendMessage(encodedMessage);
+    /**
+     * Maps a batch ACK to one result per timer, in the order of the batch. Falls back to the overall
+     * status of the ACK for timers the server did not report individually.
+     */
+    private static List<TimerAckResult> batchResults(List<TimerRegisterData> timers, AckData ack) {
+        var reported = new HashMap<String, TimerAckResult>();
+        if (ack.getResults() != null) {
+            for (var result : ack.getResults()) {
+                reported.put(result.getTimerId(), result);
+            }
+        }
+        var results = new ArrayList<TimerAckResult>(timers.size());
+        for (var timer : timers) {
+            var result = reported.get(timer.getTimerId());
+            results.add(result != null ? result
+                    : new TimerAckResult(timer.getTimerId(), ack.getStatus(), ack.getCode(), ack.getMessage()));
+        }
+        return results;
+    }
 
-            log.debug("Task scheduled successfully: id={}", uniqueTaskID);
+    private static List<TimerAckResult> failedResults(List<TimerRegisterData> timers, Throwable error) {
+        var results = new ArrayList<TimerAckResult>(timers.size());
+        for (var timer : timers) {
+            results.add(new TimerAckResult(timer.getTimerId(), AckStatus.FAILED, null, error.toString()));
+        }
+        return results;
+    }
+
+    /**
+     * Sends a request and returns a future for its ACK. With an outbox, registrations and cancellations
+     * alike are kept there until acknowledged: a cancellation lost in a crash would otherwise let the
+     * replayed registration of its timer fire.
+     */
+    private CompletableFuture<AckData> sendTracked(KTimerMessage message, String description) {
+        var connection = router.connectionFor(message);
+        try {
+            return sendTracked(message, connection, connection.encode(message), description);
         } catch (IOException e) {
-            log.error("Failed to schedule task [{}]: {}", uniqueTaskID, e.getMessage(), e);
-            throw new RuntimeException("Failed to schedule task: " + uniqueTaskID, e);
+            log.error("Failed to encode request [{}]: {}", description, e.getMessage(), e);
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    private CompletableFuture<AckData> sendTracked(KTimerMessage message, ClientConnection connection, byte[] encoded, String description) {
+        if (outbox != null) {
+            var messageId = message.getMessageId();
+            try {
+                outbox.append(messageId, connection.codec.name(), encoded);
+            } catch (IOException e) {
+                log.error("Failed to write request [{}] to the outbox: {}", description, e.getMessage(), e);
+                return CompletableFuture.failedFuture(e);
+            }
+            return connections.sendUnlessJournaled(message, connection, encoded, description)
+                    .whenComplete((ack, error) -> {
+                        // Any ACK settles the request, without one it's replayed on the next start
+                        if (ack != null) {
+                            outbox.acknowledge(messageId);
+                        }
+                    });
         }
+        return connections.sendUnlessJournaled(message, connection, encoded, description);
     }
 
     /**
@@ -231,19 +877,11 @@ public class KTimerClient {
      * Uses minimal synchronization for better performance.
      */
     private void ensureClientConnected() {
-        // Quick check without lock for common case
-        if (running && connected) {
-            return;
-        }
-
-        // Double-checked locking pattern for thread safety
-        synchronized (connectionLock) {
-            if (!running || !connected) {
-                throw new IllegalStateException(
-                    String.format("Client is not ready (running=%s, connected=%s). Please start the client first.",
-                                 running, connected));
-            }
+        var current = connections;
+        if (current == null) {
+            throw new IllegalStateException("Client is not ready (running=false, state=DISCONNECTED). Please start the client first.");
         }
+        current.ensureConnected();
     }
 
     /**
@@ -253,70 +891,104 @@ public class KTimerClient {
      */
     public void unregisterHandler(Class<?> payloadType) {
         callbackHandlers.remove(payloadType);
+        bulkheads.remove(payloadType);
+        payloadTypes.handlerUnregistered(payloadType);
     }
 
-    private void startMessageReadLoop() {
-        Thread messageReadThread = new Thread(() -> {
-            while (running) {
+    private void startHeartbeatThread() {
+        heartbeatTask = SCHEDULER.scheduleAtFixedRate(this::sendHeartbeats, 0, heartbeatInterval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends a heartbeat over every connection that has been quiet for half a heartbeat interval; any other
+     * frame proves the connection alive as well, so busy connections never carry heartbeats. The heartbeat
+     * is the same for all connections. Its state is read once per beat, the message is only built again
+     * when that state differs from the last one sent, and it's encoded once per codec until then.
+     */
+    private void sendHeartbeats() {
+        if (getConnectionState() != ConnectionState.CONNECTED) {
+            return;
+        }
+        long quietSince = System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(heartbeatInterval) / 2;
+        boolean checked = false;
+        for (var endpoint : endpoints) {
+            if (!endpoint.isConnected()) {
+                continue;
+            }
+            for (var connection : endpoint.connections) {
+                if (connection.lastSentNanos - quietSince > 0) {
+                    continue;
+                }
                 try {
-                    var data = receiveMessage();
-                    messageProcessor.processMessage(data);
-                } catch (Exception e) {
-                    var errMsg = MessageBuilder.INSTANCE.createError(clientId, "", e.getLocalizedMessage(), e.toString(), null, null);
-                    log.error("Error receiving message: {}", e.getMessage(), e);
-                    try {
-                        sendMessage(serializer.writeValueAsBytes(errMsg));
-                    } catch (IOException ex) {
-                        if (ex instanceof SocketException) {
-                            log.error("Socket error occurred: {}. program will shutdown.", ex.getMessage());
-                            running = false;
-                            Thread.currentThread().interrupt();
-                        }
+                    if (!checked) {
+                        refreshHeartbeat();
+                        checked = true;
+                    }
+                    var frame = heartbeatFrames.get(connection.codec);
+                    if (frame == null) {
+                        frame = connection.encode(heartbeat);
+                        heartbeatFrames.put(connection.codec, frame);
                     }
+                    connection.send(heartbeat, frame);
+                } catch (IOException e) {
+                    log.error("Error sending heartbeat: {}", e.getMessage());
                 }
             }
-        });
-        messageReadThread.start();
+        }
     }
 
-    private void startHeartbeatThread() {
-        var scheduler = Executors.newSingleThreadScheduledExecutor();
-        scheduler.scheduleAtFixedRate(() -> {
-            if (!running) {
-                scheduler.shutdown();
-                return;
-            }
-            try {
-                var clientInfo = new ClientMetadata(
-                        socket.getLocalAddress().getHostName(),
-                        socket.getLocalAddress().getHostAddress(),
-                        socket.getLocalPort(),
-                        System.getenv("KTIMER_ENVIRONMENT") != null ? System.getenv("KTIMER_ENVIRONMENT") : "default"
-                );
-                var heartbeatData = MessageBuilder.INSTANCE.createHeartbeat(clientId, instanceId, serviceName, version, clientInfo);
-                sendMessage(serializer.writeValueAsBytes(heartbeatData));
-            } catch (IOException e) {
-                log.error("Error sending heartbeat: {}", e.getMessage());
-            }
-        }, 0, heartbeatInterval, java.util.concurrent.TimeUnit.MILLISECONDS);
+    /**
+     * Builds a new heartbeat message if the state changed. Heartbeats are not acknowledged, so sending the
+     * same message ID and timestamp again is harmless.
+     */
+    private void refreshHeartbeat() {
+        var data = heartbeatData();
+        if (data.equals(lastHeartbeatData)) {
+            return;
+        }
+        lastHeartbeatData = data;
+        heartbeat = messages.createHeartbeat(clientId, data);
+        heartbeatFrames.clear();
     }
 
-    private void sendMessage(@NonNull byte[] payload) throws IOException {
-        if (out == null) {
-            throw new IllegalStateException("Output stream is not initialized. Please connect first.");
-        }
-        out.writeInt(payload.length);
-        out.write(payload);
-        out.flush();
+    /**
+     * Uptime is not reported, it changes with every beat and the server knows when the client registered.
+     */
+    private HeartbeatData heartbeatData() {
+        var data = new HeartbeatData("healthy",
+                taggedTimers.liveTimers(),
+                getPendingCallbacks(),
+                callbackQueue.completedCount(),
+                null);
+        data.setSystemInfo(systemInfo());
+        return data;
     }
 
-    private KTimerMessage receiveMessage() throws IOException {
-        if (in == null) {
-            throw new IllegalStateException("Input stream is not initialized. Please connect first.");
+    /**
+     * Samples resource usage from what the JVM already tracks, no process is spawned and nothing is
+     * read besides the CPU counters of the OS. Disk usage takes file system calls and changes slowly, it
+     * is sampled at most once per {@link #DISK_SAMPLE_INTERVAL_MILLIS}. Usages are rounded to whole percents,
+     * finer changes would only defeat the reuse of the last heartbeat.
+     */
+    private SystemInfo systemInfo() {
+        Double cpu = null;
+        if (ManagementFactory.getOperatingSystemMXBean() instanceof com.sun.management.OperatingSystemMXBean os) {
+            double load = os.getProcessCpuLoad();
+            cpu = load >= 0 ? percent(load) : null;
+        }
+        var runtime = Runtime.getRuntime();
+        double memory = percent((double) (runtime.totalMemory() - runtime.freeMemory()) / runtime.maxMemory());
+        long now = System.nanoTime();
+        if (diskSampledAtNanos == 0 || now - diskSampledAtNanos >= TimeUnit.MILLISECONDS.toNanos(DISK_SAMPLE_INTERVAL_MILLIS)) {
+            var disk = (outboxDirectory != null ? outboxDirectory : Path.of("")).toAbsolutePath().toFile();
+            long total = disk.getTotalSpace();
+            diskUsage = total > 0 ? percent(1 - (double) disk.getUsableSpace() / total) : null;
+            diskSampledAtNanos = now;
         }
-        int length = in.readInt();
-        byte[] data = new byte[length];
-        in.readFully(data);
-        return serializer.readValue(data, KTimerMessage.class);
+        return new SystemInfo(cpu, memory, diskUsage);
+    }
+
+    private static double percent(double usage) {
+        return Math.round(usage * 100) / 100.0;
     }
 }
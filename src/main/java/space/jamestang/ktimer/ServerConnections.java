@@ -0,0 +1,444 @@
+package space.jamestang.ktimer;
+
+import lombok.NonNull;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.core.PendingRequests;
+import space.jamestang.ktimer.core.RequestJournal;
+import space.jamestang.ktimer.jfr.ReconnectEvent;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.KTimerMessage;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * The connections of a client to all of its servers: connects them, sends requests over them while
+ * tracking the ACKs, and reconnects servers that are lost. Requests of a lost server are failed over to
+ * the next server on the ring; while no server is connected at all, new requests are journaled and sent
+ * once one is back.
+ * <p>
+ * The state of the client and of each server is only changed while holding the lock of this object.
+ */
+@Slf4j
+@RequiredArgsConstructor
+class ServerConnections {
+
+    /**
+     * How lost servers are reconnected.
+     *
+     * @param enabled            reconnect when a connection is lost instead of shutting down
+     * @param initialDelayMillis backoff before the first attempt, doubled per attempt
+     * @param maxDelayMillis     upper bound of the backoff
+     * @param maxAttempts        attempts before giving up on a server, 0 retries forever
+     */
+    record ReconnectPolicy(boolean enabled, long initialDelayMillis, long maxDelayMillis, int maxAttempts) {
+
+        /**
+         * Exponential backoff with equal jitter: half the delay is fixed, the other half random, so clients
+         * disconnected at the same time don't reconnect in lockstep.
+         */
+        long delayMillis(int attempt) {
+            long delay = Math.min(maxDelayMillis, initialDelayMillis << Math.min(attempt - 1, 30));
+            long half = Math.max(1, delay / 2);
+            return half + ThreadLocalRandom.current().nextLong(half);
+        }
+    }
+
+    @NonNull
+    private final String clientId;
+    @NonNull
+    private final String instanceId;
+    @NonNull
+    private final List<ServerEndpoint> endpoints;
+    private final int connectionCount; // Connections per server, each registers as instanceId-<n> if more than one
+    @NonNull
+    private final BiFunction<ServerEndpoint, String, ClientConnection> connectionFactory; // Creates a connection with the given instance ID
+    @NonNull
+    private final Function<KTimerMessage, ClientConnection> router; // Picks the connection for a request
+    @NonNull
+    private final PendingRequests pendingRequests;
+    @NonNull
+    private final RequestJournal journal; // Holds new requests while no server is connected
+    private final long ackTimeoutMillis;
+    @NonNull
+    private final ReconnectPolicy reconnect;
+    @NonNull
+    private final Runnable shutdown; // Shuts the client down once no server can be reconnected
+
+    private final Object lock = new Object();
+    private volatile boolean running = false;
+    private volatile ConnectionState state = ConnectionState.DISCONNECTED;
+
+    boolean isRunning() {
+        return running;
+    }
+
+    ConnectionState state() {
+        return state;
+    }
+
+    int journaledRequests() {
+        return journal.size();
+    }
+
+    /**
+     * Connects all servers. Succeeds as long as one of them is reachable, the others are reconnected in
+     * the background.
+     *
+     * @throws IOException if no server could be connected
+     */
+    void connect() throws IOException {
+        synchronized (lock) {
+            running = true;
+            IOException failure = null;
+            for (var endpoint : endpoints) {
+                try {
+                    connectAndRegister(endpoint);
+                    endpoint.state = ConnectionState.CONNECTED;
+                } catch (IOException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (!anyServerConnected()) {
+                running = false;
+                throw failure;
+            }
+            state = ConnectionState.CONNECTED;
+            for (var endpoint : endpoints) {
+                if (endpoint.state == ConnectionState.DISCONNECTED) {
+                    log.warn("Failed to connect to {}, its timers go to the next server on the ring: {}", endpoint, failure.getMessage());
+                    if (reconnect.enabled()) {
+                        startReconnecting(endpoint);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops reconnecting, flushes the pending ACKs and closes all connections. Requests still waiting for
+     * an ACK or journaled fail.
+     *
+     * @return false if already closed or never connected
+     */
+    boolean close() {
+        synchronized (lock) {
+            if (!running && state == ConnectionState.DISCONNECTED) {
+                return false;
+            }
+            running = false;
+            state = ConnectionState.DISCONNECTED;
+            for (var endpoint : endpoints) {
+                endpoint.state = ConnectionState.DISCONNECTED;
+                if (endpoint.reconnectThread != null) {
+                    endpoint.reconnectThread.interrupt();
+                }
+            }
+            for (var endpoint : endpoints) {
+                for (var connection : endpoint.connections) {
+                    if (connection.transport.isOpen()) {
+                        connection.ackBatcher.flush();
+                    }
+                    connection.close();
+                }
+            }
+        }
+        var shutDown = new IOException("Client has been shut down");
+        journal.close(shutDown);
+        pendingRequests.failAll(shutDown);
+        return true;
+    }
+
+    /**
+     * Throws unless requests can be sent or journaled.
+     */
+    void ensureConnected() {
+        // Quick check without lock for common case, requests made while reconnecting are journaled
+        if (running && state != ConnectionState.DISCONNECTED) {
+            return;
+        }
+
+        // Double-checked locking pattern for thread safety
+        synchronized (lock) {
+            if (!running || state == ConnectionState.DISCONNECTED) {
+                throw new IllegalStateException(
+                    String.format("Client is not ready (running=%s, state=%s). Please start the client first.",
+                                 running, state));
+            }
+        }
+    }
+
+    boolean anyServerConnected() {
+        for (var endpoint : endpoints) {
+            if (endpoint.isConnected()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Opens and registers {@code connectionCount} connections to a server. Either all of them are
+     * registered, or none is left open.
+     */
+    private void connectAndRegister(ServerEndpoint endpoint) throws IOException {
+        var established = new ClientConnection[connectionCount];
+        try {
+            for (int i = 0; i < established.length; i++) {
+                established[i] = connectionFactory.apply(endpoint, connectionCount > 1 ? instanceId + "-" + i : instanceId);
+                established[i].register();
+            }
+        } catch (IOException | RuntimeException e) {
+            for (var connection : established) {
+                if (connection != null) {
+                    connection.close();
+                }
+            }
+            throw e;
+        }
+        endpoint.connections = established;
+    }
+
+    /**
+     * Sends a request, or journals it while no server is connected.
+     */
+    CompletableFuture<AckData> sendUnlessJournaled(KTimerMessage message, ClientConnection connection, byte[] encoded, String description) {
+        if (journal.isOpen()) {
+            var journaled = journal.append(message);
+            if (journaled != null) {
+                log.debug("Request journaled until reconnected: {}", description);
+                return journaled;
+            }
+        }
+        return sendPending(message, connection, encoded, description);
+    }
+
+    /**
+     * Sends a request and tracks it until its ACK arrives. If the connection is lost meanwhile, the request
+     * is sent again once reconnected.
+     */
+    CompletableFuture<AckData> sendPending(KTimerMessage message, ClientConnection connection, byte[] encoded, String description) {
+        var ack = pendingRequests.register(message, connection.endpoint, ackTimeoutMillis);
+        // Already done means the ID is tracked by another request, send anyway but leave that entry alone
+        boolean tracked = !ack.isDone();
+        try {
+            connection.send(message, encoded);
+            log.debug("Request sent: {}", description);
+        } catch (IOException e) {
+            if (tracked && reconnect.enabled() && running) {
+                // The connection was lost meanwhile, the request is still pending and sent again once reconnected
+                log.warn("Failed to send request [{}], retrying after reconnect: {}", description, e.getMessage());
+                if (connection.endpoint.state == ConnectionState.RECONNECTING && state == ConnectionState.CONNECTED) {
+                    // The failover of the server may have run before the request was registered
+                    failover(connection.endpoint);
+                }
+                return ack;
+            }
+            log.error("Failed to send request [{}]: {}", description, e.getMessage(), e);
+            if (tracked) {
+                pendingRequests.fail(message.getMessageId(), e);
+            } else {
+                return CompletableFuture.failedFuture(e);
+            }
+        }
+        return ack;
+    }
+
+    /**
+     * Handles the loss of a connection: starts reconnecting its server, or shuts the client down if
+     * reconnecting is disabled. Losses of connections that were already replaced or closed are ignored.
+     * <p>
+     * A server is reconnected as a whole, its remaining connections are closed too. A request is then never
+     * split between a connection that is up and one that is not, which keeps the per-timer order of
+     * {@link ConnectionStriping#TIMER_ID} across a reconnect. Meanwhile the unacknowledged requests of the
+     * server and new ones for its timers go to the next server on the ring; only while no server is
+     * connected at all are new requests journaled.
+     */
+    void connectionLost(ClientConnection lost, Throwable cause) {
+        var endpoint = lost.endpoint;
+        synchronized (lock) {
+            if (!List.of(endpoint.connections).contains(lost) || endpoint.state != ConnectionState.CONNECTED) {
+                return;
+            }
+            if (reconnect.enabled()) {
+                log.warn("Connection {} to {} lost: {}. Reconnecting.", lost.instanceId, endpoint, cause.toString());
+                for (var connection : endpoint.connections) {
+                    connection.close();
+                }
+                startReconnecting(endpoint);
+                if (!anyServerConnected()) {
+                    // Pending requests are sent again by replay() once a server is back
+                    state = ConnectionState.RECONNECTING;
+                    journal.open();
+                    return;
+                }
+            }
+        }
+        if (reconnect.enabled()) {
+            failover(endpoint);
+            return;
+        }
+        log.error("Socket error occurred: {}. program will shutdown.", cause.getMessage());
+        shutdown.run();
+    }
+
+    private void startReconnecting(ServerEndpoint endpoint) {
+        endpoint.state = ConnectionState.RECONNECTING;
+        endpoint.reconnectThread = Thread.ofVirtual().name("ktimer-reconnect-" + clientId).start(() -> reconnect(endpoint));
+    }
+
+    /**
+     * Reconnects a server with jittered exponential backoff. If it is the first server back after all were
+     * lost, sends the requests that were not acknowledged before and those journaled meanwhile. Runs on its
+     * own virtual thread.
+     */
+    private void reconnect(ServerEndpoint endpoint) {
+        var event = new ReconnectEvent();
+        event.begin();
+        event.server = endpoint.toString();
+        try {
+            reconnect(endpoint, event);
+        } finally {
+            event.commit();
+        }
+    }
+
+    private void reconnect(ServerEndpoint endpoint, ReconnectEvent event) {
+        int maxAttempts = reconnect.maxAttempts();
+        for (int attempt = 1; maxAttempts <= 0 || attempt <= maxAttempts; attempt++) {
+            event.attempts = attempt;
+            long delay = reconnect.delayMillis(attempt);
+            log.info("Reconnect attempt {} to {} in {}ms", attempt, endpoint, delay);
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                return;
+            }
+            boolean replay;
+            synchronized (lock) {
+                if (endpoint.state != ConnectionState.RECONNECTING) {
+                    return;
+                }
+                try {
+                    connectAndRegister(endpoint);
+                } catch (IOException e) {
+                    log.warn("Reconnect attempt {} to {} failed: {}", attempt, endpoint, e.getMessage());
+                    continue;
+                }
+                // The journal stays open until replay() has drained it
+                replay = state != ConnectionState.CONNECTED;
+                endpoint.state = ConnectionState.CONNECTED;
+                state = ConnectionState.CONNECTED;
+            }
+            log.info("Reconnected to {}", endpoint);
+            event.succeeded = true;
+            if (replay) {
+                replay();
+            }
+            return;
+        }
+        boolean lastServer;
+        synchronized (lock) {
+            if (endpoint.state != ConnectionState.RECONNECTING) {
+                return;
+            }
+            endpoint.state = ConnectionState.DISCONNECTED;
+            lastServer = endpoints.stream().allMatch(other -> other.state == ConnectionState.DISCONNECTED);
+        }
+        if (lastServer) {
+            log.error("Giving up after {} reconnect attempts. program will shutdown.", maxAttempts);
+            shutdown.run();
+        } else {
+            log.error("Giving up on {} after {} reconnect attempts, its timers stay with the next server on the ring",
+                    endpoint, maxAttempts);
+        }
+    }
+
+    /**
+     * Sends unacknowledged and journaled requests once a server is back after all were lost. Replayed
+     * requests keep their message ID, so a server may see a registration twice if its ACK was lost with
+     * the old connection. Requests made during the replay are journaled too, until the journal is found empty.
+     */
+    private void replay() {
+        var unacknowledged = pendingRequests.requests();
+        if (!unacknowledged.isEmpty()) {
+            log.info("Resending {} unacknowledged requests", unacknowledged.size());
+        }
+        resend(unacknowledged, null);
+        while (true) {
+            var journaled = journal.drain();
+            if (!journaled.isEmpty()) {
+                log.info("Sending {} requests journaled while reconnecting", journaled.size());
+            }
+            for (var entry : journaled) {
+                var connection = router.apply(entry.message());
+                CompletableFuture<AckData> sent;
+                try {
+                    sent = sendPending(entry.message(), connection, connection.encode(entry.message()),
+                            "journaled " + entry.message().getType());
+                } catch (IOException e) {
+                    sent = CompletableFuture.failedFuture(e);
+                }
+                sent.whenComplete((ack, error) -> {
+                    if (error != null) {
+                        entry.ack().completeExceptionally(error);
+                    } else {
+                        entry.ack().complete(ack);
+                    }
+                });
+            }
+            synchronized (lock) {
+                if (state != ConnectionState.CONNECTED) {
+                    // All servers lost again or shut down meanwhile, the next reconnect continues
+                    return;
+                }
+                if (journal.closeIfEmpty()) {
+                    return;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sends the unacknowledged requests of a lost server to the next servers on the ring.
+     */
+    private void failover(ServerEndpoint lost) {
+        var requests = pendingRequests.routedTo(lost);
+        if (!requests.isEmpty()) {
+            log.info("Failing over {} unacknowledged requests from {}", requests.size(), lost);
+            resend(requests, lost);
+        }
+    }
+
+    /**
+     * @param lost the server the requests are failed over from, null to resend all of them, whatever server they were sent to
+     */
+    private void resend(List<KTimerMessage> requests, ServerEndpoint lost) {
+        for (var request : requests) {
+            var connection = router.apply(request);
+            var messageId = request.getMessageId();
+            boolean rerouted = lost != null
+                    ? pendingRequests.reroute(messageId, lost, connection.endpoint)
+                    : pendingRequests.reroute(messageId, connection.endpoint);
+            if (!rerouted) {
+                // Acknowledged or failed over by another thread meanwhile
+                continue;
+            }
+            try {
+                connection.send(request);
+            } catch (IOException e) {
+                // Lost again, the request is failed over or replayed together with the others of the server
+                log.warn("Failed to resend request {}: {}", messageId, e.getMessage());
+            }
+        }
+    }
+}
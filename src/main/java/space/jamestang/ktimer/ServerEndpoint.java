@@ -0,0 +1,30 @@
+package space.jamestang.ktimer;
+
+import java.net.InetSocketAddress;
+
+/**
+ * A KTimer server and the connections to it. Its state is changed under the lock of {@link ServerConnections}.
+ */
+class ServerEndpoint {
+
+    final String host;
+    final int port;
+    // Registered connections, replaced as a whole when reconnecting
+    volatile ClientConnection[] connections = new ClientConnection[0];
+    volatile ConnectionState state = ConnectionState.DISCONNECTED;
+    Thread reconnectThread;
+
+    ServerEndpoint(InetSocketAddress address) {
+        this.host = address.getHostString();
+        this.port = address.getPort();
+    }
+
+    boolean isConnected() {
+        return state == ConnectionState.CONNECTED;
+    }
+
+    @Override
+    public String toString() {
+        return host + ":" + port;
+    }
+}
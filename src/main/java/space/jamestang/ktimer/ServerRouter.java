@@ -0,0 +1,92 @@
+package space.jamestang.ktimer;
+
+import lombok.NonNull;
+import space.jamestang.ktimer.core.ConsistentHashRing;
+import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.TimerCancelData;
+import space.jamestang.ktimer.message.TimerRegisterBatchData;
+import space.jamestang.ktimer.message.TimerRegisterData;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+/**
+ * Picks the connection for a request: the server by consistent hashing of the timer ID, skipping
+ * servers that are down, then one of its connections, see {@link ConnectionStriping}.
+ */
+class ServerRouter {
+
+    private final List<ServerEndpoint> endpoints;
+    private final ConsistentHashRing<ServerEndpoint> ring;
+    private final ConnectionStriping striping;
+
+    /**
+     * @param virtualNodes positions of each server on the hash ring
+     */
+    ServerRouter(@NonNull List<ServerEndpoint> endpoints, int virtualNodes, @NonNull ConnectionStriping striping) {
+        this.endpoints = endpoints;
+        this.ring = new ConsistentHashRing<>(endpoints, ServerEndpoint::toString, virtualNodes);
+        this.striping = striping;
+    }
+
+    ClientConnection connectionFor(KTimerMessage message) {
+        return switch (message.getData()) {
+            case TimerRegisterData timer -> connectionFor(timer.getTimerId(), true);
+            case TimerCancelData cancel -> connectionFor(cancel.getTimerId(), true);
+            // All timers of a batch belong to the same server, see groupByServer
+            case TimerRegisterBatchData batch -> connectionFor(batch.getTimers().getFirst().getTimerId(), false);
+            default -> connectionFor(null, false);
+        };
+    }
+
+    /**
+     * @param timerId routes to the server of the timer if not null, to any server otherwise
+     * @param ordered whether the timer ID also picks the connection if striped by timer ID, the least
+     *                loaded connection is used otherwise
+     */
+    ClientConnection connectionFor(String timerId, boolean ordered) {
+        var endpoint = timerId != null ? ring.route(timerId, ServerEndpoint::isConnected) : null;
+        if (endpoint != null && ordered && striping == ConnectionStriping.TIMER_ID) {
+            var current = endpoint.connections;
+            return current[Math.floorMod(timerId.hashCode(), current.length)];
+        }
+        ClientConnection leastLoaded = null;
+        int leastPending = Integer.MAX_VALUE;
+        for (var candidate : endpoints) {
+            if (endpoint != null ? candidate != endpoint : !candidate.isConnected()) {
+                continue;
+            }
+            for (var connection : candidate.connections) {
+                int pending = connection.transport.pendingFrames();
+                if (pending < leastPending) {
+                    leastLoaded = connection;
+                    leastPending = pending;
+                }
+            }
+        }
+        if (leastLoaded != null) {
+            return leastLoaded;
+        }
+        // No server is connected, sending fails and the request is sent again once reconnected
+        for (var candidate : endpoints) {
+            if (candidate.connections.length > 0) {
+                return candidate.connections[0];
+            }
+        }
+        throw new IllegalStateException("Client is not connected");
+    }
+
+    /**
+     * @param indexes indexes of the timers to group
+     * @return the indexes, grouped by the server their timer is routed to
+     */
+    List<List<Integer>> groupByServer(List<TimerRegisterData> timers, List<Integer> indexes) {
+        var groups = new LinkedHashMap<ServerEndpoint, List<Integer>>();
+        for (var i : indexes) {
+            var endpoint = endpoints.size() > 1 ? ring.route(timers.get(i).getTimerId(), ServerEndpoint::isConnected) : null;
+            groups.computeIfAbsent(endpoint, ignored -> new ArrayList<>()).add(i);
+        }
+        return List.copyOf(groups.values());
+    }
+}
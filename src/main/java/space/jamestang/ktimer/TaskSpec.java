@@ -0,0 +1,27 @@
+package space.jamestang.ktimer;
+
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.util.Map;
+
+/**
+ * A single task of a batch registration, see {@link KTimerClient#scheduleTasks(java.util.Collection)}.
+ *
+ * @param uniqueTaskID unique identifier for the task, must not be null or empty
+ * @param payload      task payload data, must not be null
+ * @param delay        delay in milliseconds before task execution, must be non-negative
+ * @param priority     task priority, can be null (defaults to NORMAL)
+ * @param tags         additional metadata tags, can be null
+ */
+public record TaskSpec(
+        String uniqueTaskID,
+        Object payload,
+        Long delay,
+        TimerPriority priority,
+        Map<String, String> tags
+) {
+
+    public TaskSpec(String uniqueTaskID, Object payload, Long delay) {
+        this(uniqueTaskID, payload, delay, null, null);
+    }
+}
@@ -0,0 +1,130 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.MessageBuilder;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Coalesces outbound ACKs. ACKs are sent once {@code maxBatchSize} of them are queued or
+ * {@code flushIntervalMillis} after the first one was queued, whichever comes first, so a burst of
+ * callbacks costs a few frames instead of one per callback. Nothing is scheduled while idle.
+ * <p>
+ * ACKs that can't be sent are dropped, the server redelivers unacknowledged callbacks.
+ */
+@Slf4j
+public class AckBatcher {
+
+    private final String clientId;
+    private final MessageBuilder messages;
+    private final MessageSender sender;
+    private final ScheduledExecutorService scheduler;
+    private final int maxBatchSize;
+    private final long flushIntervalMillis;
+    private final Queue<AckData> queue = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+
+    @Setter
+    private volatile boolean batchFrames = false; // Send ACK_BATCH frames, only if the server accepted them
+
+    /**
+     * @param clientId            client ID of the sender
+     * @param messages            builds the ACK frames
+     * @param sender              sends the ACK frames
+     * @param scheduler           runs the delayed flushes
+     * @param maxBatchSize        max ACKs per frame, reaching it flushes immediately
+     * @param flushIntervalMillis max time an ACK waits for others, 0 sends every ACK immediately
+     */
+    public AckBatcher(@NonNull String clientId, @NonNull MessageBuilder messages, @NonNull MessageSender sender,
+                      @NonNull ScheduledExecutorService scheduler, int maxBatchSize, long flushIntervalMillis) {
+        if (maxBatchSize <= 0 || flushIntervalMillis < 0) {
+            throw new IllegalArgumentException("maxBatchSize must be positive and flushIntervalMillis non-negative");
+        }
+        this.clientId = clientId;
+        this.messages = messages;
+        this.sender = sender;
+        this.scheduler = scheduler;
+        this.maxBatchSize = maxBatchSize;
+        this.flushIntervalMillis = flushIntervalMillis;
+    }
+
+    /**
+     * Queues an ACK. Safe to call from any thread.
+     */
+    public void add(@NonNull AckData ack) {
+        queue.add(ack);
+        if (queued.incrementAndGet() >= maxBatchSize || flushIntervalMillis == 0) {
+            flush();
+        } else if (flushScheduled.compareAndSet(false, true)) {
+            try {
+                scheduler.schedule(this::scheduledFlush, flushIntervalMillis, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException e) {
+                flushScheduled.set(false);
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Sends all queued ACKs now.
+     */
+    public synchronized void flush() {
+        while (true) {
+            var batch = drain();
+            if (batch.isEmpty()) {
+                return;
+            }
+            send(batch);
+        }
+    }
+
+    /**
+     * @return ACKs waiting to be sent
+     */
+    public int pending() {
+        return queued.get();
+    }
+
+    private void scheduledFlush() {
+        // Cleared before draining, so an ACK queued meanwhile either gets drained or schedules the next flush
+        flushScheduled.set(false);
+        flush();
+    }
+
+    private List<AckData> drain() {
+        var batch = new ArrayList<AckData>(Math.min(queued.get(), maxBatchSize));
+        AckData ack;
+        while (batch.size() < maxBatchSize && (ack = queue.poll()) != null) {
+            batch.add(ack);
+        }
+        queued.addAndGet(-batch.size());
+        return batch;
+    }
+
+    private void send(List<AckData> batch) {
+        try {
+            if (batchFrames && batch.size() > 1) {
+                sender.send(messages.createAckBatch(clientId, batch));
+                return;
+            }
+            for (var ack : batch) {
+                sender.send(messages.createAck(clientId, ack));
+            }
+        } catch (IOException e) {
+            log.warn("Failed to send {} ACKs, the server will redeliver: {}", batch.size(), e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limits how many callbacks of one payload type run at the same time.
+ * <p>
+ * Tasks over the limit wait in the bulkhead instead of occupying a thread of the executor, so a slow
+ * handler type can neither block executor threads nor starve other types. A task the executor rejects is
+ * told so if it is a {@link RejectableTask}, otherwise the rejection is only logged.
+ */
+@Slf4j
+public class Bulkhead {
+
+    private final int maxConcurrency;
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final Queue<Waiting> waiting = new ConcurrentLinkedQueue<>();
+
+    public Bulkhead(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive, got: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Runs the task on the executor as soon as fewer than {@code maxConcurrency} tasks of this bulkhead are running.
+     * Never throws {@link RejectedExecutionException}, see {@link RejectableTask}.
+     */
+    public void submit(@NonNull Runnable task, @NonNull Executor executor) {
+        waiting.add(new Waiting(task, executor));
+        drain();
+    }
+
+    /**
+     * @return number of tasks currently running
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * @return number of tasks waiting for a free slot
+     */
+    public int waiting() {
+        return waiting.size();
+    }
+
+    private void drain() {
+        while (!waiting.isEmpty()) {
+            int current = active.get();
+            if (current >= maxConcurrency) {
+                // A running task drains again when it completes
+                return;
+            }
+            if (!active.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Waiting next = waiting.poll();
+            if (next == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            var running = new RejectableTask() {
+                @Override
+                public void run() {
+                    try {
+                        next.task.run();
+                    } finally {
+                        active.decrementAndGet();
+                        drain();
+                    }
+                }
+
+                @Override
+                public void rejected(RejectedExecutionException e) {
+                    active.decrementAndGet();
+                    if (next.task instanceof RejectableTask rejectable) {
+                        rejectable.rejected(e);
+                    } else {
+                        log.warn("Callback rejected by executor: {}", e.getMessage());
+                    }
+                }
+            };
+            try {
+                // Each task runs on the executor it was submitted with, whoever drains
+                next.executor.execute(running);
+            } catch (RejectedExecutionException e) {
+                running.rejected(e);
+            }
+        }
+    }
+
+    private record Waiting(Runnable task, Executor executor) {
+    }
+}
@@ -0,0 +1,98 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Hands callbacks to the handler executor by priority.
+ * <p>
+ * At most {@code maxConcurrency} tasks are with the executor at a time, the others wait in a
+ * {@link WeightedFairQueue}. A HIGH callback arriving behind a backlog of LOW ones so takes one of the next
+ * free threads instead of the end of the executor's FIFO queue, while LOW callbacks keep their share.
+ * {@code maxConcurrency} should match the threads of the executor: fewer leaves threads idle, more lets
+ * tasks queue in the executor in arrival order again.
+ */
+@Slf4j
+public class CallbackLanes {
+
+    private final int maxConcurrency;
+    private final AtomicInteger active = new AtomicInteger(0);
+    private final WeightedFairQueue<Runnable> waiting = new WeightedFairQueue<>(Integer.MAX_VALUE);
+
+    public CallbackLanes(int maxConcurrency) {
+        if (maxConcurrency <= 0) {
+            throw new IllegalArgumentException("maxConcurrency must be positive, got: " + maxConcurrency);
+        }
+        this.maxConcurrency = maxConcurrency;
+    }
+
+    /**
+     * Runs the task on the executor once it is the next by priority and fewer than {@code maxConcurrency}
+     * tasks are running.
+     *
+     * @param priority the lane of the task, null for NORMAL
+     * @throws RejectedExecutionException if the executor rejected this task and it is not a
+     *                                    {@link RejectableTask}; such tasks of other callers rejected
+     *                                    meanwhile are only logged
+     */
+    public void submit(@NonNull Runnable task, TimerPriority priority, @NonNull Executor executor) {
+        waiting.offer(task, priority, false);
+        drain(executor, task);
+    }
+
+    /**
+     * @return number of tasks currently with the executor
+     */
+    public int active() {
+        return active.get();
+    }
+
+    /**
+     * @return number of tasks waiting for their turn
+     */
+    public int waiting() {
+        return waiting.size();
+    }
+
+    private void drain(Executor executor, Runnable submitted) {
+        while (!waiting.isEmpty()) {
+            int current = active.get();
+            if (current >= maxConcurrency) {
+                // A running task drains again when it completes
+                return;
+            }
+            if (!active.compareAndSet(current, current + 1)) {
+                continue;
+            }
+            Runnable task = waiting.poll();
+            if (task == null) {
+                active.decrementAndGet();
+                continue;
+            }
+            try {
+                executor.execute(() -> {
+                    try {
+                        task.run();
+                    } finally {
+                        active.decrementAndGet();
+                        drain(executor, null);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                active.decrementAndGet();
+                if (task instanceof RejectableTask rejectable) {
+                    rejectable.rejected(e);
+                } else if (task == submitted) {
+                    throw e;
+                } else {
+                    log.warn("Callback rejected by executor: {}", e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,14 @@
+package space.jamestang.ktimer.core;
+
+/**
+ * Receives the outcome of a callback once its handler has run or it was turned down.
+ */
+@FunctionalInterface
+public interface CallbackOutcome {
+
+    /**
+     * @param failure why the callback failed, null if the handler succeeded
+     * @param error   the exception behind the failure, if any
+     */
+    void complete(String failure, Throwable error);
+}
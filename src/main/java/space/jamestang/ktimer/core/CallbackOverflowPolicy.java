@@ -0,0 +1,17 @@
+package space.jamestang.ktimer.core;
+
+/**
+ * What to do with an inbound callback when the callback queue is full.
+ */
+public enum CallbackOverflowPolicy {
+    /**
+     * Stop reading from the connection the callback came from until a callback completes, which lets TCP
+     * flow control push back on the server. The callback and the frames received after it wait meanwhile;
+     * the I/O thread is never blocked, so other connections sharing it keep going.
+     */
+    BLOCK,
+    /**
+     * Answer the callback with a FAILED ACK so the server retries it later.
+     */
+    REJECT
+}
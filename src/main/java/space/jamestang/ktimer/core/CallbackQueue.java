@@ -0,0 +1,113 @@
+package space.jamestang.ktimer.core;
+
+import lombok.Getter;
+import lombok.NonNull;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounds the number of callbacks accepted but not yet completed, queued and running alike, so memory stays
+ * flat when handlers fall behind a flood of callbacks.
+ */
+public class CallbackQueue {
+
+    @Getter
+    private final int capacity;
+    @Getter
+    private final CallbackOverflowPolicy overflowPolicy;
+    private final Semaphore permits;
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder completed = new LongAdder();
+    // Run one at a time as slots are freed, see whenAvailable
+    private final ConcurrentLinkedQueue<Runnable> waiters = new ConcurrentLinkedQueue<>();
+
+    public CallbackQueue(int capacity, @NonNull CallbackOverflowPolicy overflowPolicy) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, got: " + capacity);
+        }
+        this.capacity = capacity;
+        this.overflowPolicy = overflowPolicy;
+        this.permits = new Semaphore(capacity);
+    }
+
+    /**
+     * Takes a slot for a callback if one is free, never waits: with {@link CallbackOverflowPolicy#BLOCK}
+     * the caller pauses reading instead, see {@link #whenAvailable}.
+     *
+     * @return false if the callback must be rejected
+     */
+    public boolean acquire() {
+        if (permits.tryAcquire()) {
+            return true;
+        }
+        rejected.increment();
+        return false;
+    }
+
+    /**
+     * Takes a slot for a callback if one is free, whatever the policy. Rejections are not counted, the
+     * caller is expected to try again later.
+     */
+    public boolean tryAcquire() {
+        return permits.tryAcquire();
+    }
+
+    /**
+     * Runs the task once a slot may be free: on the thread freeing the next slot, or right away if one is
+     * free already. The slot is not reserved, the task has to take it and may have to wait again.
+     */
+    public void whenAvailable(@NonNull Runnable task) {
+        waiters.add(task);
+        // A slot freed before the task was added woke nobody
+        if (permits.availablePermits() > 0) {
+            wakeWaiter();
+        }
+    }
+
+    /**
+     * Frees the slot of a callback that was accepted but never reached its handler.
+     */
+    public void release() {
+        permits.release();
+        wakeWaiter();
+    }
+
+    /**
+     * Frees the slot of a callback whose handler has run, successfully or not.
+     */
+    public void complete() {
+        completed.increment();
+        permits.release();
+        wakeWaiter();
+    }
+
+    /**
+     * @return callbacks accepted but not yet completed
+     */
+    public int depth() {
+        return capacity - permits.availablePermits();
+    }
+
+    /**
+     * @return callbacks whose handler has run
+     */
+    public long completedCount() {
+        return completed.sum();
+    }
+
+    /**
+     * @return callbacks rejected because the queue was full, callbacks that waited for a slot don't count
+     */
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+
+    private void wakeWaiter() {
+        var waiter = waiters.poll();
+        if (waiter != null) {
+            waiter.run();
+        }
+    }
+}
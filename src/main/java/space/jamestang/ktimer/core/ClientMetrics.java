@@ -0,0 +1,195 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import space.jamestang.ktimer.message.TimerCallbackData;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+
+/**
+ * Counters and histograms of a client, recorded on the hot paths without allocating or locking and read
+ * on demand, e.g. by an exporter polling the getters or over JMX.
+ * <ul>
+ *     <li>frames and bytes sent and received, bytes including the length prefix</li>
+ *     <li>time to encode and decode a frame, in nanoseconds</li>
+ *     <li>ACK latency, from sending a request to receiving its ACK, in nanoseconds</li>
+ *     <li>handler execution time per payload class, in nanoseconds</li>
+ *     <li>callback lateness, from the time a timer was due to the time its callback was received, and the
+ *     part of it spent in the server until it executed the timer, both in milliseconds and by the clocks of
+ *     client and server, so skewed clocks skew the lateness</li>
+ *     <li>gauges such as queue depths, read when the metrics are read</li>
+ * </ul>
+ */
+public class ClientMetrics implements ClientMetricsMXBean {
+
+    private static final MessageType[] TYPES = MessageType.values();
+
+    private final LongAdder[] framesSent = counters();
+    private final LongAdder[] framesReceived = counters();
+    private final LongAdder bytesSent = new LongAdder();
+    private final LongAdder bytesReceived = new LongAdder();
+    private final LatencyHistogram encodeTime = new LatencyHistogram();
+    private final LatencyHistogram decodeTime = new LatencyHistogram();
+    private final LatencyHistogram ackLatency = new LatencyHistogram();
+    private final LatencyHistogram callbackLateness = new LatencyHistogram();
+    private final LatencyHistogram serverLateness = new LatencyHistogram();
+    private final Map<Class<?>, LatencyHistogram> handlerTimes = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+
+    private static LongAdder[] counters() {
+        var counters = new LongAdder[TYPES.length];
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] = new LongAdder();
+        }
+        return counters;
+    }
+
+    /**
+     * Adds a value read whenever the metrics are read, replacing a gauge with the same name.
+     */
+    public void registerGauge(@NonNull String name, @NonNull LongSupplier gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public void frameEncoded(long nanos) {
+        encodeTime.record(nanos);
+    }
+
+    public void frameSent(MessageType type, int length) {
+        if (type != null) {
+            framesSent[type.ordinal()].increment();
+        }
+        bytesSent.add(length + 4L);
+    }
+
+    public void frameReceived(MessageType type, int length, long decodeNanos) {
+        if (type != null) {
+            framesReceived[type.ordinal()].increment();
+        }
+        bytesReceived.add(length + 4L);
+        decodeTime.record(decodeNanos);
+    }
+
+    /**
+     * @return the histogram the ACK latency of requests is recorded in, see {@link PendingRequests}
+     */
+    public LatencyHistogram ackLatencyHistogram() {
+        return ackLatency;
+    }
+
+    public void callbackReceived(TimerCallbackData callback, long receivedAtMillis) {
+        var due = callback.getOriginalTimestamp();
+        if (due == null || due <= 0) {
+            return;
+        }
+        callbackLateness.record(receivedAtMillis - due);
+        if (callback.getExecuteTimestamp() != null) {
+            serverLateness.record(callback.getExecuteTimestamp() - due);
+        }
+    }
+
+    public void callbackHandled(@NonNull Class<?> payloadType, long nanos) {
+        var histogram = handlerTimes.get(payloadType);
+        if (histogram == null) {
+            histogram = handlerTimes.computeIfAbsent(payloadType, type -> new LatencyHistogram());
+        }
+        histogram.record(nanos);
+    }
+
+    /**
+     * @return frames sent of a type
+     */
+    public long framesSent(@NonNull MessageType type) {
+        return framesSent[type.ordinal()].sum();
+    }
+
+    /**
+     * @return frames received of a type
+     */
+    public long framesReceived(@NonNull MessageType type) {
+        return framesReceived[type.ordinal()].sum();
+    }
+
+    /**
+     * @return handler execution time of a payload class, null if no callback of it was handled
+     */
+    public HistogramSnapshot handlerTime(@NonNull Class<?> payloadType) {
+        var histogram = handlerTimes.get(payloadType);
+        return histogram != null ? histogram.snapshot() : null;
+    }
+
+    @Override
+    public Map<String, Long> getFramesSent() {
+        return byType(framesSent);
+    }
+
+    @Override
+    public Map<String, Long> getFramesReceived() {
+        return byType(framesReceived);
+    }
+
+    @Override
+    public long getBytesSent() {
+        return bytesSent.sum();
+    }
+
+    @Override
+    public long getBytesReceived() {
+        return bytesReceived.sum();
+    }
+
+    @Override
+    public HistogramSnapshot getEncodeTime() {
+        return encodeTime.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getDecodeTime() {
+        return decodeTime.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getAckLatency() {
+        return ackLatency.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getCallbackLateness() {
+        return callbackLateness.snapshot();
+    }
+
+    @Override
+    public HistogramSnapshot getServerLateness() {
+        return serverLateness.snapshot();
+    }
+
+    /**
+     * @return handler execution time by payload class name
+     */
+    @Override
+    public Map<String, HistogramSnapshot> getHandlerTimes() {
+        var snapshots = new TreeMap<String, HistogramSnapshot>();
+        handlerTimes.forEach((type, histogram) -> snapshots.put(type.getName(), histogram.snapshot()));
+        return snapshots;
+    }
+
+    @Override
+    public Map<String, Long> getGauges() {
+        var values = new TreeMap<String, Long>();
+        gauges.forEach((name, gauge) -> values.put(name, gauge.getAsLong()));
+        return values;
+    }
+
+    private static Map<String, Long> byType(LongAdder[] counters) {
+        var counts = new LinkedHashMap<String, Long>();
+        for (var type : TYPES) {
+            counts.put(type.name(), counters[type.ordinal()].sum());
+        }
+        return counts;
+    }
+}
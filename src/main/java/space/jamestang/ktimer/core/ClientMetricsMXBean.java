@@ -0,0 +1,32 @@
+package space.jamestang.ktimer.core;
+
+import java.util.Map;
+
+/**
+ * Management interface of {@link ClientMetrics}, registered with the platform MBean server if enabled on
+ * the client. Durations are in nanoseconds, lateness in milliseconds.
+ */
+public interface ClientMetricsMXBean {
+
+    Map<String, Long> getFramesSent();
+
+    Map<String, Long> getFramesReceived();
+
+    long getBytesSent();
+
+    long getBytesReceived();
+
+    HistogramSnapshot getEncodeTime();
+
+    HistogramSnapshot getDecodeTime();
+
+    HistogramSnapshot getAckLatency();
+
+    HistogramSnapshot getCallbackLateness();
+
+    HistogramSnapshot getServerLateness();
+
+    Map<String, HistogramSnapshot> getHandlerTimes();
+
+    Map<String, Long> getGauges();
+}
@@ -0,0 +1,209 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Consistent-hash ring spreading keys over a set of nodes.
+ * <p>
+ * Every node is placed on the ring at {@code virtualNodes} positions derived from its name, and a key
+ * belongs to the first node clockwise of the key's hash. Positions only depend on node names, so adding
+ * or removing a node only moves the keys of that node, see {@link #addNode} and {@link #removeNode}. The
+ * same holds for a node that is unavailable: {@link #route} skips it, its keys go to their next node on
+ * the ring and come back once it is available again, while all other keys stay where they are.
+ * <p>
+ * Lookups don't lock and are safe from any thread, also while nodes are added or removed.
+ */
+public class ConsistentHashRing<T> {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final Function<? super T, String> name;
+    private final int virtualNodes;
+    // Replaced as a whole when a node is added or removed
+    private volatile Placement<T> placement;
+
+    /**
+     * @param nodes        the nodes, must have distinct names
+     * @param name         name of a node, positions are derived from it
+     * @param virtualNodes positions per node, more of them spread keys more evenly
+     */
+    public ConsistentHashRing(@NonNull List<T> nodes, @NonNull Function<? super T, String> name, int virtualNodes) {
+        if (nodes.isEmpty() || virtualNodes <= 0) {
+            throw new IllegalArgumentException("nodes must not be empty and virtualNodes must be positive");
+        }
+        this.name = name;
+        this.virtualNodes = virtualNodes;
+        var initial = new Placement<T>(List.of(), new long[0], new Object[0]);
+        for (var node : nodes) {
+            initial = initial.with(node, positionsOf(node));
+        }
+        this.placement = initial;
+    }
+
+    /**
+     * Places a node on the ring. Only the keys on the arcs ending at its positions move, all of them to the
+     * new node: about 1/N of the keys, N being the number of nodes afterwards.
+     *
+     * @throws IllegalArgumentException if a node with the same name is on the ring already
+     */
+    public synchronized void addNode(@NonNull T node) {
+        var nodeName = name.apply(node);
+        var current = placement;
+        for (var existing : current.nodes) {
+            if (name.apply(existing).equals(nodeName)) {
+                throw new IllegalArgumentException("Node already on the ring: " + nodeName);
+            }
+        }
+        placement = current.with(node, positionsOf(node));
+    }
+
+    /**
+     * Takes a node off the ring. Only its keys move, each to the next node clockwise.
+     *
+     * @return false if the node was not on the ring
+     * @throws IllegalArgumentException if it's the last node
+     */
+    public synchronized boolean removeNode(@NonNull T node) {
+        var current = placement;
+        int index = current.nodes.indexOf(node);
+        if (index < 0) {
+            return false;
+        }
+        if (current.nodes.size() == 1) {
+            throw new IllegalArgumentException("The last node can't be removed");
+        }
+        placement = current.without(current.nodes.get(index));
+        return true;
+    }
+
+    /**
+     * @return the node a key belongs to when all nodes are available
+     */
+    public T owner(@NonNull String key) {
+        var current = placement;
+        return current.owner(current.start(key));
+    }
+
+    /**
+     * Walks the ring clockwise from the key and returns the first available node.
+     *
+     * @return the node, null if none is available
+     */
+    public T route(@NonNull String key, @NonNull Predicate<? super T> available) {
+        var current = placement;
+        int size = current.positions.length;
+        int start = current.start(key);
+        T last = null;
+        for (int i = 0; i < size; i++) {
+            var node = current.owner((start + i) % size);
+            // Consecutive positions often belong to the same node, test it once
+            if (node != last) {
+                if (available.test(node)) {
+                    return node;
+                }
+                last = node;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the nodes of the ring, in the order they were added
+     */
+    public List<T> nodes() {
+        return placement.nodes;
+    }
+
+    /**
+     * @return the positions of a node, sorted
+     */
+    private long[] positionsOf(T node) {
+        var nodeName = name.apply(node);
+        var positions = new long[virtualNodes];
+        for (int i = 0; i < virtualNodes; i++) {
+            positions[i] = hash(nodeName + "#" + i);
+        }
+        Arrays.sort(positions);
+        return positions;
+    }
+
+    /**
+     * FNV-1a followed by the final mix of MurmurHash3, so similar keys land far apart on the ring.
+     */
+    private static long hash(String key) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * FNV_PRIME;
+        }
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        return hash ^ (hash >>> 33);
+    }
+
+    /**
+     * The nodes, their hash positions in ascending order, and the node owning each position.
+     */
+    private record Placement<T>(List<T> nodes, long[] positions, Object[] owners) {
+
+        @SuppressWarnings("unchecked")
+        private T owner(int index) {
+            return (T) owners[index];
+        }
+
+        private int start(String key) {
+            int index = Arrays.binarySearch(positions, hash(key));
+            if (index < 0) {
+                index = -index - 1;
+            }
+            return index == positions.length ? 0 : index;
+        }
+
+        /**
+         * Merges the sorted positions of a new node into the ring, the other nodes keep theirs.
+         */
+        private Placement<T> with(T node, long[] placed) {
+            int size = positions.length + placed.length;
+            var mergedPositions = new long[size];
+            var mergedOwners = new Object[size];
+            for (int i = 0, a = 0, b = 0; i < size; i++) {
+                if (b == placed.length || (a < positions.length && positions[a] <= placed[b])) {
+                    mergedPositions[i] = positions[a];
+                    mergedOwners[i] = owners[a++];
+                } else {
+                    mergedPositions[i] = placed[b++];
+                    mergedOwners[i] = node;
+                }
+            }
+            var grown = new ArrayList<>(nodes);
+            grown.add(node);
+            return new Placement<>(List.copyOf(grown), mergedPositions, mergedOwners);
+        }
+
+        private Placement<T> without(T node) {
+            int size = 0;
+            for (var owner : owners) {
+                if (owner != node) {
+                    size++;
+                }
+            }
+            var keptPositions = new long[size];
+            var keptOwners = new Object[size];
+            for (int i = 0, kept = 0; i < owners.length; i++) {
+                if (owners[i] != node) {
+                    keptPositions[kept] = positions[i];
+                    keptOwners[kept++] = owners[i];
+                }
+            }
+            var shrunk = new ArrayList<>(nodes);
+            shrunk.remove(node);
+            return new Placement<>(List.copyOf(shrunk), keptPositions, keptOwners);
+        }
+    }
+}
@@ -0,0 +1,19 @@
+package space.jamestang.ktimer.core;
+
+/**
+ * Stops and resumes reading from a connection, so TCP flow control pushes back on the server while the
+ * client can't take more inbound messages.
+ */
+public interface FlowControl {
+
+    /**
+     * Stops delivering inbound frames once the frame being delivered, if any, has been handled. Frames
+     * already received are held back too. Does nothing if reading is paused already.
+     */
+    void pauseReading();
+
+    /**
+     * Delivers the held back frames and reads from the connection again. Safe to call from any thread.
+     */
+    void resumeReading();
+}
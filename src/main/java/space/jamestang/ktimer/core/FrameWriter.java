@@ -0,0 +1,206 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.jfr.FrameWriteEvent;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Single-writer outbound stage for length-prefixed frames.
+ * <p>
+ * Any number of threads may {@link #send(byte[])} frames concurrently; they are queued in a bounded
+ * queue and a dedicated writer thread drains everything pending into one buffered write, flushing once
+ * per batch. Frames are never interleaved and a burst of N frames costs one flush instead of N.
+ * The queue has a lane per priority, so HIGH frames overtake a backlog of LOW ones.
+ * <p>
+ * Once the writer thread stops, on close or on a failed write, frames still queued are dropped and every
+ * sender, also one waiting for room in the queue, gets a {@link SocketException}.
+ */
+@Slf4j
+public class FrameWriter implements Closeable {
+
+    private static final long IDLE_POLL_MILLIS = 100;
+
+    private final WeightedFairQueue<byte[]> queue;
+    private final DataOutputStream out;
+    private final int maxBatchSize;
+    private final long maxLingerNanos;
+    private final List<byte[]> batch;
+    private final Thread writerThread;
+
+    private volatile boolean closed = false;
+    // Set once the writer thread exits, nothing drains the queue after that
+    private volatile boolean stopped = false;
+    private volatile IOException failure;
+
+    /**
+     * @param out            the stream frames are written to, should be buffered
+     * @param queueCapacity  max number of frames waiting to be written, senders block when it is full
+     * @param maxBatchSize   max number of frames written between two flushes
+     * @param maxLingerNanos how long the writer may wait for more frames before flushing a partial batch, 0 to flush immediately
+     * @param name           name of the writer thread
+     */
+    public FrameWriter(@NonNull OutputStream out, int queueCapacity, int maxBatchSize, long maxLingerNanos, @NonNull String name) {
+        if (queueCapacity <= 0 || maxBatchSize <= 0 || maxLingerNanos < 0) {
+            throw new IllegalArgumentException("queueCapacity and maxBatchSize must be positive, maxLingerNanos must not be negative");
+        }
+        this.queue = new WeightedFairQueue<>(queueCapacity);
+        this.out = new DataOutputStream(out);
+        this.maxBatchSize = maxBatchSize;
+        this.maxLingerNanos = maxLingerNanos;
+        this.batch = new ArrayList<>(maxBatchSize);
+        this.writerThread = new Thread(this::writeLoop, name);
+        this.writerThread.setDaemon(true);
+    }
+
+    public void start() {
+        writerThread.start();
+    }
+
+    /**
+     * Queues a frame for writing. Blocks while the queue is full.
+     *
+     * @param frame the encoded message, without length prefix
+     * @throws SocketException if the writer failed or has been closed
+     */
+    public void send(@NonNull byte[] frame) throws IOException {
+        send(frame, TimerPriority.NORMAL, false);
+    }
+
+    /**
+     * Queues a frame in the lane of a priority. Blocks while the queue is full.
+     *
+     * @param priority the lane of the frame, null for NORMAL
+     * @param ordered  true to write the frame only after every frame queued before it
+     * @throws SocketException if the writer failed or has been closed
+     */
+    public void send(@NonNull byte[] frame, TimerPriority priority, boolean ordered) throws IOException {
+        ensureUsable();
+        try {
+            queue.put(frame, priority, ordered);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while queueing frame");
+        }
+        if (stopped) {
+            // Queued after the writer thread dropped what was left, it would never be written
+            queue.clear();
+            ensureUsable();
+        }
+    }
+
+    /**
+     * @return number of frames waiting to be written
+     */
+    public int pendingFrames() {
+        return queue.size();
+    }
+
+    /**
+     * Stops accepting frames. The writer thread writes whatever is still queued and stops; this method
+     * doesn't wait for it, see {@link #awaitStopped}.
+     */
+    @Override
+    public void close() {
+        closed = true;
+    }
+
+    /**
+     * Waits for the writer thread to stop after {@link #close()} or a failed write.
+     *
+     * @return false if it is still running after the timeout, or was never started
+     */
+    public boolean awaitStopped(long timeout, TimeUnit unit) throws InterruptedException {
+        return writerThread.join(Duration.ofNanos(unit.toNanos(timeout)));
+    }
+
+    private void ensureUsable() throws SocketException {
+        // SocketException keeps the existing "connection is gone" handling of callers working
+        if (failure != null) {
+            throw new SocketException("Frame writer failed: " + failure.getMessage());
+        }
+        if (closed || stopped) {
+            throw new SocketException("Frame writer is closed");
+        }
+    }
+
+    private void writeLoop() {
+        try {
+            while (!closed || !queue.isEmpty()) {
+                byte[] first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - 1);
+                if (maxLingerNanos > 0) {
+                    linger();
+                }
+                writeBatch();
+            }
+        } catch (IOException e) {
+            failure = e;
+            log.error("Frame writer stopped: {}", e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            stopped = true;
+            batch.clear();
+            int dropped = queue.size();
+            // Also wakes senders waiting for room, they see the writer stopped
+            queue.clear();
+            if (dropped > 0) {
+                log.warn("Frame writer dropped {} unwritten frame(s)", dropped);
+            }
+        }
+    }
+
+    private void linger() throws InterruptedException {
+        long deadline = System.nanoTime() + maxLingerNanos;
+        while (batch.size() < maxBatchSize) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return;
+            }
+            byte[] next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+            if (next == null) {
+                return;
+            }
+            batch.add(next);
+            queue.drainTo(batch, maxBatchSize - batch.size());
+        }
+    }
+
+    private void writeBatch() throws IOException {
+        var event = new FrameWriteEvent();
+        event.begin();
+        long bytes = 0;
+        for (byte[] frame : batch) {
+            out.writeInt(frame.length);
+            out.write(frame);
+            bytes += 4 + frame.length;
+        }
+        out.flush();
+        if (event.shouldCommit()) {
+            event.connection = writerThread.getName();
+            event.frames = batch.size();
+            event.bytes = bytes;
+            event.commit();
+        }
+        if (log.isTraceEnabled()) {
+            log.trace("Flushed {} frame(s)", batch.size());
+        }
+        batch.clear();
+    }
+}
@@ -1,22 +1,45 @@
 package space.jamestang.ktimer.core;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import lombok.AllArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.jfr.CallbackDispatchEvent;
+import space.jamestang.ktimer.jfr.CallbackHandlerEvent;
 import space.jamestang.ktimer.message.AckData;
 import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.MessageBuilder;
 import space.jamestang.ktimer.message.TimerCallbackData;
 import space.jamestang.ktimer.message.enums.AckStatus;
 
+import java.io.IOException;
+import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
 
 @Slf4j
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class GenericMessageProcessor {
 
     private final Map<Class<?>, CallbackHandler<?>> callbackHandlers;
     private final ExecutorService handlerThreadPool;
+    private final PendingRequests pendingRequests;
+    private final PayloadTypeResolver payloadTypes;
+    private final Map<Class<?>, Bulkhead> bulkheads;
+    // Null if the handler executor has no fixed size, callbacks are then handed over in arrival order
+    private final CallbackLanes callbackLanes;
+    private final CallbackQueue callbackQueue;
+    // Null if the processor only runs local callbacks, see dispatchLocal
+    private final AckBatcher ackBatcher;
+    // Null if deduplication is disabled
+    private final RecentCallbackSet recentCallbacks;
+    private final TimerTagIndex taggedTimers;
+    private final ClientMetrics metrics;
+    // Null if the processor only runs local callbacks; pauses the connection while no callback slot is free
+    private final FlowControl flowControl;
+
+    // Set while a callback of this connection waits for a slot, see park
+    private volatile boolean parked;
 
     public void processMessage(KTimerMessage msg){
 
@@ -30,43 +53,194 @@ public class GenericMessageProcessor {
     private void handleACKMessage(AckData msg) {
         // Handle ACK message
         if (msg.getStatus() == AckStatus.SUCCESS) {
-            log.trace("ACK received for message ID: {}", msg.getMessage());
+            log.trace("ACK received for message ID: {}", msg.getOriginalMessageId());
         } else {
-            log.warn("ACK failed for message ID: {}, Status: {}", msg.getStatus(), msg.getMessage());
+            log.warn("ACK failed for message ID: {}, Status: {}, Message: {}", msg.getOriginalMessageId(), msg.getStatus(), msg.getMessage());
+        }
+        if (!pendingRequests.complete(msg)) {
+            log.trace("No pending request for ACK of message ID: {}", msg.getOriginalMessageId());
         }
     }
 
     private void dispatchMessage(KTimerMessage msg){
         TimerCallbackData callbackData = (TimerCallbackData) msg.getData();
+        dispatch(callbackData, false, (failure, error) -> ackCallback(msg, callbackData, failure, error));
+    }
 
+    /**
+     * Runs the handler for a timer that fired in-process, without the server. Nothing is acknowledged,
+     * the outcome goes to {@code outcome} instead. Never blocks: if the callback queue is full, the
+     * outcome is a failure right away whatever the overflow policy.
+     */
+    public void dispatchLocal(TimerCallbackData callbackData, CallbackOutcome outcome) {
+        dispatch(callbackData, true, outcome);
+    }
 
-        Class<?> payloadType;
-        try {
-             payloadType = Class.forName(callbackData.getClassInfo());
-        }catch (ClassNotFoundException e){
-            log.error("Class not found for class info: {}", callbackData.getClassInfo(), e);
-            return;
+    private void dispatch(TimerCallbackData callbackData, boolean local, CallbackOutcome outcome) {
+        var event = new CallbackDispatchEvent();
+        event.begin();
+        var dispatched = submit(callbackData, local, outcome);
+        if (event.shouldCommit()) {
+            event.timerId = callbackData.getTimerId();
+            event.payloadClass = callbackData.getClassInfo();
+            event.attempt = callbackData.getAttempt() != null ? callbackData.getAttempt() : 0;
+            event.outcome = dispatched;
+            event.commit();
+        }
+    }
+
+    /**
+     * Hands a callback to its handler, or completes its outcome right away if it can't be.
+     *
+     * @return what became of the callback, for JFR
+     */
+    private String submit(TimerCallbackData callbackData, boolean local, CallbackOutcome outcome) {
+        Class<?> payloadType = payloadTypes.resolve(callbackData.getClassInfo());
+        if (payloadType == null) {
+            outcome.complete("Payload class not found: " + callbackData.getClassInfo(), null);
+            return "payload class not found";
         }
         CallbackHandler<?> handler = callbackHandlers.get(payloadType);
         if (handler == null) {
             log.warn("No handler found for payload type: {}", payloadType.getName());
-            return;
+            outcome.complete("No handler for payload type: " + payloadType.getName(), null);
+            return "no handler";
+        }
+
+        // Local callbacks are never redelivered
+        long dedupKey = 0;
+        if (recentCallbacks != null && !local) {
+            dedupKey = RecentCallbackSet.key(callbackData.getTimerId(), callbackData.getAttempt());
+            if (recentCallbacks.contains(dedupKey)) {
+                // Already delivered to the handler, acknowledge again so the server stops redelivering
+                log.debug("Dropping duplicate callback for timer: {}, attempt: {}", callbackData.getTimerId(), callbackData.getAttempt());
+                outcome.complete(null, null);
+                return "duplicate";
+            }
+        }
+
+        // Taken before decoding the payload, so a paused connection also stops decoding
+        boolean wait = !local && flowControl != null && callbackQueue.getOverflowPolicy() == CallbackOverflowPolicy.BLOCK;
+        if (!(local || wait ? callbackQueue.tryAcquire() : callbackQueue.acquire())) {
+            if (wait) {
+                park(callbackData, outcome);
+                return "waiting for slot";
+            }
+            log.warn("Callback queue is full ({} callbacks), rejecting timer: {}", callbackQueue.depth(), callbackData.getTimerId());
+            outcome.complete("Client callback queue is full", null);
+            return "queue full";
+        }
+        // Only remembered once accepted, a rejected callback must get through when redelivered
+        if (recentCallbacks != null && !local) {
+            recentCallbacks.add(dedupKey);
         }
 
-        var payload = new ObjectMapper().convertValue(callbackData.getPayload(), payloadType);
+        Object payload;
+        try {
+            payload = payloadTypes.convert(callbackData.getPayload(), payloadType);
+        } catch (IOException e) {
+            callbackQueue.release();
+            log.error("Failed to convert payload to type: {}", payloadType.getName(), e);
+            outcome.complete("Failed to convert payload", e);
+            return "payload conversion failed";
+        }
+        callbackData.setPayload(payload);
 
         log.debug("Dispatching message with payload type: {}", payloadType.getName());
 
-        handlerThreadPool.submit(() -> {
+        long submittedAt = System.nanoTime();
+        Runnable handle = () -> {
+            var event = new CallbackHandlerEvent();
+            event.begin();
+            long start = System.nanoTime();
+            boolean succeeded = false;
             try {
                 //noinspection unchecked
                 ((CallbackHandler<Object>)handler).onCallback(payload, callbackData);
+                succeeded = true;
+                outcome.complete(null, null);
             } catch (Exception e) {
                 log.error("Error processing callback for payload type: {}", payloadType.getName(), e);
-                // Optionally, you can send an error ACK back or handle it accordingly
+                outcome.complete("Callback handler failed", e);
+            } finally {
+                metrics.callbackHandled(payloadType, System.nanoTime() - start);
+                callbackQueue.complete();
+                if (event.shouldCommit()) {
+                    event.timerId = callbackData.getTimerId();
+                    event.payloadClass = payloadType.getName();
+                    event.attempt = callbackData.getAttempt() != null ? callbackData.getAttempt() : 0;
+                    event.queueTime = start - submittedAt;
+                    event.succeeded = succeeded;
+                    event.commit();
+                }
+            }
+        };
+        // The bulkhead and the lanes may only hand the task to the executor later, and report a rejection here
+        var task = new RejectableTask() {
+            @Override
+            public void run() {
+                handle.run();
+            }
+
+            @Override
+            public void rejected(RejectedExecutionException e) {
+                callbackQueue.release();
+                log.warn("Callback rejected by executor: {}", e.getMessage());
+                outcome.complete("Callback rejected by executor", e);
+            }
+        };
+        var bulkhead = bulkheads.get(payloadType);
+        Executor executor = callbackLanes != null
+                ? command -> callbackLanes.submit(command, callbackData.getPriority(), handlerThreadPool)
+                : handlerThreadPool;
+        try {
+            if (bulkhead != null) {
+                bulkhead.submit(task, executor);
+            } else {
+                executor.execute(task);
+            }
+        } catch (RejectedExecutionException e) {
+            task.rejected(e);
+            return "rejected by executor";
+        }
+        return "submitted";
+    }
+
+    /**
+     * Holds a callback the queue has no slot for and pauses its connection, rather than blocking the I/O
+     * thread, which may serve other connections too. Once a slot is freed the callback is dispatched again,
+     * on the thread that freed it, and reading resumes unless the callback had to wait again.
+     */
+    private void park(TimerCallbackData callbackData, CallbackOutcome outcome) {
+        parked = true;
+        flowControl.pauseReading();
+        callbackQueue.whenAvailable(() -> {
+            parked = false;
+            dispatch(callbackData, false, outcome);
+            if (!parked) {
+                flowControl.resumeReading();
             }
         });
+    }
 
+    /**
+     * Queues the ACK of a callback, keyed by its message ID. A failure message makes it a FAILED ACK,
+     * which lets the server retry the callback; the exception, if any, is summarized in the details.
+     */
+    private void ackCallback(KTimerMessage msg, TimerCallbackData callbackData, String failure, Throwable error) {
+        var details = new HashMap<String, Object>();
+        details.put("timerId", callbackData.getTimerId());
+        details.put("attempt", callbackData.getAttempt());
+        if (error != null) {
+            details.put("error", error.getClass().getName());
+            details.put("errorMessage", String.valueOf(error.getMessage()));
+        }
+        ackBatcher.add(MessageBuilder.INSTANCE.createAckData(msg.getMessageId(),
+                failure == null ? AckStatus.SUCCESS : AckStatus.FAILED, failure, details));
+        if (failure == null) {
+            // Fired, a FAILED callback is retried by the server and can still be cancelled
+            taggedTimers.remove(callbackData.getTimerId());
+        }
     }
 
     private void handleUnknowMessage(KTimerMessage msg) {
@@ -0,0 +1,284 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Hashed timing wheel for large numbers of short-lived timeouts that are usually cancelled before they fire,
+ * e.g. waiting for a server ACK. Scheduling and cancelling are O(1) and lock-free for the caller; all bucket
+ * bookkeeping is done by a single daemon worker thread which is started on first use. The worker wakes up
+ * once per tick while timeouts are pending and parks while there are none.
+ * <p>
+ * Expiry precision is one tick. Tasks run on the worker thread and must be short.
+ */
+@Slf4j
+public class HashedWheelTimer {
+
+    private static final int ST_INIT = 0;
+    private static final int ST_PENDING = 1;
+    private static final int ST_CANCELLED = 2;
+    private static final int ST_EXPIRED = 3;
+
+    private final long tickNanos;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final String name;
+    private final Queue<Timeout> additions = new ConcurrentLinkedQueue<>();
+    private final Queue<Timeout> cancellations = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean started = new AtomicBoolean(false);
+    private final long startTime = System.nanoTime();
+    private volatile Thread worker;
+    // Set while the worker is parked or about to park, schedulers then wake it up
+    private volatile boolean idle;
+    // Only touched by the worker thread
+    private long tick;
+    private int pending;
+
+    /**
+     * @param name       name of the worker thread
+     * @param tickMillis duration of one tick, i.e. the timer precision
+     * @param wheelSize  number of buckets, rounded up to a power of two
+     */
+    public HashedWheelTimer(@NonNull String name, long tickMillis, int wheelSize) {
+        if (tickMillis <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("tickMillis and wheelSize must be positive");
+        }
+        this.name = name;
+        this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+        int size = Integer.highestOneBit(wheelSize - 1) << 1;
+        size = Math.max(size, 1);
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+    }
+
+    /**
+     * Schedules a task to run once after the given delay.
+     *
+     * @return a handle that can be used to cancel the task
+     */
+    public Timeout newTimeout(@NonNull Runnable task, long delay, @NonNull TimeUnit unit) {
+        ensureStarted();
+        long deadline = System.nanoTime() + unit.toNanos(Math.max(delay, 0)) - startTime;
+        var timeout = new Timeout(this, task, deadline);
+        additions.add(timeout);
+        if (idle) {
+            LockSupport.unpark(worker);
+        }
+        return timeout;
+    }
+
+    private void ensureStarted() {
+        if (started.compareAndSet(false, true)) {
+            var thread = new Thread(this::run, name);
+            thread.setDaemon(true);
+            worker = thread;
+            thread.start();
+        }
+    }
+
+    private void run() {
+        while (true) {
+            if (pending == 0 && additions.isEmpty() && cancellations.isEmpty()) {
+                if (!awaitAddition()) {
+                    return;
+                }
+                // The wheel was empty, nothing is due in the ticks slept through
+                tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+            }
+            long deadline = tickNanos * (tick + 1);
+            long sleepNanos = deadline - (System.nanoTime() - startTime);
+            if (sleepNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(sleepNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            processCancellations();
+            transferAdditions();
+            pending -= wheel[(int) (tick & mask)].expire();
+            tick++;
+        }
+    }
+
+    /**
+     * Parks the worker until a timeout is scheduled.
+     *
+     * @return false if the worker was interrupted
+     */
+    private boolean awaitAddition() {
+        idle = true;
+        try {
+            // Checked after setting the flag, so an addition made meanwhile is either seen here or unparks
+            while (additions.isEmpty()) {
+                LockSupport.park(this);
+                if (Thread.interrupted()) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            return true;
+        } finally {
+            idle = false;
+        }
+    }
+
+    private void processCancellations() {
+        Timeout timeout;
+        while ((timeout = cancellations.poll()) != null) {
+            if (timeout.bucket != null && timeout.bucket.remove(timeout)) {
+                pending--;
+            }
+        }
+    }
+
+    private void transferAdditions() {
+        // Bounded per tick so a scheduling storm cannot stall expiry
+        for (int i = 0; i < 100_000; i++) {
+            Timeout timeout = additions.poll();
+            if (timeout == null) {
+                return;
+            }
+            if (!timeout.state.compareAndSet(ST_INIT, ST_PENDING)) {
+                continue;
+            }
+            long calculated = timeout.deadline / tickNanos;
+            timeout.remainingRounds = (calculated - tick) / wheel.length;
+            long ticks = Math.max(calculated, tick);
+            wheel[(int) (ticks & mask)].add(timeout);
+            pending++;
+        }
+    }
+
+    /**
+     * Handle of a scheduled task.
+     */
+    public static final class Timeout {
+        private final HashedWheelTimer timer;
+        private final Runnable task;
+        private final long deadline;
+        private final AtomicInteger state = new AtomicInteger(ST_INIT);
+        private long remainingRounds;
+        private Timeout next;
+        private Timeout prev;
+        private Bucket bucket;
+
+        private Timeout(HashedWheelTimer timer, Runnable task, long deadline) {
+            this.timer = timer;
+            this.task = task;
+            this.deadline = deadline;
+        }
+
+        /**
+         * Cancels the task if it has not run yet.
+         *
+         * @return true if the task will not run because of this call
+         */
+        public boolean cancel() {
+            int current = state.get();
+            while (current == ST_INIT || current == ST_PENDING) {
+                if (state.compareAndSet(current, ST_CANCELLED)) {
+                    if (current == ST_PENDING) {
+                        timer.cancellations.add(this);
+                    }
+                    return true;
+                }
+                current = state.get();
+            }
+            return false;
+        }
+
+        public boolean isCancelled() {
+            return state.get() == ST_CANCELLED;
+        }
+
+        private void expire() {
+            if (!state.compareAndSet(ST_PENDING, ST_EXPIRED)) {
+                return;
+            }
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.warn("Timeout task threw an exception", t);
+            }
+        }
+    }
+
+    /**
+     * Doubly linked list of timeouts, only touched by the worker thread.
+     */
+    private static final class Bucket {
+        private Timeout head;
+        private Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            if (head == null) {
+                head = tail = timeout;
+            } else {
+                tail.next = timeout;
+                timeout.prev = tail;
+                tail = timeout;
+            }
+        }
+
+        /**
+         * @return number of timeouts removed from the bucket
+         */
+        int expire() {
+            int removed = 0;
+            Timeout timeout = head;
+            while (timeout != null) {
+                Timeout next = timeout.next;
+                if (timeout.remainingRounds <= 0) {
+                    remove(timeout);
+                    removed++;
+                    timeout.expire();
+                } else if (timeout.isCancelled()) {
+                    remove(timeout);
+                    removed++;
+                } else {
+                    timeout.remainingRounds--;
+                }
+                timeout = next;
+            }
+            return removed;
+        }
+
+        /**
+         * @return false if the timeout was not in this bucket
+         */
+        boolean remove(Timeout timeout) {
+            if (timeout.bucket != this) {
+                return false;
+            }
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            }
+            if (timeout == head) {
+                head = timeout.next;
+            }
+            if (timeout == tail) {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+            return true;
+        }
+    }
+}
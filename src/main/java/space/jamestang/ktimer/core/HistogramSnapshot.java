@@ -0,0 +1,21 @@
+package space.jamestang.ktimer.core;
+
+import lombok.Value;
+
+/**
+ * Summary of a {@link LatencyHistogram} at one point in time, in the unit of the recorded values.
+ */
+@Value
+public class HistogramSnapshot {
+    long count;
+    long sum;
+    long max;
+    long p50;
+    long p90;
+    long p99;
+    long p999;
+
+    public double getMean() {
+        return count > 0 ? (double) sum / count : 0;
+    }
+}
@@ -0,0 +1,176 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.message.TimerCallbackData;
+import space.jamestang.ktimer.message.TimerRegisterData;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Timers that fire in-process without the server, for delays too short to be worth a round-trip. When
+ * one fires, its handler gets a callback built from the registration, with the payload object as given.
+ * A failed callback is retried with the next attempt number, like the server retries callbacks
+ * acknowledged as FAILED. Nothing is durable: the timers are lost with the process.
+ * <p>
+ * A timer is tracked from scheduling until its callback has succeeded or run out of retries, and is in
+ * the tag index for as long.
+ */
+@Slf4j
+public class LocalTimers {
+
+    // Shared by all clients in the JVM, started on first use. 10ms precision is plenty for retries and
+    // debounces, a finer tick only wakes the thread more often
+    private static final HashedWheelTimer WHEEL = new HashedWheelTimer("ktimer-local-timer", 10, 1024);
+    // Base delay before a failed callback is retried, multiplied by the attempt
+    private static final long RETRY_DELAY_MILLIS = 100;
+
+    /**
+     * Outcome of {@link #cancel}.
+     */
+    public enum Cancellation {
+        /** The timer will not fire */
+        CANCELLED,
+        /** The callback ran or is running, it won't be retried */
+        ALREADY_FIRED,
+        /** No local timer has the ID, it may be known to the server */
+        NOT_LOCAL
+    }
+
+    private final GenericMessageProcessor processor;
+    private final TimerTagIndex taggedTimers;
+    private final BooleanSupplier running;
+    private final Map<String, LocalTimer> timers = new ConcurrentHashMap<>();
+
+    /**
+     * @param processor    runs the callbacks, see {@link GenericMessageProcessor#dispatchLocal}
+     * @param taggedTimers the tag index of the client
+     * @param running      whether the client is running, timers firing after it stopped are dropped
+     */
+    public LocalTimers(@NonNull GenericMessageProcessor processor, @NonNull TimerTagIndex taggedTimers,
+                       @NonNull BooleanSupplier running) {
+        this.processor = processor;
+        this.taggedTimers = taggedTimers;
+        this.running = running;
+    }
+
+    /**
+     * Schedules a timer, replacing a local timer with the same ID.
+     */
+    public void schedule(@NonNull TimerRegisterData timer) {
+        taggedTimers.add(timer.getTimerId(), timer.getTags());
+        var callback = new TimerCallbackData(timer.getTimerId(), System.currentTimeMillis(), null, 1,
+                timer.getPayload(), timer.getClassInfo(), timer.getPriority());
+        var local = new LocalTimer(callback, timer.getMaxRetries());
+        var previous = timers.put(timer.getTimerId(), local);
+        if (previous != null) {
+            previous.cancel();
+        }
+        local.start(timer.getDelayMillis());
+    }
+
+    public Cancellation cancel(@NonNull String timerId) {
+        var local = timers.remove(timerId);
+        if (local == null) {
+            return Cancellation.NOT_LOCAL;
+        }
+        taggedTimers.remove(timerId);
+        return local.cancel() ? Cancellation.CANCELLED : Cancellation.ALREADY_FIRED;
+    }
+
+    /**
+     * @return timers waiting to fire, with a callback running or waiting for a retry
+     */
+    public int size() {
+        return timers.size();
+    }
+
+    /**
+     * Drops all timers, callbacks already running complete without retries.
+     */
+    public void cancelAll() {
+        for (var timerId : timers.keySet()) {
+            cancel(timerId);
+        }
+    }
+
+    /**
+     * Runs on the wheel thread.
+     */
+    private void fire(LocalTimer local) {
+        var callback = local.callback;
+        var timerId = callback.getTimerId();
+        if (!running.getAsBoolean()) {
+            finish(local);
+            return;
+        }
+        callback.setExecuteTimestamp(System.currentTimeMillis());
+        processor.dispatchLocal(callback, (failure, error) -> {
+            if (failure != null && callback.getAttempt() <= local.maxRetries && running.getAsBoolean()) {
+                var retry = new TimerCallbackData(timerId, callback.getOriginalTimestamp(), null,
+                        callback.getAttempt() + 1, callback.getPayload(), callback.getClassInfo(), callback.getPriority());
+                var next = new LocalTimer(retry, local.maxRetries);
+                // Unless the timer was cancelled or scheduled again meanwhile
+                if (timers.replace(timerId, local, next)) {
+                    next.start(RETRY_DELAY_MILLIS * callback.getAttempt());
+                }
+                return;
+            }
+            if (failure != null) {
+                log.error("Local timer {} failed after {} attempts: {}", timerId, callback.getAttempt(), failure);
+            }
+            finish(local);
+        });
+    }
+
+    private void finish(LocalTimer local) {
+        var timerId = local.callback.getTimerId();
+        // A timer scheduled again with the same ID meanwhile keeps its tags
+        if (timers.remove(timerId, local)) {
+            taggedTimers.remove(timerId);
+        }
+    }
+
+    private class LocalTimer implements Runnable {
+
+        private final TimerCallbackData callback;
+        private final int maxRetries;
+        // Set by whichever comes first, firing or cancelling
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile HashedWheelTimer.Timeout timeout;
+
+        private LocalTimer(TimerCallbackData callback, int maxRetries) {
+            this.callback = callback;
+            this.maxRetries = maxRetries;
+        }
+
+        private void start(long delayMillis) {
+            timeout = WHEEL.newTimeout(this, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void run() {
+            if (done.compareAndSet(false, true)) {
+                fire(this);
+            }
+        }
+
+        /**
+         * @return true if the timer will not fire because of this call
+         */
+        private boolean cancel() {
+            if (!done.compareAndSet(false, true)) {
+                return false;
+            }
+            var current = timeout;
+            if (current != null) {
+                current.cancel();
+            }
+            return true;
+        }
+    }
+}
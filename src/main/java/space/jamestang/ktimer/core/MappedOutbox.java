@@ -0,0 +1,593 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable log of requests that the server has not acknowledged yet, kept in memory-mapped segment files
+ * of a fixed size.
+ * <p>
+ * Every request is appended as a checksummed record holding its message ID, the name of the codec it was
+ * encoded with and the encoded frame; an ACK appends a small tombstone with the message ID. Records are
+ * written straight into the mapping, so an append costs a copy of the frame and no system call, and
+ * survives a crash of the process. {@link #force()} flushes everything appended since the last call to
+ * disk at once, callers run it periodically to bound what a power loss can take.
+ * <p>
+ * Segments are deleted oldest first once all of their requests were acknowledged, which keeps every
+ * tombstone at least as long as the request it refers to. So a request that is never acknowledged, e.g.
+ * because its ACK timed out, does not pin its segment, the oldest segment is compacted whenever a new one
+ * is started: if its unacknowledged requests take little space they are copied to the new segment, keeping
+ * their original position, and the segment is deleted. On {@link #open} the remaining segments are read
+ * back, a torn or corrupt tail ends a segment, and the requests without a tombstone are returned by
+ * {@link #recovered()} for replay, in the order they were first appended.
+ * <p>
+ * A segment is unmapped as soon as it is deleted or the outbox is closed, so its address space and page
+ * cache are not held until the garbage collector finds the buffer. Where the JDK doesn't allow that, the
+ * mapping is left to the garbage collector.
+ */
+@Slf4j
+public class MappedOutbox implements Closeable {
+
+    private static final String PREFIX = "outbox-";
+    private static final String SUFFIX = ".log";
+    private static final byte PUT = 1;
+    private static final byte ACK = 2;
+    // A request moved by compaction, with the position of the original appended request
+    private static final byte COPY = 3;
+    // Body length and CRC32C of the body
+    private static final int RECORD_HEADER = 8;
+    // The oldest segment is compacted if its unacknowledged requests take at most this share of a segment
+    private static final double COMPACT_MAX_LIVE = 0.25;
+    // Unmaps a mapped buffer right away, null if the JDK doesn't allow it
+    private static final MethodHandle UNMAP = unmapper();
+
+    /**
+     * A request read back from the outbox.
+     */
+    public record Record(String messageId, String codec, byte[] frame) {
+    }
+
+    private final Path directory;
+    private final int segmentBytes;
+    private final FileChannel lockChannel;
+    private final FileLock lock;
+    // Oldest first, the last one is appended to
+    private final ArrayDeque<Segment> segments = new ArrayDeque<>();
+    private final Map<String, Segment> live = new HashMap<>();
+    private final CRC32C crc = new CRC32C();
+    private List<Record> recovered = List.of();
+    private Segment active;
+    private long nextSequence = 0;
+    private boolean closed = false;
+    // Set when a segment was started, the oldest one is compacted once the record being written is done
+    private boolean compactionDue = false;
+
+    private MappedOutbox(Path directory, int segmentBytes, FileChannel lockChannel, FileLock lock) {
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.lockChannel = lockChannel;
+        this.lock = lock;
+    }
+
+    /**
+     * Opens the outbox in a directory, reading back the requests left by a previous run. The directory is
+     * locked, it can't be shared by two clients.
+     *
+     * @param directory    directory of the segment files, created if missing
+     * @param segmentBytes size of each segment file, also the max size of a record
+     */
+    public static MappedOutbox open(@NonNull Path directory, int segmentBytes) throws IOException {
+        if (segmentBytes < 4096) {
+            throw new IllegalArgumentException("segmentBytes must be at least 4096, got: " + segmentBytes);
+        }
+        Files.createDirectories(directory);
+        var lockChannel = FileChannel.open(directory.resolve("outbox.lock"),
+                StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        FileLock lock;
+        try {
+            lock = lockChannel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // Held by another client in this JVM
+            lock = null;
+        } catch (IOException e) {
+            lockChannel.close();
+            throw e;
+        }
+        if (lock == null) {
+            lockChannel.close();
+            throw new IOException("Outbox directory is in use by another client: " + directory);
+        }
+        var outbox = new MappedOutbox(directory, segmentBytes, lockChannel, lock);
+        try {
+            outbox.recover();
+        } catch (IOException e) {
+            outbox.close();
+            throw e;
+        }
+        return outbox;
+    }
+
+    /**
+     * @return the unacknowledged requests found by {@link #open}, oldest first; only returned once
+     */
+    public synchronized List<Record> recovered() {
+        var records = recovered;
+        recovered = List.of();
+        return records;
+    }
+
+    /**
+     * Appends a request.
+     *
+     * @throws IOException if the record does not fit into a segment or a new segment can't be created
+     */
+    public synchronized void append(@NonNull String messageId, @NonNull String codec, @NonNull byte[] frame) throws IOException {
+        ensureOpen();
+        put(messageId, -1, codec, frame);
+        compactIfDue();
+    }
+
+    /**
+     * Writes a request to the active segment.
+     *
+     * @param origin position of the original request if this is a copy of it, see {@link #position}, else -1
+     */
+    private void put(String messageId, long origin, String codec, byte[] frame) throws IOException {
+        int body = bodyLength(messageId, origin, codec, frame);
+        var buffer = reserve(body);
+        int start = buffer.position();
+        buffer.position(start + RECORD_HEADER);
+        buffer.put(origin < 0 ? PUT : COPY);
+        putId(buffer, messageId);
+        if (origin >= 0) {
+            buffer.putLong(origin);
+        }
+        buffer.put((byte) codec.length());
+        for (int i = 0; i < codec.length(); i++) {
+            buffer.put((byte) codec.charAt(i));
+        }
+        buffer.put(frame);
+        seal(start, body);
+        var previous = live.put(messageId, active);
+        if (previous != null) {
+            previous.live--;
+        }
+        active.live++;
+    }
+
+    /**
+     * Marks a request as acknowledged, unknown message IDs are ignored.
+     */
+    public synchronized void acknowledge(@NonNull String messageId) {
+        if (closed) {
+            return;
+        }
+        var segment = live.remove(messageId);
+        if (segment == null) {
+            return;
+        }
+        segment.live--;
+        int body = 1 + 2 + 2 * messageId.length();
+        try {
+            var buffer = reserve(body);
+            int start = buffer.position();
+            buffer.position(start + RECORD_HEADER);
+            buffer.put(ACK);
+            putId(buffer, messageId);
+            seal(start, body);
+        } catch (IOException e) {
+            // Without the tombstone the request is sent again after a restart, which the server tolerates
+            log.warn("Failed to write outbox tombstone for {}: {}", messageId, e.getMessage());
+        }
+        deleteAcknowledgedSegments();
+        compactIfDue();
+    }
+
+    /**
+     * Flushes the records appended since the last call to disk. Appends are not blocked meanwhile.
+     */
+    public void force() {
+        Segment segment;
+        int from;
+        int to;
+        synchronized (this) {
+            segment = active;
+            if (closed || segment == null || segment.forced == segment.buffer.position()) {
+                return;
+            }
+            from = segment.forced;
+            to = segment.buffer.position();
+            segment.forced = to;
+            // Not unmapped while being forced, see Segment.close
+            segment.forcing = true;
+        }
+        try {
+            segment.buffer.force(from, to - from);
+        } finally {
+            synchronized (this) {
+                segment.forcing = false;
+                if (segment.closed) {
+                    segment.unmap();
+                }
+            }
+        }
+    }
+
+    /**
+     * @return number of unacknowledged requests
+     */
+    public synchronized int size() {
+        return live.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        if (active != null) {
+            active.buffer.force();
+        }
+        for (var segment : segments) {
+            segment.close();
+        }
+        segments.clear();
+        live.clear();
+        try {
+            lock.release();
+            lockChannel.close();
+        } catch (IOException e) {
+            log.warn("Error releasing outbox lock: {}", e.getMessage());
+        }
+    }
+
+    private void recover() throws IOException {
+        var paths = new ArrayList<Path>();
+        try (var files = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            files.forEach(paths::add);
+        }
+        paths.sort(null);
+        var pending = new HashMap<String, Pending>();
+        for (var path : paths) {
+            var name = path.getFileName().toString();
+            long sequence = Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+            var segment = Segment.map(path, sequence, Math.max(segmentBytes, (int) Files.size(path)));
+            segments.add(segment);
+            nextSequence = sequence + 1;
+            read(segment, pending);
+        }
+        recovered = pending.values().stream()
+                .sorted(Comparator.comparingLong(Pending::origin))
+                .map(Pending::record)
+                .toList();
+        roll();
+        deleteAcknowledgedSegments();
+        compactIfDue();
+        if (!recovered.isEmpty()) {
+            log.info("Recovered {} unacknowledged requests from outbox {}", recovered.size(), directory);
+        }
+    }
+
+    private void read(Segment segment, Map<String, Pending> pending) {
+        var buffer = segment.buffer;
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int start = buffer.position();
+            int body = buffer.getInt(start);
+            if (body == 0) {
+                break;
+            }
+            if (body < 0 || body > buffer.remaining() - RECORD_HEADER || checksum(segment, start, body) != buffer.getInt(start + 4)) {
+                log.warn("Outbox segment {} is corrupt at offset {}, ignoring the rest of it", segment.path, start);
+                break;
+            }
+            var entry = parse(segment, buffer, start, body);
+            var messageId = entry.record.messageId();
+            if (entry.record.frame() != null) {
+                pending.merge(messageId, entry, MappedOutbox::latest);
+                var previous = live.put(messageId, segment);
+                if (previous != null) {
+                    previous.live--;
+                }
+                segment.live++;
+            } else {
+                pending.remove(messageId);
+                var put = live.remove(messageId);
+                if (put != null) {
+                    put.live--;
+                }
+            }
+            buffer.position(start + RECORD_HEADER + body);
+        }
+    }
+
+    /**
+     * @return the active buffer, positioned where a record with the given body length fits
+     */
+    private MappedByteBuffer reserve(int body) throws IOException {
+        if (RECORD_HEADER + body > segmentBytes) {
+            throw new IOException("Record of " + (RECORD_HEADER + body) + " bytes exceeds the outbox segment size " + segmentBytes);
+        }
+        if (active.buffer.remaining() < RECORD_HEADER + body) {
+            roll();
+        }
+        return active.buffer;
+    }
+
+    /**
+     * Writes the header of a record whose body was written after it. The length goes last, so a record
+     * torn by a crash reads as the end of the segment.
+     */
+    private void seal(int start, int body) {
+        var buffer = active.buffer;
+        buffer.putInt(start + 4, checksum(active, start, body));
+        buffer.putInt(start, body);
+    }
+
+    private int checksum(Segment segment, int start, int body) {
+        var view = segment.checksumView;
+        view.limit(start + RECORD_HEADER + body).position(start + RECORD_HEADER);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private void roll() throws IOException {
+        if (active != null) {
+            active.buffer.force();
+            active.forced = active.buffer.position();
+        }
+        var path = directory.resolve(String.format("%s%020d%s", PREFIX, nextSequence, SUFFIX));
+        active = Segment.map(path, nextSequence, segmentBytes);
+        nextSequence++;
+        segments.add(active);
+        deleteAcknowledgedSegments();
+        compactionDue = true;
+    }
+
+    private void compactIfDue() {
+        if (compactionDue) {
+            compact();
+            // Segments started by the copies are not compacted again right away
+            compactionDue = false;
+        }
+    }
+
+    /**
+     * Copies the unacknowledged requests of the oldest segments to the active one and deletes those
+     * segments, for as long as the requests take little space. The copies are forced to disk before the
+     * originals are deleted.
+     */
+    private void compact() {
+        while (segments.size() > 1) {
+            var oldest = segments.peekFirst();
+            var entries = liveEntries(oldest);
+            long bytes = 0;
+            for (var entry : entries) {
+                bytes += RECORD_HEADER + bodyLength(entry.record.messageId(), entry.origin, entry.record.codec(), entry.record.frame());
+            }
+            if (bytes > segmentBytes * COMPACT_MAX_LIVE) {
+                return;
+            }
+            try {
+                for (var entry : entries) {
+                    put(entry.record.messageId(), entry.origin, entry.record.codec(), entry.record.frame());
+                }
+            } catch (IOException e) {
+                // The requests not copied yet keep the segment, nothing is lost
+                log.warn("Failed to compact outbox segment {}: {}", oldest.path, e.getMessage());
+                return;
+            }
+            active.buffer.force();
+            active.forced = active.buffer.position();
+            log.debug("Compacted outbox segment {}, moved {} unacknowledged requests", oldest.path, entries.size());
+            deleteAcknowledgedSegments();
+            if (segments.peekFirst() == oldest) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return the requests whose latest copy is in the segment
+     */
+    private List<Pending> liveEntries(Segment segment) {
+        if (segment.live == 0) {
+            return List.of();
+        }
+        var entries = new LinkedHashMap<String, Pending>();
+        var buffer = segment.buffer.duplicate().clear();
+        while (buffer.remaining() >= RECORD_HEADER) {
+            int start = buffer.position();
+            int body = buffer.getInt(start);
+            if (body <= 0 || body > buffer.remaining() - RECORD_HEADER) {
+                break;
+            }
+            var entry = parse(segment, buffer, start, body);
+            var messageId = entry.record.messageId();
+            if (entry.record.frame() == null) {
+                entries.remove(messageId);
+            } else if (live.get(messageId) == segment) {
+                entries.merge(messageId, entry, MappedOutbox::latest);
+            }
+            buffer.position(start + RECORD_HEADER + body);
+        }
+        return List.copyOf(entries.values());
+    }
+
+    /**
+     * Reads the record at {@code start}, the buffer is left somewhere inside it.
+     *
+     * @return the request with the position of its original, the frame is null for a tombstone
+     */
+    private static Pending parse(Segment segment, ByteBuffer buffer, int start, int body) {
+        buffer.position(start + RECORD_HEADER);
+        byte type = buffer.get();
+        var messageId = getId(buffer);
+        if (type == ACK) {
+            return new Pending(position(segment, start), new Record(messageId, null, null));
+        }
+        long origin = type == COPY ? buffer.getLong() : position(segment, start);
+        var codec = new char[buffer.get()];
+        for (int i = 0; i < codec.length; i++) {
+            codec[i] = (char) buffer.get();
+        }
+        var frame = new byte[start + RECORD_HEADER + body - buffer.position()];
+        buffer.get(frame);
+        return new Pending(origin, new Record(messageId, new String(codec), frame));
+    }
+
+    /**
+     * @return the later request appended with a message ID, in the place of the earlier one
+     */
+    private static Pending latest(Pending earlier, Pending later) {
+        return new Pending(Math.min(earlier.origin, later.origin), later.record);
+    }
+
+    /**
+     * @return where a record is in the whole outbox, growing with every record appended
+     */
+    private static long position(Segment segment, int offset) {
+        return segment.sequence << 32 | offset;
+    }
+
+    private static int bodyLength(String messageId, long origin, String codec, byte[] frame) {
+        return 1 + 2 + 2 * messageId.length() + (origin >= 0 ? 8 : 0) + 1 + codec.length() + frame.length;
+    }
+
+    private void deleteAcknowledgedSegments() {
+        while (segments.size() > 1 && segments.peekFirst().live == 0) {
+            var segment = segments.removeFirst();
+            segment.close();
+            try {
+                Files.deleteIfExists(segment.path);
+            } catch (IOException e) {
+                log.warn("Failed to delete outbox segment {}: {}", segment.path, e.getMessage());
+            }
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Outbox is closed");
+        }
+    }
+
+    private static void putId(ByteBuffer buffer, String messageId) {
+        buffer.putShort((short) messageId.length());
+        for (int i = 0; i < messageId.length(); i++) {
+            buffer.putChar(messageId.charAt(i));
+        }
+    }
+
+    private static String getId(ByteBuffer buffer) {
+        var id = new char[buffer.getShort()];
+        for (int i = 0; i < id.length; i++) {
+            id[i] = buffer.getChar();
+        }
+        return new String(id);
+    }
+
+    /**
+     * A request, or a tombstone without codec and frame, with the position of the original request.
+     */
+    private record Pending(long origin, Record record) {
+    }
+
+    /**
+     * Looks up {@code Unsafe.invokeCleaner}, the only way to unmap a buffer on demand before Java 22.
+     */
+    private static MethodHandle unmapper() {
+        try {
+            var unsafeClass = Class.forName("sun.misc.Unsafe");
+            var field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            return MethodHandles.lookup()
+                    .findVirtual(unsafeClass, "invokeCleaner", MethodType.methodType(void.class, ByteBuffer.class))
+                    .bindTo(field.get(null));
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            log.debug("Outbox segments can't be unmapped explicitly, leaving it to the GC: {}", e.toString());
+            return null;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final long sequence;
+        private final FileChannel channel;
+        private final MappedByteBuffer buffer;
+        // Second view of the mapping the checksum is computed from, without moving the write position
+        private final ByteBuffer checksumView;
+        private int live = 0;
+        private int forced = 0;
+        // Guarded by the outbox, a closed segment is unmapped once it is no longer being forced
+        private boolean forcing = false;
+        private boolean closed = false;
+
+        private Segment(Path path, long sequence, FileChannel channel, MappedByteBuffer buffer) {
+            this.path = path;
+            this.sequence = sequence;
+            this.channel = channel;
+            this.buffer = buffer;
+            this.checksumView = buffer.duplicate();
+        }
+
+        private static Segment map(Path path, long sequence, int size) throws IOException {
+            var channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            try {
+                return new Segment(path, sequence, channel, channel.map(FileChannel.MapMode.READ_WRITE, 0, size));
+            } catch (IOException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Closes the file and unmaps the buffer, which must not be touched afterwards.
+         */
+        private void close() {
+            closed = true;
+            try {
+                channel.close();
+            } catch (IOException e) {
+                log.warn("Error closing outbox segment {}: {}", path, e.getMessage());
+            }
+            if (!forcing) {
+                unmap();
+            }
+        }
+
+        private void unmap() {
+            if (UNMAP == null) {
+                return;
+            }
+            try {
+                UNMAP.invokeExact((ByteBuffer) buffer);
+            } catch (Throwable e) {
+                log.warn("Failed to unmap outbox segment {}: {}", path, e.toString());
+            }
+        }
+    }
+}
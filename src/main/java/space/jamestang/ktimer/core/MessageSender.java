@@ -0,0 +1,14 @@
+package space.jamestang.ktimer.core;
+
+import space.jamestang.ktimer.message.KTimerMessage;
+
+import java.io.IOException;
+
+/**
+ * Sends a message to the server over the client's current connection.
+ */
+@FunctionalInterface
+public interface MessageSender {
+
+    void send(KTimerMessage message) throws IOException;
+}
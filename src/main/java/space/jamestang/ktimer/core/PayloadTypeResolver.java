@@ -0,0 +1,126 @@
+package space.jamestang.ktimer.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.message.DeferredPayload;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Resolves the {@code classInfo} of callbacks to payload classes and converts payloads to them.
+ * <p>
+ * Resolutions are cached per {@code classInfo}, including misses, so reflection only happens once per
+ * payload type. Registered handler types are matched by name first, which also resolves nested classes
+ * whose canonical name {@link Class#forName} does not understand. Classes are loaded through the class
+ * loader given at construction, the cache is bounded and cleared whenever handlers change.
+ * <p>
+ * Conversion uses one {@link ObjectReader} per payload type built from a shared mapper, so Jackson's
+ * deserializer caches are reused across callbacks. Payloads decoded as {@link DeferredPayload} are bound
+ * directly from their tokens, other objects are converted through a token buffer.
+ */
+@Slf4j
+public class PayloadTypeResolver {
+
+    private final Map<Class<?>, CallbackHandler<?>> callbackHandlers;
+    private final ClassLoader classLoader;
+    private final ObjectMapper mapper;
+    private final int maxEntries;
+    private final Map<String, Optional<Class<?>>> resolved = new ConcurrentHashMap<>();
+    private final Map<Class<?>, ObjectReader> readers = new ConcurrentHashMap<>();
+
+    /**
+     * @param callbackHandlers the registered handlers, looked up by payload type
+     * @param classLoader      loader for payload classes without a registered handler
+     * @param mapper           mapper the payload readers are built from
+     * @param maxEntries       max number of cached class resolutions
+     */
+    public PayloadTypeResolver(@NonNull Map<Class<?>, CallbackHandler<?>> callbackHandlers,
+                               @NonNull ClassLoader classLoader,
+                               @NonNull ObjectMapper mapper,
+                               int maxEntries) {
+        this.callbackHandlers = callbackHandlers;
+        this.classLoader = classLoader;
+        this.mapper = mapper;
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * @return the payload class, null if it can't be found
+     */
+    public Class<?> resolve(@NonNull String classInfo) {
+        var cached = resolved.get(classInfo);
+        if (cached != null) {
+            return cached.orElse(null);
+        }
+        var type = Optional.<Class<?>>ofNullable(lookup(classInfo));
+        if (resolved.size() >= maxEntries) {
+            // Only reached with an unbounded variety of class names, starting over is cheaper than LRU bookkeeping
+            resolved.clear();
+        }
+        resolved.put(classInfo, type);
+        return type.orElse(null);
+    }
+
+    /**
+     * Converts a decoded payload to the given type.
+     */
+    public Object convert(Object payload, @NonNull Class<?> type) throws IOException {
+        if (payload == null || type.isInstance(payload)) {
+            return payload;
+        }
+        if (payload instanceof DeferredPayload deferred) {
+            return deferred.bind(readerFor(type));
+        }
+        var buffer = new TokenBuffer(mapper, false);
+        mapper.writeValue(buffer, payload);
+        try (var parser = buffer.asParser()) {
+            return readerFor(type).readValue(parser);
+        }
+    }
+
+    /**
+     * Builds the reader of a handler type ahead of the first callback and forgets cached resolutions,
+     * which may have missed the new handler.
+     */
+    public void handlerRegistered(@NonNull Class<?> type) {
+        readerFor(type);
+        resolved.clear();
+    }
+
+    public void handlerUnregistered(@NonNull Class<?> type) {
+        readers.remove(type);
+        resolved.clear();
+    }
+
+    private ObjectReader readerFor(Class<?> type) {
+        return readers.computeIfAbsent(type, mapper::readerFor);
+    }
+
+    private Class<?> lookup(String classInfo) {
+        for (var type : callbackHandlers.keySet()) {
+            if (classInfo.equals(type.getName()) || classInfo.equals(type.getCanonicalName())) {
+                return type;
+            }
+        }
+        // Canonical names of nested classes use '.', try the binary name with '$' from the innermost class outwards
+        String name = classInfo;
+        while (true) {
+            try {
+                return Class.forName(name, false, classLoader);
+            } catch (ClassNotFoundException e) {
+                int dot = name.lastIndexOf('.');
+                if (dot < 0) {
+                    log.error("Class not found for class info: {}", classInfo);
+                    return null;
+                }
+                name = name.substring(0, dot) + '$' + name.substring(dot + 1);
+            }
+        }
+    }
+}
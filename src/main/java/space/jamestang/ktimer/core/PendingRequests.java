@@ -0,0 +1,206 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.KTimerMessage;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Table of requests sent to the server that are still waiting for their ACK, keyed by the message ID
+ * of the request. Timeouts are driven by a shared {@link HashedWheelTimer} so thousands of in-flight
+ * requests cost one wheel entry each instead of one scheduled task each.
+ */
+@Slf4j
+public class PendingRequests {
+
+    private final Map<String, Pending> pending = new ConcurrentHashMap<>();
+    private final HashedWheelTimer timer;
+    // Null if ACK latency is not recorded
+    private final LatencyHistogram ackLatency;
+
+    public PendingRequests(@NonNull HashedWheelTimer timer) {
+        this(timer, null);
+    }
+
+    /**
+     * @param ackLatency records the nanoseconds from registering a request to its ACK, null records nothing
+     */
+    public PendingRequests(@NonNull HashedWheelTimer timer, LatencyHistogram ackLatency) {
+        this.timer = timer;
+        this.ackLatency = ackLatency;
+    }
+
+    /**
+     * Starts tracking a request. Must be called before the request is sent, the ACK may arrive
+     * before the sending thread returns.
+     *
+     * @param request       the request, kept until its ACK arrives so it can be sent again after a reconnect
+     * @param timeoutMillis how long to wait for the ACK before failing the future with a {@link TimeoutException}
+     * @return a future completed with the ACK of the request
+     */
+    public CompletableFuture<AckData> register(@NonNull KTimerMessage request, long timeoutMillis) {
+        return register(request, null, timeoutMillis);
+    }
+
+    /**
+     * Starts tracking a request sent over a given route, see {@link #routedTo}.
+     *
+     * @param request       the request, kept until its ACK arrives so it can be sent again after a reconnect
+     * @param route         where the request is sent, e.g. a server; null if not relevant
+     * @param timeoutMillis how long to wait for the ACK before failing the future with a {@link TimeoutException}
+     * @return a future completed with the ACK of the request
+     */
+    public CompletableFuture<AckData> register(@NonNull KTimerMessage request, Object route, long timeoutMillis) {
+        var messageId = request.getMessageId();
+        var future = new CompletableFuture<AckData>();
+        var entry = new Pending(request, future);
+        entry.route = route;
+        if (pending.putIfAbsent(messageId, entry) != null) {
+            future.completeExceptionally(new IllegalStateException("Duplicate message ID: " + messageId));
+            return future;
+        }
+        entry.timeout = timer.newTimeout(() -> expire(messageId), timeoutMillis, TimeUnit.MILLISECONDS);
+        return future;
+    }
+
+    /**
+     * Completes the request the ACK refers to.
+     *
+     * @return false if no request is waiting for this ACK
+     */
+    public boolean complete(@NonNull AckData ack) {
+        if (ack.getOriginalMessageId() == null) {
+            return false;
+        }
+        var entry = pending.remove(ack.getOriginalMessageId());
+        if (entry == null) {
+            return false;
+        }
+        entry.cancelTimeout();
+        if (ackLatency != null) {
+            ackLatency.record(System.nanoTime() - entry.registeredAt);
+        }
+        entry.future.complete(ack);
+        return true;
+    }
+
+    /**
+     * Fails a single request, e.g. because it could not be sent.
+     */
+    public void fail(@NonNull String messageId, @NonNull Throwable cause) {
+        var entry = pending.remove(messageId);
+        if (entry != null) {
+            entry.cancelTimeout();
+            entry.future.completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * Fails every request still waiting for an ACK.
+     */
+    public void failAll(@NonNull Throwable cause) {
+        for (var id : pending.keySet()) {
+            fail(id, cause);
+        }
+    }
+
+    /**
+     * @return the requests waiting for an ACK, oldest first
+     */
+    public List<KTimerMessage> requests() {
+        return pending.values().stream()
+                .map(entry -> entry.request)
+                .sorted(Comparator.comparing(KTimerMessage::getTimestamp))
+                .toList();
+    }
+
+    /**
+     * @return the requests last sent over a route and still waiting for an ACK, oldest first
+     */
+    public List<KTimerMessage> routedTo(@NonNull Object route) {
+        return pending.values().stream()
+                .filter(entry -> entry.route == route)
+                .map(entry -> entry.request)
+                .sorted(Comparator.comparing(KTimerMessage::getTimestamp))
+                .toList();
+    }
+
+    /**
+     * Records that a request is sent again over another route.
+     *
+     * @return false if the request is no longer waiting for an ACK
+     */
+    public boolean reroute(@NonNull String messageId, Object route) {
+        var entry = pending.get(messageId);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            entry.route = route;
+        }
+        return true;
+    }
+
+    /**
+     * Records that a request is sent again over another route, unless it was moved off its old route
+     * meanwhile. Of several callers failing over the same route, only one so sends each request again.
+     *
+     * @return false if the request is no longer waiting for an ACK or no longer on route {@code from}
+     */
+    public boolean reroute(@NonNull String messageId, Object from, Object to) {
+        var entry = pending.get(messageId);
+        if (entry == null) {
+            return false;
+        }
+        synchronized (entry) {
+            if (entry.route != from) {
+                return false;
+            }
+            entry.route = to;
+            return true;
+        }
+    }
+
+    /**
+     * @return number of requests waiting for an ACK
+     */
+    public int size() {
+        return pending.size();
+    }
+
+    private void expire(String messageId) {
+        var entry = pending.remove(messageId);
+        if (entry != null) {
+            log.warn("No ACK received for message ID: {}", messageId);
+            entry.future.completeExceptionally(new TimeoutException("No ACK received for message " + messageId));
+        }
+    }
+
+    private static final class Pending {
+        private final KTimerMessage request;
+        private final CompletableFuture<AckData> future;
+        private final long registeredAt = System.nanoTime();
+        private volatile HashedWheelTimer.Timeout timeout;
+        private volatile Object route;
+
+        private Pending(KTimerMessage request, CompletableFuture<AckData> future) {
+            this.request = request;
+            this.future = future;
+        }
+
+        private void cancelTimeout() {
+            var t = timeout;
+            if (t != null) {
+                t.cancel();
+            }
+        }
+    }
+}
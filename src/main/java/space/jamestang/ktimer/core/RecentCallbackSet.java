@@ -0,0 +1,145 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Remembers recently delivered callbacks by a 64-bit hash of {@code timerId} and attempt, so redeliveries
+ * of the same attempt can be dropped before they reach a handler.
+ * <p>
+ * Hashes are kept in two open-addressing {@code long} tables, one per time window: lookups check both,
+ * inserts go to the current one, and the older one is cleared and reused once the window has passed or
+ * the current one holds {@code maxEntries}. A hash is therefore remembered for at least one window unless
+ * more than {@code maxEntries} callbacks arrive within it. Memory is fixed at two tables of 8-byte slots,
+ * filled to at most 75%.
+ * Distinct callbacks with the same hash are treated as duplicates, which is negligible at 64 bits.
+ */
+public class RecentCallbackSet {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private final long windowNanos;
+    private final int maxEntries;
+    private final int mask;
+    private long[] current;
+    private long[] previous;
+    private int currentSize = 0;
+    private long generationStart;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param windowMillis how long a callback is remembered at least
+     * @param maxEntries   max callbacks remembered per window
+     */
+    public RecentCallbackSet(long windowMillis, int maxEntries) {
+        if (windowMillis <= 0 || maxEntries <= 0 || maxEntries > 1 << 29) {
+            throw new IllegalArgumentException("windowMillis must be positive and maxEntries within (0, 2^29]");
+        }
+        this.windowNanos = windowMillis * 1_000_000L;
+        this.maxEntries = maxEntries;
+        // Power of two above maxEntries * 4/3, so the load factor stays below 0.75 and probing always finds
+        // an empty slot
+        int capacity = Integer.highestOneBit((int) ((long) maxEntries * 4 / 3)) << 1;
+        this.mask = capacity - 1;
+        this.current = new long[capacity];
+        this.previous = new long[capacity];
+        this.generationStart = System.nanoTime();
+    }
+
+    /**
+     * @return the key of a callback, never 0
+     */
+    public static long key(@NonNull String timerId, Integer attempt) {
+        long hash = FNV_OFFSET;
+        for (int i = 0; i < timerId.length(); i++) {
+            hash = (hash ^ timerId.charAt(i)) * FNV_PRIME;
+        }
+        hash = (hash ^ (attempt != null ? attempt : 0)) * FNV_PRIME;
+        // Final mix of MurmurHash3, so the low bits used as table index depend on every input bit
+        hash = (hash ^ (hash >>> 33)) * 0xff51afd7ed558ccdL;
+        hash = (hash ^ (hash >>> 33)) * 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        // 0 marks empty slots
+        return hash != 0 ? hash : 1;
+    }
+
+    /**
+     * Looks a callback up, counting a hit or a miss.
+     */
+    public synchronized boolean contains(long key) {
+        expire(System.nanoTime());
+        boolean found = find(current, key) || find(previous, key);
+        (found ? hits : misses).increment();
+        return found;
+    }
+
+    /**
+     * Remembers a callback.
+     */
+    public synchronized void add(long key) {
+        long now = System.nanoTime();
+        expire(now);
+        if (find(current, key)) {
+            return;
+        }
+        if (currentSize >= maxEntries) {
+            rotate(now);
+        }
+        int index = (int) key & mask;
+        while (current[index] != 0) {
+            index = (index + 1) & mask;
+        }
+        current[index] = key;
+        currentSize++;
+    }
+
+    /**
+     * @return lookups that found a recent callback, i.e. dropped duplicates
+     */
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return lookups that did not find a recent callback
+     */
+    public long misses() {
+        return misses.sum();
+    }
+
+    private boolean find(long[] table, long key) {
+        int index = (int) key & mask;
+        long slot;
+        while ((slot = table[index]) != 0) {
+            if (slot == key) {
+                return true;
+            }
+            index = (index + 1) & mask;
+        }
+        return false;
+    }
+
+    private void expire(long now) {
+        long age = now - generationStart;
+        if (age >= 2 * windowNanos) {
+            // Both windows have passed, rotate() clears the other table
+            Arrays.fill(current, 0);
+            rotate(now);
+        } else if (age >= windowNanos) {
+            rotate(now);
+        }
+    }
+
+    private void rotate(long now) {
+        var reused = previous;
+        Arrays.fill(reused, 0);
+        previous = current;
+        current = reused;
+        currentSize = 0;
+        generationStart = now;
+    }
+}
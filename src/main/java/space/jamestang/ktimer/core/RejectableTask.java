@@ -0,0 +1,13 @@
+package space.jamestang.ktimer.core;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A task that has to learn if the executor rejected it, e.g. to free what was reserved for it.
+ * {@link Bulkhead} and {@link CallbackLanes} tell it instead of throwing, also when the task waited and is
+ * rejected later, while another caller drains.
+ */
+public interface RejectableTask extends Runnable {
+
+    void rejected(RejectedExecutionException e);
+}
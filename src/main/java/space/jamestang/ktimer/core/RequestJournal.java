@@ -0,0 +1,110 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.KTimerMessage;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Bounded buffer for requests made while the client is reconnecting. The journal only accepts requests
+ * while open; once reconnected they are drained and sent in order, and the journal is closed as soon as it
+ * is empty, so no request can be left behind.
+ */
+public class RequestJournal {
+
+    /**
+     * A journaled request and the future completed with its ACK once it was sent.
+     */
+    public record Entry(KTimerMessage message, CompletableFuture<AckData> ack) {
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Entry> entries = new ArrayDeque<>();
+    private volatile boolean open = false;
+
+    public RequestJournal(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("capacity must not be negative, got: " + capacity);
+        }
+        this.capacity = capacity;
+    }
+
+    /**
+     * Starts accepting requests.
+     */
+    public synchronized void open() {
+        open = true;
+    }
+
+    /**
+     * @return true while requests are journaled, a hint for callers that want to avoid locking
+     */
+    public boolean isOpen() {
+        return open;
+    }
+
+    /**
+     * Journals a request if the journal is open.
+     *
+     * @return future for the ACK of the request, failed with an {@link IOException} if the journal is full;
+     * null if the journal is closed and the request should be sent directly
+     */
+    public synchronized CompletableFuture<AckData> append(@NonNull KTimerMessage message) {
+        if (!open) {
+            return null;
+        }
+        if (entries.size() >= capacity) {
+            return CompletableFuture.failedFuture(new IOException("Reconnect journal is full (" + capacity + " requests)"));
+        }
+        var entry = new Entry(message, new CompletableFuture<>());
+        entries.add(entry);
+        return entry.ack();
+    }
+
+    /**
+     * Removes and returns all journaled requests, oldest first. The journal stays open.
+     */
+    public synchronized List<Entry> drain() {
+        var drained = new ArrayList<>(entries);
+        entries.clear();
+        return drained;
+    }
+
+    /**
+     * Stops accepting requests, unless some arrived since the last {@link #drain()}.
+     *
+     * @return true if the journal was empty and is now closed
+     */
+    public synchronized boolean closeIfEmpty() {
+        if (entries.isEmpty()) {
+            open = false;
+        }
+        return !open;
+    }
+
+    /**
+     * Stops accepting requests and fails the journaled ones.
+     */
+    public void close(@NonNull Throwable cause) {
+        List<Entry> failed;
+        synchronized (this) {
+            open = false;
+            failed = drain();
+        }
+        for (var entry : failed) {
+            entry.ack().completeExceptionally(cause);
+        }
+    }
+
+    /**
+     * @return number of journaled requests
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+}
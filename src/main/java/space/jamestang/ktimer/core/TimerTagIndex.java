@@ -0,0 +1,90 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Index of the live timers of a client by tag, so all timers carrying a tag can be found without asking
+ * the server. A timer is added when it is scheduled and removed once it fired, was cancelled or was not
+ * accepted by the server; timers without tags are only counted, see {@link #liveTimers()}.
+ */
+public class TimerTagIndex {
+
+    private final Map<String, Map<String, String>> tagsByTimer = new HashMap<>();
+    // Tag key, then tag value, then the timers carrying that tag in the order they were added
+    private final Map<String, Map<String, Set<String>>> timersByTag = new HashMap<>();
+    private final Set<String> untagged = new HashSet<>();
+
+    /**
+     * Adds a timer, replacing the tags of an earlier timer with the same ID.
+     *
+     * @param tags the tags of the timer, can be null
+     */
+    public synchronized void add(@NonNull String timerId, Map<String, String> tags) {
+        remove(timerId);
+        if (tags == null || tags.isEmpty()) {
+            untagged.add(timerId);
+            return;
+        }
+        var copy = new HashMap<>(tags);
+        tagsByTimer.put(timerId, copy);
+        for (var tag : copy.entrySet()) {
+            timersByTag.computeIfAbsent(tag.getKey(), key -> new HashMap<>())
+                    .computeIfAbsent(tag.getValue(), value -> new LinkedHashSet<>())
+                    .add(timerId);
+        }
+    }
+
+    /**
+     * Removes a timer, unknown IDs are ignored.
+     */
+    public synchronized void remove(@NonNull String timerId) {
+        if (untagged.remove(timerId)) {
+            return;
+        }
+        var tags = tagsByTimer.remove(timerId);
+        if (tags == null) {
+            return;
+        }
+        for (var tag : tags.entrySet()) {
+            var values = timersByTag.get(tag.getKey());
+            var timers = values.get(tag.getValue());
+            timers.remove(timerId);
+            if (timers.isEmpty()) {
+                values.remove(tag.getValue());
+                if (values.isEmpty()) {
+                    timersByTag.remove(tag.getKey());
+                }
+            }
+        }
+    }
+
+    /**
+     * @return the IDs of the live timers carrying a tag, oldest first
+     */
+    public synchronized List<String> timers(@NonNull String key, @NonNull String value) {
+        var values = timersByTag.get(key);
+        var timers = values != null ? values.get(value) : null;
+        return timers != null ? List.copyOf(timers) : List.of();
+    }
+
+    /**
+     * @return number of live timers with tags
+     */
+    public synchronized int size() {
+        return tagsByTimer.size();
+    }
+
+    /**
+     * @return number of live timers, with or without tags
+     */
+    public synchronized int liveTimers() {
+        return tagsByTimer.size() + untagged.size();
+    }
+}
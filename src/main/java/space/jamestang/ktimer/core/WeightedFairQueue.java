@@ -0,0 +1,241 @@
+package space.jamestang.ktimer.core;
+
+import lombok.NonNull;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded queue with one FIFO lane per {@link TimerPriority}, drained by smooth weighted round-robin.
+ * While several lanes hold elements, each lane gets a share of the polls that matches its
+ * {@link TimerPriority#getWeight() weight}, and the picks are interleaved rather than bursty. So HIGH
+ * elements overtake a backlog of LOW ones without starving it, and an idle lane leaves its share to the others.
+ * <p>
+ * An element offered as {@code ordered} is only taken after every element queued before it, whatever
+ * their lane. Thread-safe, guarded by a single lock like {@link java.util.concurrent.ArrayBlockingQueue}.
+ */
+public class WeightedFairQueue<E> {
+
+    private static final TimerPriority[] PRIORITIES = TimerPriority.values();
+
+    private final int capacity;
+    private final ArrayDeque<E>[] lanes;
+    private final ArrayDeque<Barrier>[] barriers;
+    // Smooth weighted round-robin credit of each lane, reset while the lane has nothing to take
+    private final int[] credits = new int[PRIORITIES.length];
+    // Elements ever added to and taken from each lane, ordered elements wait on these counts
+    private final long[] added = new long[PRIORITIES.length];
+    private final long[] taken = new long[PRIORITIES.length];
+    private int size;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    /**
+     * @param capacity max number of elements across all lanes
+     */
+    @SuppressWarnings("unchecked")
+    public WeightedFairQueue(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive, got: " + capacity);
+        }
+        this.capacity = capacity;
+        this.lanes = new ArrayDeque[PRIORITIES.length];
+        this.barriers = new ArrayDeque[PRIORITIES.length];
+        for (int lane = 0; lane < PRIORITIES.length; lane++) {
+            lanes[lane] = new ArrayDeque<>();
+            barriers[lane] = new ArrayDeque<>();
+        }
+    }
+
+    /**
+     * Adds an element unless the queue is full.
+     *
+     * @param priority the lane of the element, null for NORMAL
+     * @param ordered  true to take the element only after everything queued before it
+     * @return false if the queue is full
+     */
+    public boolean offer(@NonNull E element, TimerPriority priority, boolean ordered) {
+        lock.lock();
+        try {
+            if (size == capacity) {
+                return false;
+            }
+            enqueue(element, priority, ordered);
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Adds an element, waiting while the queue is full.
+     *
+     * @param priority the lane of the element, null for NORMAL
+     * @param ordered  true to take the element only after everything queued before it
+     */
+    public void put(@NonNull E element, TimerPriority priority, boolean ordered) throws InterruptedException {
+        lock.lockInterruptibly();
+        try {
+            while (size == capacity) {
+                notFull.await();
+            }
+            enqueue(element, priority, ordered);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next element by weight, null if the queue is empty
+     */
+    public E poll() {
+        lock.lock();
+        try {
+            return size > 0 ? dequeue() : null;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return the next element by weight, null if none was queued within the timeout
+     */
+    public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+        long nanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (size == 0) {
+                if (nanos <= 0) {
+                    return null;
+                }
+                nanos = notEmpty.awaitNanos(nanos);
+            }
+            return dequeue();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves up to {@code maxElements} elements to the collection, in the order they would be polled.
+     *
+     * @return number of elements moved
+     */
+    public int drainTo(@NonNull Collection<? super E> target, int maxElements) {
+        lock.lock();
+        try {
+            int drained = 0;
+            while (drained < maxElements && size > 0) {
+                target.add(dequeue());
+                drained++;
+            }
+            return drained;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int size() {
+        lock.lock();
+        try {
+            return size;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            for (int lane = 0; lane < PRIORITIES.length; lane++) {
+                lanes[lane].clear();
+                barriers[lane].clear();
+                credits[lane] = 0;
+                taken[lane] = added[lane];
+            }
+            size = 0;
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void enqueue(E element, TimerPriority priority, boolean ordered) {
+        int lane = (priority != null ? priority : TimerPriority.NORMAL).ordinal();
+        if (ordered) {
+            barriers[lane].add(new Barrier(added[lane], added.clone()));
+        }
+        lanes[lane].add(element);
+        added[lane]++;
+        size++;
+        notEmpty.signal();
+    }
+
+    /**
+     * Takes from the ready lane with the most credit; every ready lane earns its weight per pick and the
+     * picked one pays the weights of all of them. Must only be called while the queue is not empty.
+     */
+    private E dequeue() {
+        int picked = -1;
+        int total = 0;
+        for (int lane = 0; lane < PRIORITIES.length; lane++) {
+            if (!ready(lane)) {
+                credits[lane] = 0;
+                continue;
+            }
+            int weight = PRIORITIES[lane].getWeight();
+            credits[lane] += weight;
+            total += weight;
+            // Ties go to the higher priority
+            if (picked < 0 || credits[lane] > credits[picked]) {
+                picked = lane;
+            }
+        }
+        // Some lane is always ready: the oldest element has nothing queued before it to wait for
+        credits[picked] -= total;
+        var barrier = barriers[picked].peek();
+        if (barrier != null && barrier.position == taken[picked]) {
+            barriers[picked].poll();
+        }
+        taken[picked]++;
+        size--;
+        notFull.signal();
+        return lanes[picked].poll();
+    }
+
+    /**
+     * @return true if the head of the lane may be taken now
+     */
+    private boolean ready(int lane) {
+        if (lanes[lane].isEmpty()) {
+            return false;
+        }
+        var barrier = barriers[lane].peek();
+        if (barrier == null || barrier.position != taken[lane]) {
+            return true;
+        }
+        for (int other = 0; other < PRIORITIES.length; other++) {
+            if (taken[other] < barrier.before[other]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * An ordered element, by its position in its lane, and the number of elements added to each lane
+     * before it.
+     */
+    private record Barrier(long position, long[] before) {
+    }
+}
@@ -0,0 +1,27 @@
+package space.jamestang.ktimer.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A callback taken from the connection and handed to the handler pool: resolving the payload class,
+ * waiting for room in the callback queue and binding the payload.
+ */
+@Name("space.jamestang.ktimer.CallbackDispatch")
+@Label("Callback Dispatch")
+@Category({"KTimer Client", "Callbacks"})
+@StackTrace(false)
+public final class CallbackDispatchEvent extends Event {
+
+    @Label("Timer ID")
+    public String timerId;
+
+    @Label("Payload Class")
+    public String payloadClass;
+
+    @Label("Attempt")
+    public int attempt;
+
+    @Label("Outcome")
+    @Description("Submitted, or why the callback did not reach its handler")
+    public String outcome;
+}
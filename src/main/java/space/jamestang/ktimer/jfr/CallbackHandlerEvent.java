@@ -0,0 +1,30 @@
+package space.jamestang.ktimer.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A callback handler run, lasting as long as the handler.
+ */
+@Name("space.jamestang.ktimer.CallbackHandler")
+@Label("Callback Handler")
+@Category({"KTimer Client", "Callbacks"})
+@StackTrace(false)
+public final class CallbackHandlerEvent extends Event {
+
+    @Label("Timer ID")
+    public String timerId;
+
+    @Label("Payload Class")
+    public String payloadClass;
+
+    @Label("Attempt")
+    public int attempt;
+
+    @Label("Queue Time")
+    @Description("Time between dispatch and the start of the handler, spent waiting for a handler thread")
+    @Timespan
+    public long queueTime;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,20 @@
+package space.jamestang.ktimer.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A frame received and decoded, lasting as long as decoding took.
+ */
+@Name("space.jamestang.ktimer.FrameReceived")
+@Label("Frame Received")
+@Category({"KTimer Client", "Transport"})
+@StackTrace(false)
+public final class FrameReceivedEvent extends Event {
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+}
@@ -0,0 +1,25 @@
+package space.jamestang.ktimer.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * A frame handed to the transport; lasts as long as queueing it took, which includes waiting for room
+ * in a full write queue.
+ */
+@Name("space.jamestang.ktimer.FrameSent")
+@Label("Frame Sent")
+@Category({"KTimer Client", "Transport"})
+@StackTrace(false)
+public final class FrameSentEvent extends Event {
+
+    @Label("Message Type")
+    public String messageType;
+
+    @Label("Size")
+    @DataAmount
+    public int size;
+
+    @Label("Batch Size")
+    @Description("Timers or ACKs carried by the frame, 1 for single requests")
+    public int batchSize;
+}
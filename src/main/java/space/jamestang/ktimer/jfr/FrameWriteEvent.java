@@ -0,0 +1,24 @@
+package space.jamestang.ktimer.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Queued frames written to the socket in one go, lasting as long as the write took, including waiting
+ * for the socket to accept the bytes.
+ */
+@Name("space.jamestang.ktimer.FrameWrite")
+@Label("Frame Write")
+@Category({"KTimer Client", "Transport"})
+@StackTrace(false)
+public final class FrameWriteEvent extends Event {
+
+    @Label("Connection")
+    public String connection;
+
+    @Label("Frames")
+    public int frames;
+
+    @Label("Bytes")
+    @DataAmount
+    public long bytes;
+}
@@ -0,0 +1,23 @@
+package space.jamestang.ktimer.jfr;
+
+import jdk.jfr.*;
+
+/**
+ * Reconnecting to a server after its connections were lost, from the loss until it is connected again
+ * or the client gives up.
+ */
+@Name("space.jamestang.ktimer.Reconnect")
+@Label("Reconnect")
+@Category({"KTimer Client", "Transport"})
+@StackTrace(false)
+public final class ReconnectEvent extends Event {
+
+    @Label("Server")
+    public String server;
+
+    @Label("Attempts")
+    public int attempts;
+
+    @Label("Succeeded")
+    public boolean succeeded;
+}
@@ -0,0 +1,29 @@
+package space.jamestang.ktimer.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Acknowledges many messages with a single envelope, used for callback ACKs. Only sent to servers that
+ * accepted {@link #CAPABILITY} during registration, others get one ACK frame per callback.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public final class AckBatchData extends MessageData {
+    /**
+     * Capability advertised by the client on registration.
+     */
+    public static final String CAPABILITY = "ack_batch";
+    /**
+     * Key in the registration {@link AckData#getDetails()} set to true by servers accepting batches.
+     */
+    public static final String ACK_DETAIL = "ackBatch";
+
+    private List<AckData> acks;
+}
@@ -6,6 +6,7 @@ import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
 import space.jamestang.ktimer.message.enums.AckStatus;
 
+import java.util.List;
 import java.util.Map;
 
 @EqualsAndHashCode(callSuper = true)
@@ -18,4 +19,8 @@ public final class AckData extends MessageData{
     private Integer code;
     private String message;
     private Map<String, Object> details;
+    /**
+     * Per-timer results when acknowledging a {@link TimerRegisterBatchData}, null otherwise.
+     */
+    private List<TimerAckResult> results;
 }
@@ -1,5 +1,7 @@
 package space.jamestang.ktimer.message;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -10,4 +12,13 @@ public final class ClientMetadata extends MessageData {
     private final String ip;
     private final Integer port;
     private final String environment;
+
+    @JsonCreator
+    public ClientMetadata(@JsonProperty("hostname") String hostname, @JsonProperty("ip") String ip,
+                          @JsonProperty("port") Integer port, @JsonProperty("environment") String environment) {
+        this.hostname = hostname;
+        this.ip = ip;
+        this.port = port;
+        this.environment = environment;
+    }
 }
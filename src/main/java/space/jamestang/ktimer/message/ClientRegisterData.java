@@ -3,12 +3,14 @@ package space.jamestang.ktimer.message;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 
 @EqualsAndHashCode(callSuper = true)
 @Data
 @AllArgsConstructor
+@NoArgsConstructor
 public final class ClientRegisterData extends MessageData {
     private  String instanceId;
     private  String serviceName;
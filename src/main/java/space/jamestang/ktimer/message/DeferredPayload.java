@@ -0,0 +1,54 @@
+package space.jamestang.ktimer.message;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import lombok.NonNull;
+
+import java.io.IOException;
+
+/**
+ * A callback payload kept as buffered tokens while the envelope is decoded, so it can be bound straight
+ * to the handler's type once that is known instead of going through a generic map first.
+ * Serializes back to the original payload.
+ */
+public final class DeferredPayload {
+
+    private final TokenBuffer tokens;
+
+    public DeferredPayload(@NonNull TokenBuffer tokens) {
+        this.tokens = tokens;
+    }
+
+    /**
+     * Binds the payload with a reader for the target type. Can be called more than once.
+     */
+    public <T> T bind(@NonNull ObjectReader reader) throws IOException {
+        try (var parser = tokens.asParser()) {
+            return reader.readValue(parser);
+        }
+    }
+
+    @JsonValue
+    public TokenBuffer tokens() {
+        return tokens;
+    }
+
+    @Override
+    public String toString() {
+        return "DeferredPayload" + tokens;
+    }
+
+    /**
+     * Captures a payload value as a {@link DeferredPayload}, whatever its JSON type.
+     */
+    public static class Deserializer extends JsonDeserializer<DeferredPayload> {
+        @Override
+        public DeferredPayload deserialize(JsonParser p, DeserializationContext ctxt) throws IOException {
+            return new DeferredPayload(ctxt.bufferAsCopyOfValue(p));
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package space.jamestang.ktimer.message;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -14,4 +16,10 @@ public final class ErrorData extends MessageData{
     private final String errorMessage;
     private Map<String, Object> details;
     private List<String> suggestions;
+
+    @JsonCreator
+    public ErrorData(@JsonProperty("errorCode") String errorCode, @JsonProperty("errorMessage") String errorMessage) {
+        this.errorCode = errorCode;
+        this.errorMessage = errorMessage;
+    }
 }
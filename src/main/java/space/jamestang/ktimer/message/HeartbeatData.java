@@ -1,20 +1,31 @@
 package space.jamestang.ktimer.message;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
+/**
+ * State of a client sent with every heartbeat.
+ */
 @EqualsAndHashCode(callSuper = true)
 @Data
 public final class HeartbeatData extends MessageData{
     private final String status;
-    private final Integer activeTimers;
-    private final Long processedCount;
-    private final Long uptime;
+    private final Integer activeTimers; // Timers scheduled by the client that have not fired or been cancelled yet
+    private final Integer pendingCallbacks; // Callbacks queued or running in the client
+    private final Long processedCount; // Callbacks whose handler has run since the client started
+    private final Long uptime; // Milliseconds since the client started, null if not reported
     private SystemInfo systemInfo;
-}
 
-record SystemInfo(
-        Double cpuUsage,
-        Double memoryUsage,
-        Double diskUsage
-){}
\ No newline at end of file
+    @JsonCreator
+    public HeartbeatData(@JsonProperty("status") String status, @JsonProperty("activeTimers") Integer activeTimers,
+                         @JsonProperty("pendingCallbacks") Integer pendingCallbacks,
+                         @JsonProperty("processedCount") Long processedCount, @JsonProperty("uptime") Long uptime) {
+        this.status = status;
+        this.activeTimers = activeTimers;
+        this.pendingCallbacks = pendingCallbacks;
+        this.processedCount = processedCount;
+        this.uptime = uptime;
+    }
+}
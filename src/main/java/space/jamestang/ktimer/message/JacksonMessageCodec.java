@@ -0,0 +1,66 @@
+package space.jamestang.ktimer.message;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import lombok.NonNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * {@link MessageCodec} backed by a Jackson {@link ObjectMapper}, so every data format Jackson supports
+ * shares the same {@link MessageData} type mapping.
+ */
+public class JacksonMessageCodec implements MessageCodec {
+
+    private static final JacksonMessageCodec JSON = new JacksonMessageCodec("json", new ObjectMapper().findAndRegisterModules());
+    private static final JacksonMessageCodec SMILE = new JacksonMessageCodec("smile", new SmileMapper().findAndRegisterModules());
+
+    private final String name;
+    private final ObjectMapper mapper;
+
+    public JacksonMessageCodec(@NonNull String name, @NonNull ObjectMapper mapper) {
+        this.name = name;
+        this.mapper = mapper;
+    }
+
+    /**
+     * @return the JSON codec, understood by every server and used for the registration handshake
+     */
+    public static JacksonMessageCodec json() {
+        return JSON;
+    }
+
+    /**
+     * @return the binary Smile codec, more compact and cheaper to encode and decode than JSON
+     */
+    public static JacksonMessageCodec smile() {
+        return SMILE;
+    }
+
+    @Override
+    public String name() {
+        return name;
+    }
+
+    /**
+     * @return the mapper used by this codec, e.g. to convert payloads with the same configuration
+     */
+    public ObjectMapper mapper() {
+        return mapper;
+    }
+
+    @Override
+    public byte[] encode(@NonNull KTimerMessage message) throws IOException {
+        return mapper.writeValueAsBytes(message);
+    }
+
+    @Override
+    public KTimerMessage decode(@NonNull ByteBuffer frame) throws IOException {
+        if (frame.hasArray()) {
+            return mapper.readValue(frame.array(), frame.arrayOffset() + frame.position(), frame.remaining(), KTimerMessage.class);
+        }
+        return mapper.readValue(new ByteBufferBackedInputStream(frame), KTimerMessage.class);
+    }
+}
@@ -13,15 +13,20 @@ import java.util.Map;
 @SuppressWarnings("unused")
 public class MessageBuilder {
 
-    public static MessageBuilder INSTANCE = new MessageBuilder();
+    // Shared by everything not tied to a client, KTimerClient uses its own builder
+    public static MessageBuilder INSTANCE = new MessageBuilder(MessageIdGenerator.unique("msg"));
 
-    private MessageBuilder() {
+    private final MessageIdGenerator ids;
+
+    /**
+     * @param ids generates the message IDs of the messages built
+     */
+    public MessageBuilder(@NonNull MessageIdGenerator ids) {
+        this.ids = ids;
     }
 
     private String generateMessageId() {
-        var timestamp = System.currentTimeMillis();
-        var radom = (int) (Math.random() * 10000);
-        return String.format("msg_%d_%04d", timestamp, radom);
+        return ids.nextId();
     }
 
 
@@ -30,6 +35,15 @@ public class MessageBuilder {
                                               @NonNull String serviceName,
                                               @NonNull String version,
                                               @NonNull ClientMetadata metadata) {
+        return createClientRegister(clientId, instanceId, serviceName, version, metadata, new ArrayList<>());
+    }
+
+    public KTimerMessage createClientRegister(@NonNull String clientId,
+                                              @NonNull String instanceId,
+                                              @NonNull String serviceName,
+                                              @NonNull String version,
+                                              @NonNull ClientMetadata metadata,
+                                              @NonNull List<String> capabilities) {
         return new KTimerMessage(
                 version,
                 MessageType.CLIENT_REGISTER,
@@ -40,7 +54,7 @@ public class MessageBuilder {
                         instanceId,
                         serviceName,
                         version,
-                        new ArrayList<>(),
+                        capabilities,
                         metadata
                 )
 
@@ -55,6 +69,22 @@ public class MessageBuilder {
                                              @NonNull String classInfo,
                                              TimerPriority priority,
                                              Map<String, String> tags) {
+        return new KTimerMessage(
+                "1.0",
+                MessageType.TIMER_REGISTER,
+                generateMessageId(),
+                clientId,
+                System.currentTimeMillis(),
+                createTimerRegisterData(timerId, delayMillis, payload, classInfo, priority, tags)
+        );
+    }
+
+    public TimerRegisterData createTimerRegisterData(@NonNull String timerId,
+                                                     @NonNull Long delayMillis,
+                                                     @NonNull Object payload,
+                                                     @NonNull String classInfo,
+                                                     TimerPriority priority,
+                                                     Map<String, String> tags) {
         var data = new TimerRegisterData(
                 timerId,
                 delayMillis,
@@ -63,14 +93,25 @@ public class MessageBuilder {
         data.setPriority(priority);
         data.setTags(tags);
         data.setClassInfo(classInfo);
+        return data;
+    }
 
+    /**
+     * Create a message registering many timers at once, the envelope is shared by all of them.
+     *
+     * @param clientId client ID of the sender
+     * @param timers   timers to register, see {@link #createTimerRegisterData}
+     * @return KTimerMessage representing the batch registration
+     */
+    public KTimerMessage createTimerRegisterBatch(@NonNull String clientId,
+                                                  @NonNull List<TimerRegisterData> timers) {
         return new KTimerMessage(
                 "1.0",
-                MessageType.TIMER_REGISTER,
+                MessageType.TIMER_REGISTER_BATCH,
                 generateMessageId(),
                 clientId,
                 System.currentTimeMillis(),
-                data
+                new TimerRegisterBatchData(timers)
         );
     }
 
@@ -97,16 +138,25 @@ public class MessageBuilder {
             @NonNull String version,
             @NonNull ClientMetadata metadata
     ) {
+        return createHeartbeat(clientId, new HeartbeatData("healthy", 0, 0, 0L, 0L));
+    }
+
+    /**
+     * Create a heartbeat message reporting the state of the client. The client is identified by the
+     * connection it is sent on, its metadata was sent with the registration.
+     *
+     * @param clientId client ID of the sender
+     * @param data     state of the client, see {@link HeartbeatData}
+     * @return KTimerMessage representing the heartbeat
+     */
+    public KTimerMessage createHeartbeat(@NonNull String clientId, @NonNull HeartbeatData data) {
         return new KTimerMessage(
                 "1.0",
                 MessageType.HEARTBEAT,
                 generateMessageId(),
                 clientId,
                 System.currentTimeMillis(),
-                new HeartbeatData("healthy",
-                        0,
-                        0L,
-                        0L)
+                data
         );
     }
 
@@ -124,19 +174,49 @@ public class MessageBuilder {
                                    @NonNull String originalMessageId,
                                    AckStatus status, String message,
                                    Map<String, Object> details) {
+        return createAck(clientId, createAckData(originalMessageId, status, message, details));
+    }
+
+    public KTimerMessage createAck(@NonNull String clientId, @NonNull AckData data) {
+        return new KTimerMessage(
+                "1.0",
+                MessageType.ACK,
+                generateMessageId(),
+                clientId,
+                System.currentTimeMillis(),
+                data
+        );
+    }
+
+    /**
+     * Create the body of an acknowledgment, see {@link #createAck} for the defaults.
+     */
+    public AckData createAckData(@NonNull String originalMessageId,
+                                 AckStatus status, String message,
+                                 Map<String, Object> details) {
         var data = new AckData();
         data.setOriginalMessageId(originalMessageId);
         data.setStatus(status != null ? status : AckStatus.SUCCESS);
         data.setMessage(message != null ? message : "Success");
         data.setDetails(details != null ? details : Map.of());
+        return data;
+    }
 
+    /**
+     * Create a message acknowledging many messages at once, the envelope is shared by all of them.
+     *
+     * @param clientId client ID of the sender
+     * @param acks     acknowledgments, see {@link #createAckData}
+     * @return KTimerMessage representing the batch acknowledgment
+     */
+    public KTimerMessage createAckBatch(@NonNull String clientId, @NonNull List<AckData> acks) {
         return new KTimerMessage(
                 "1.0",
-                MessageType.ACK,
+                MessageType.ACK_BATCH,
                 generateMessageId(),
                 clientId,
                 System.currentTimeMillis(),
-                data
+                new AckBatchData(acks)
         );
     }
 
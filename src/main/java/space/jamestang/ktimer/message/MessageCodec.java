@@ -0,0 +1,29 @@
+package space.jamestang.ktimer.message;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes {@link KTimerMessage}s to frame bodies and back.
+ * <p>
+ * Every connection starts with {@link JacksonMessageCodec#json()}; other codecs are offered to the server
+ * through the {@code capabilities} of {@link ClientRegisterData} as {@code "codec:<name>"} and used once
+ * the server names them in the {@code codec} detail of its registration ACK.
+ */
+public interface MessageCodec {
+
+    String CAPABILITY_PREFIX = "codec:";
+    String ACK_DETAIL = "codec";
+
+    /**
+     * @return the name the codec is negotiated with, e.g. "json"
+     */
+    String name();
+
+    byte[] encode(KTimerMessage message) throws IOException;
+
+    /**
+     * @param frame the frame body, only read between its position and limit
+     */
+    KTimerMessage decode(ByteBuffer frame) throws IOException;
+}
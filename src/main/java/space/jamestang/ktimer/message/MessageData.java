@@ -7,6 +7,7 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
 @JsonTypeInfo(use = JsonTypeInfo.Id.NAME, include = JsonTypeInfo.As.PROPERTY, property = "type")
 @JsonSubTypes(value = {
         @JsonSubTypes.Type(value = AckData.class, name = "ack_data"),
+        @JsonSubTypes.Type(value = AckBatchData.class, name = "ack_batch_data"),
         @JsonSubTypes.Type(value = ClientMetadata.class, name = "client_metadata"),
         @JsonSubTypes.Type(value = ClientRegisterData.class, name = "client_register_data"),
         @JsonSubTypes.Type(value = ErrorData.class, name = "error_data"),
@@ -14,8 +15,9 @@ import com.fasterxml.jackson.annotation.JsonTypeInfo;
         @JsonSubTypes.Type(value = KTimerMessage.class, name = "ktimer_message"),
         @JsonSubTypes.Type(value = TimerCallbackData.class, name = "timer_callback_data"),
         @JsonSubTypes.Type(value = TimerCancelData.class, name = "timer_cancel_data"),
-        @JsonSubTypes.Type(value = TimerRegisterData.class, name = "timer_register_data")
+        @JsonSubTypes.Type(value = TimerRegisterData.class, name = "timer_register_data"),
+        @JsonSubTypes.Type(value = TimerRegisterBatchData.class, name = "timer_register_batch_data")
 })
 
-public sealed class MessageData permits AckData, ClientMetadata, ClientRegisterData, ErrorData, HeartbeatData, TimerCallbackData, TimerCancelData, TimerRegisterData {
+public sealed class MessageData permits AckData, AckBatchData, ClientMetadata, ClientRegisterData, ErrorData, HeartbeatData, TimerCallbackData, TimerCancelData, TimerRegisterData, TimerRegisterBatchData {
 }
@@ -0,0 +1,36 @@
+package space.jamestang.ktimer.message;
+
+import lombok.NonNull;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Generates the message IDs of outbound messages. ACKs are matched to requests by message ID, so IDs
+ * must never repeat while a request may still be acknowledged, including across restarts when requests
+ * are replayed from the outbox. Called concurrently from any thread.
+ */
+@FunctionalInterface
+public interface MessageIdGenerator {
+
+    String nextId();
+
+    /**
+     * IDs made of a prefix and a counter in base 36, unique across threads as long as the prefix is
+     * unique. No formatting and no shared random, an ID costs one atomic increment and one concatenation.
+     */
+    static MessageIdGenerator sequential(@NonNull String prefix) {
+        var counter = new AtomicLong();
+        var base = prefix + "_";
+        return () -> base + Long.toString(counter.getAndIncrement(), 36);
+    }
+
+    /**
+     * Sequential IDs whose prefix adds the start time and a random suffix to a name, so a restarted
+     * process or another process with the same name starts a fresh series of IDs.
+     */
+    static MessageIdGenerator unique(@NonNull String name) {
+        return sequential(name + "_" + Long.toString(System.currentTimeMillis(), 36)
+                + Integer.toString(ThreadLocalRandom.current().nextInt(36 * 36 * 36), 36));
+    }
+}
@@ -0,0 +1,11 @@
+package space.jamestang.ktimer.message;
+
+/**
+ * Resource usage of the client process reported with heartbeats, each a fraction between 0 and 1 or null
+ * if unknown.
+ */
+public record SystemInfo(
+        Double cpuUsage,
+        Double memoryUsage,
+        Double diskUsage
+){}
@@ -0,0 +1,19 @@
+package space.jamestang.ktimer.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import space.jamestang.ktimer.message.enums.AckStatus;
+
+/**
+ * Outcome of a single timer inside a batch registration or a cancellation by tag.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+public class TimerAckResult {
+    private String timerId;
+    private AckStatus status;
+    private Integer code;
+    private String message;
+}
@@ -1,9 +1,11 @@
 package space.jamestang.ktimer.message;
 
+import com.fasterxml.jackson.databind.annotation.JsonDeserialize;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.NoArgsConstructor;
+import space.jamestang.ktimer.message.enums.TimerPriority;
 
 @Data
 @EqualsAndHashCode(callSuper = true)
@@ -14,6 +16,20 @@ public final class TimerCallbackData extends MessageData {
     private Long originalTimestamp;
     private Long executeTimestamp;
     private Integer attempt = 1;
+    /**
+     * Decoded as a {@link DeferredPayload}; replaced with the bound payload object before the handler runs.
+     */
+    @JsonDeserialize(using = DeferredPayload.Deserializer.class)
     private Object payload;
     private String classInfo;
+    /**
+     * Priority the timer was registered with, NORMAL if the server doesn't send it. Picks the lane the
+     * callback waits in for a handler thread.
+     */
+    private TimerPriority priority = TimerPriority.NORMAL;
+
+    public TimerCallbackData(String timerId, Long originalTimestamp, Long executeTimestamp, Integer attempt,
+                             Object payload, String classInfo) {
+        this(timerId, originalTimestamp, executeTimestamp, attempt, payload, classInfo, TimerPriority.NORMAL);
+    }
 }
@@ -1,5 +1,7 @@
 package space.jamestang.ktimer.message;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 
@@ -9,4 +11,9 @@ public final class TimerCancelData extends MessageData{
     private final String timerId;
     private String reason;
     private final Boolean force = false;
+
+    @JsonCreator
+    public TimerCancelData(@JsonProperty("timerId") String timerId) {
+        this.timerId = timerId;
+    }
 }
@@ -0,0 +1,20 @@
+package space.jamestang.ktimer.message;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Registers many timers with a single envelope. The server answers with one {@link AckData}
+ * carrying a {@link TimerAckResult} per timer.
+ */
+@Data
+@EqualsAndHashCode(callSuper = true)
+@AllArgsConstructor
+@NoArgsConstructor
+public final class TimerRegisterBatchData extends MessageData {
+    private List<TimerRegisterData> timers;
+}
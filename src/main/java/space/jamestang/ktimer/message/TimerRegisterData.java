@@ -1,5 +1,7 @@
 package space.jamestang.ktimer.message;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonProperty;
 import lombok.Data;
 import lombok.EqualsAndHashCode;
 import lombok.Setter;
@@ -20,4 +22,12 @@ public final class TimerRegisterData extends MessageData{
     private final Object payload;
     private String classInfo;
     private Map<String, String> tags = null;
+
+    @JsonCreator
+    public TimerRegisterData(@JsonProperty("timerId") String timerId, @JsonProperty("delayMillis") long delayMillis,
+                             @JsonProperty("payload") Object payload) {
+        this.timerId = timerId;
+        this.delayMillis = delayMillis;
+        this.payload = payload;
+    }
 }
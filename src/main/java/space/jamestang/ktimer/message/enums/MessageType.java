@@ -2,7 +2,7 @@ package space.jamestang.ktimer.message.enums;
 
 public enum MessageType {
     CLIENT_REGISTER, CLIENT_UNREGISTER,
-    TIMER_REGISTER, TIMER_CANCEL,
+    TIMER_REGISTER, TIMER_REGISTER_BATCH, TIMER_CANCEL,
     TIMER_CALLBACK, HEARTBEAT,
-    ACK, ERROR
+    ACK, ACK_BATCH, ERROR
 }
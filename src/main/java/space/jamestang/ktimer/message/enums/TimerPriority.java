@@ -1,5 +1,21 @@
 package space.jamestang.ktimer.message.enums;
 
+import lombok.Getter;
+
+/**
+ * Priority of a timer. The client sends and dispatches the timers of each priority in a lane of their own,
+ * see {@link space.jamestang.ktimer.core.WeightedFairQueue}.
+ */
+@Getter
 public enum TimerPriority {
-    HIGH, NORMAL, LOW
+    HIGH(6), NORMAL(3), LOW(1);
+
+    /**
+     * Share of the sends and handler slots this priority gets while other priorities are waiting too.
+     */
+    private final int weight;
+
+    TimerPriority(int weight) {
+        this.weight = weight;
+    }
 }
@@ -0,0 +1,180 @@
+package space.jamestang.ktimer.transport;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.core.FrameWriter;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Default transport: a blocking {@link Socket} with one reader thread and one {@link FrameWriter} thread
+ * per connection. Inbound frames are read into a pooled {@link FrameBuffer} and handed to the listener
+ * without copying.
+ */
+@Slf4j
+public class BlockingSocketTransport implements Transport {
+
+    private static final long CLOSE_TIMEOUT_MILLIS = 1000;
+
+    private final TransportOptions options;
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    private final FrameBuffer frameBuffer;
+    // The reader thread waits on this lock while reading is paused
+    private final Object readGate = new Object();
+    private volatile boolean readPaused;
+    private Socket socket;
+    private FrameWriter writer;
+    private FrameListener listener;
+
+    public BlockingSocketTransport(@NonNull TransportOptions options) {
+        this.options = options;
+        this.frameBuffer = new FrameBuffer(8 * 1024, options.maxFrameLength());
+    }
+
+    @Override
+    public void connect(@NonNull String host, int port, @NonNull FrameListener listener) throws IOException {
+        this.listener = listener;
+        socket = new Socket(host, port);
+        writer = new FrameWriter(
+                new BufferedOutputStream(socket.getOutputStream(), 64 * 1024),
+                options.writeQueueCapacity(),
+                options.maxWriteBatchSize(),
+                options.maxWriteLingerNanos(),
+                "ktimer-writer-" + options.name()
+        );
+        writer.start();
+
+        var in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+        Thread readThread = new Thread(() -> readLoop(in), "ktimer-reader-" + options.name());
+        readThread.setDaemon(true);
+        readThread.start();
+    }
+
+    private void readLoop(DataInputStream in) {
+        Throwable cause = null;
+        ByteBuffer frame = null;
+        try {
+            while (!closed.get()) {
+                int length = in.readInt();
+                byte[] data = frameBuffer.acquire(length);
+                in.readFully(data, 0, length);
+                if (frame == null || frame.array() != data) {
+                    frame = ByteBuffer.wrap(data);
+                }
+                frame.clear().limit(length);
+                listener.onFrame(frame);
+                awaitReadResumed();
+            }
+        } catch (IOException e) {
+            if (!closed.get()) {
+                cause = e;
+            }
+        }
+        close();
+        listener.onClosed(cause);
+    }
+
+    private void awaitReadResumed() throws InterruptedIOException {
+        if (!readPaused) {
+            return;
+        }
+        synchronized (readGate) {
+            try {
+                while (readPaused && !closed.get()) {
+                    readGate.wait();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while reading is paused");
+            }
+        }
+    }
+
+    @Override
+    public void pauseReading() {
+        readPaused = true;
+    }
+
+    @Override
+    public void resumeReading() {
+        synchronized (readGate) {
+            readPaused = false;
+            readGate.notifyAll();
+        }
+    }
+
+    @Override
+    public void send(@NonNull byte[] frame, TimerPriority priority, boolean ordered) throws IOException {
+        if (writer == null) {
+            throw new IllegalStateException("Output stream is not initialized. Please connect first.");
+        }
+        writer.send(frame, priority, ordered);
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        return socket != null ? (InetSocketAddress) socket.getLocalSocketAddress() : null;
+    }
+
+    @Override
+    public int pendingFrames() {
+        return writer != null ? writer.pendingFrames() : 0;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return socket != null && !closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        synchronized (readGate) {
+            readGate.notifyAll();
+        }
+        if (writer != null) {
+            writer.close();
+        }
+        if (socket == null) {
+            return;
+        }
+        try {
+            // Stops the reader now, the socket itself stays open for the frames still queued
+            socket.shutdownInput();
+        } catch (IOException e) {
+            log.debug("Failed to shut down socket input: {}", e.getMessage());
+        }
+        Thread.ofVirtual().name("ktimer-closer-" + options.name()).start(this::closeSocket);
+    }
+
+    /**
+     * Closes the socket once the writer has written what was queued, or after {@link #CLOSE_TIMEOUT_MILLIS}
+     * if the peer stopped reading.
+     */
+    private void closeSocket() {
+        try {
+            if (writer != null && !writer.awaitStopped(CLOSE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS)) {
+                log.warn("Frame writer still busy after {} ms, closing socket", CLOSE_TIMEOUT_MILLIS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            socket.close();
+        } catch (IOException e) {
+            log.warn("Error closing socket: {}", e.getMessage());
+        }
+    }
+}
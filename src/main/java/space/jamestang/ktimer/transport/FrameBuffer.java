@@ -0,0 +1,76 @@
+package space.jamestang.ktimer.transport;
+
+import java.io.IOException;
+
+/**
+ * Per-connection receive buffer reused across frames.
+ * <p>
+ * The buffer grows to fit the largest frame seen and shrinks back by half once enough consecutive frames
+ * fit into a quarter of it, so a single burst of large payloads does not pin memory forever.
+ * Frame lengths above {@code maxFrameLength} are rejected, which protects against corrupt length prefixes.
+ */
+public class FrameBuffer {
+
+    // Consecutive small frames before the buffer is shrunk
+    static final int SHRINK_AFTER = 64;
+
+    private final int initialCapacity;
+    private final int maxFrameLength;
+    private byte[] buffer;
+    private int smallFrames = 0;
+
+    public FrameBuffer(int initialCapacity, int maxFrameLength) {
+        if (initialCapacity <= 0 || maxFrameLength <= 0) {
+            throw new IllegalArgumentException("initialCapacity and maxFrameLength must be positive");
+        }
+        this.initialCapacity = initialCapacity;
+        this.maxFrameLength = maxFrameLength;
+        this.buffer = new byte[initialCapacity];
+    }
+
+    /**
+     * Returns a buffer of at least {@code length} bytes. The array is only valid until the next call.
+     *
+     * @throws IOException if the length is negative or exceeds the max frame length
+     */
+    public byte[] acquire(int length) throws IOException {
+        checkFrameLength(length, maxFrameLength);
+        if (length > buffer.length) {
+            buffer = new byte[grownCapacity(buffer.length, length, maxFrameLength)];
+            smallFrames = 0;
+        } else if (buffer.length > initialCapacity && length <= buffer.length >>> 2) {
+            if (++smallFrames >= SHRINK_AFTER) {
+                buffer = new byte[Math.max(initialCapacity, buffer.length >>> 1)];
+                smallFrames = 0;
+            }
+        } else {
+            smallFrames = 0;
+        }
+        return buffer;
+    }
+
+    /**
+     * @return the current capacity, i.e. the high-water mark after shrinking
+     */
+    public int capacity() {
+        return buffer.length;
+    }
+
+    static void checkFrameLength(int length, int maxFrameLength) throws IOException {
+        if (length < 0) {
+            throw new IOException("Invalid frame length: " + length);
+        }
+        if (length > maxFrameLength) {
+            throw new IOException("Frame length " + length + " exceeds the max frame length " + maxFrameLength);
+        }
+    }
+
+    static int grownCapacity(int current, int needed, int max) {
+        long capacity = current;
+        while (capacity < needed) {
+            capacity <<= 1;
+        }
+        // Leave room for the length prefix on buffers that also hold it
+        return (int) Math.min(capacity, (long) max + 4);
+    }
+}
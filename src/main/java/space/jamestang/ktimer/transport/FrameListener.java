@@ -0,0 +1,23 @@
+package space.jamestang.ktimer.transport;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Receives inbound frames from a {@link Transport}.
+ */
+public interface FrameListener {
+
+    /**
+     * Called for every complete inbound frame, in order.
+     *
+     * @param frame the frame body without length prefix; only valid for the duration of the call
+     */
+    void onFrame(ByteBuffer frame);
+
+    /**
+     * Called once when the connection is lost or closed.
+     *
+     * @param cause the error that closed the connection, null if it was closed locally
+     */
+    void onClosed(Throwable cause);
+}
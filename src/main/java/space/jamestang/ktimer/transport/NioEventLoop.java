@@ -0,0 +1,141 @@
+package space.jamestang.ktimer.transport;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+/**
+ * A single selector thread serving any number of {@link NioTransport} connections, so several clients in one
+ * JVM share one I/O thread instead of two threads per connection.
+ * <p>
+ * Frames are delivered to the {@link FrameListener}s on this thread; listeners must hand expensive work off.
+ */
+@Slf4j
+public class NioEventLoop implements Closeable {
+
+    private static volatile NioEventLoop shared;
+
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final Thread thread;
+    private volatile boolean closed = false;
+
+    public NioEventLoop(@NonNull String name) {
+        try {
+            this.selector = Selector.open();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open selector", e);
+        }
+        this.thread = new Thread(this::run, name);
+        this.thread.setDaemon(true);
+        this.thread.start();
+    }
+
+    /**
+     * @return an event loop shared by every client of the JVM, created on first use
+     */
+    public static NioEventLoop shared() {
+        if (shared == null) {
+            synchronized (NioEventLoop.class) {
+                if (shared == null) {
+                    shared = new NioEventLoop("ktimer-nio");
+                }
+            }
+        }
+        return shared;
+    }
+
+    /**
+     * Runs a task on the event loop thread. Tasks queued by the loop thread itself, e.g. a flush requested
+     * while a frame is delivered, run once the selected keys have been handled.
+     */
+    public void execute(@NonNull Runnable task) {
+        tasks.add(task);
+        if (!inEventLoop()) {
+            selector.wakeup();
+        }
+    }
+
+    public boolean inEventLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    Selector selector() {
+        return selector;
+    }
+
+    private void run() {
+        while (!closed) {
+            try {
+                // Never block while tasks are queued, they may have been added after the last wakeup
+                if (tasks.isEmpty()) {
+                    selector.select();
+                } else {
+                    selector.selectNow();
+                }
+                var keys = selector.selectedKeys();
+                for (var key : keys) {
+                    handle(key);
+                }
+                keys.clear();
+                runTasks();
+            } catch (Throwable t) {
+                log.error("Unexpected error in event loop: {}", t.getMessage(), t);
+            }
+        }
+        for (var key : selector.keys()) {
+            if (key.attachment() instanceof NioTransport transport) {
+                transport.close();
+            }
+        }
+        runTasks();
+        try {
+            selector.close();
+        } catch (IOException e) {
+            log.warn("Error closing selector: {}", e.getMessage());
+        }
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (Throwable t) {
+                log.error("Event loop task failed: {}", t.getMessage(), t);
+            }
+        }
+    }
+
+    private void handle(SelectionKey key) {
+        if (!key.isValid() || !(key.attachment() instanceof NioTransport transport)) {
+            return;
+        }
+        if (key.isConnectable()) {
+            transport.onConnectable();
+            return;
+        }
+        if (key.isReadable()) {
+            transport.onReadable();
+        }
+        if (key.isValid() && key.isWritable()) {
+            transport.onWritable();
+        }
+    }
+
+    /**
+     * Stops the loop and closes every connection it serves.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        selector.wakeup();
+    }
+}
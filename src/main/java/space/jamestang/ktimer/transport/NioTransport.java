@@ -0,0 +1,488 @@
+package space.jamestang.ktimer.transport;
+
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.core.WeightedFairQueue;
+import space.jamestang.ktimer.jfr.FrameWriteEvent;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.InetSocketAddress;
+import java.net.SocketException;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Non-blocking transport multiplexed on a {@link NioEventLoop}. Reads and writes happen on the loop thread
+ * using per-connection direct buffers that are reused across frames; senders only enqueue frames.
+ * Inbound frames are handed to the listener as a view of the read buffer, without copying.
+ * <p>
+ * Outbound frames are coalesced like in {@link BlockingSocketTransport}, linger is not supported.
+ * <p>
+ * The connection is established on the loop thread too, without blocking it. When the write queue is full,
+ * other threads wait for room; the loop thread can't, so its frames are held back in order and reading
+ * stops until they fit into the queue.
+ */
+@Slf4j
+public class NioTransport implements Transport {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    // Buffers written per flush before yielding the loop to other connections
+    private static final int MAX_FLUSH_ROUNDS = 16;
+
+    private final NioEventLoop loop;
+    private final TransportOptions options;
+    private final WeightedFairQueue<byte[]> writeQueue;
+    private final AtomicBoolean writeScheduled = new AtomicBoolean(false);
+    private final AtomicBoolean closed = new AtomicBoolean(false);
+    // Only cleared by the event loop thread, see resumeReading
+    private volatile boolean readPaused;
+
+    private SocketChannel channel;
+    private SelectionKey key;
+    private FrameListener listener;
+    // Completed once connected, connect waits for it unless called on the loop thread
+    private CompletableFuture<Void> connecting;
+    private boolean connectAwaited;
+
+    // Only touched by the event loop thread
+    private ByteBuffer readBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    // Frames the loop thread sent while the write queue was full, moved into it as it drains
+    private final ArrayDeque<Overflow> overflow = new ArrayDeque<>();
+    private int smallFrames = 0;
+    private boolean draining = false;
+    private byte[] carry;
+    private ByteBuffer oversized;
+    // Covers the write buffer from filling it until the socket took all of it
+    private FrameWriteEvent writeEvent;
+    private int bufferedFrames;
+
+    public NioTransport(@NonNull NioEventLoop loop, @NonNull TransportOptions options) {
+        this.loop = loop;
+        this.options = options;
+        this.writeQueue = new WeightedFairQueue<>(options.writeQueueCapacity());
+    }
+
+    /**
+     * @return a factory creating transports on the given event loop
+     */
+    public static TransportFactory factory(@NonNull NioEventLoop loop) {
+        return options -> new NioTransport(loop, options);
+    }
+
+    /**
+     * @return a factory creating transports on the JVM wide {@link NioEventLoop#shared()} loop
+     */
+    public static TransportFactory factory() {
+        return options -> new NioTransport(NioEventLoop.shared(), options);
+    }
+
+    /**
+     * Connects on the loop thread. Waits until connected, except on the loop thread itself: there it returns
+     * once the connection is started, and a failure to connect is reported to {@link FrameListener#onClosed}.
+     */
+    @Override
+    public void connect(@NonNull String host, int port, @NonNull FrameListener listener) throws IOException {
+        this.listener = listener;
+        var address = new InetSocketAddress(host, port);
+        channel = SocketChannel.open();
+        channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+        channel.configureBlocking(false);
+        connecting = new CompletableFuture<>();
+
+        if (loop.inEventLoop()) {
+            startConnect(address);
+            return;
+        }
+        connectAwaited = true;
+        loop.execute(() -> {
+            try {
+                startConnect(address);
+            } catch (IOException e) {
+                closeWithError(e);
+            }
+        });
+        try {
+            connecting.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+            throw new InterruptedIOException("Interrupted while connecting");
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException cause) {
+                throw cause;
+            }
+            throw new IOException("Failed to connect", e.getCause());
+        }
+    }
+
+    private void startConnect(InetSocketAddress address) throws IOException {
+        try {
+            boolean done = channel.connect(address);
+            key = channel.register(loop.selector(), done ? 0 : SelectionKey.OP_CONNECT, this);
+            if (done) {
+                connected();
+            }
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    void onConnectable() {
+        try {
+            if (channel.finishConnect()) {
+                connected();
+            }
+        } catch (IOException e) {
+            closeWithError(e);
+        }
+    }
+
+    private void connected() {
+        key.interestOps(0);
+        updateReadInterest();
+        connecting.complete(null);
+        // Frames sent while connecting
+        flush();
+    }
+
+    @Override
+    public void send(@NonNull byte[] frame, TimerPriority priority, boolean ordered) throws IOException {
+        if (closed.get()) {
+            throw new SocketException("Connection is closed");
+        }
+        if (loop.inEventLoop()) {
+            // Blocking here would stop the loop that drains the queue; behind earlier held back frames to keep the order
+            if (!overflow.isEmpty() || !writeQueue.offer(frame, priority, ordered)) {
+                overflow.add(new Overflow(frame, priority, ordered));
+                setReadInterest(false);
+            }
+        } else if (!writeQueue.offer(frame, priority, ordered)) {
+            try {
+                writeQueue.put(frame, priority, ordered);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while queueing frame");
+            }
+        }
+        if (writeScheduled.compareAndSet(false, true)) {
+            loop.execute(this::flush);
+        }
+    }
+
+    @Override
+    public void pauseReading() {
+        readPaused = true;
+        if (loop.inEventLoop()) {
+            setReadInterest(false);
+        } else {
+            loop.execute(this::updateReadInterest);
+        }
+    }
+
+    @Override
+    public void resumeReading() {
+        loop.execute(() -> {
+            if (!readPaused || key == null || !key.isValid()) {
+                return;
+            }
+            readPaused = false;
+            updateReadInterest();
+            try {
+                // Frames that came in with the one that paused reading
+                deliverFrames();
+            } catch (IOException e) {
+                closeWithError(e);
+            }
+        });
+    }
+
+    @Override
+    public InetSocketAddress localAddress() {
+        try {
+            return channel != null ? (InetSocketAddress) channel.getLocalAddress() : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    @Override
+    public int pendingFrames() {
+        return writeQueue.size();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return channel != null && !closed.get();
+    }
+
+    @Override
+    public void close() {
+        if (closed.compareAndSet(false, true)) {
+            loop.execute(() -> {
+                flush();
+                release(null);
+            });
+        }
+    }
+
+    void onReadable() {
+        // Selected before reading was paused
+        if (readPaused || !overflow.isEmpty()) {
+            return;
+        }
+        try {
+            if (channel.read(readBuffer) < 0) {
+                closeWithError(new EOFException("Connection closed by server"));
+                return;
+            }
+            deliverFrames();
+        } catch (IOException e) {
+            closeWithError(e);
+        }
+    }
+
+    void onWritable() {
+        flush();
+    }
+
+    /**
+     * Hands the complete frames in the read buffer to the listener, stopping early if reading gets paused;
+     * the rest stays in the buffer.
+     */
+    private void deliverFrames() throws IOException {
+        readBuffer.flip();
+        int needed = 0;
+        while (!readPaused && readBuffer.remaining() >= 4) {
+            int length = readBuffer.getInt(readBuffer.position());
+            FrameBuffer.checkFrameLength(length, options.maxFrameLength());
+            if (readBuffer.remaining() < 4 + length) {
+                needed = 4 + length;
+                break;
+            }
+            deliver(length);
+        }
+        readBuffer.compact();
+        resizeReadBuffer(needed);
+    }
+
+    /**
+     * Hands the frame at the current position to the listener as a view of the read buffer itself,
+     * then moves past it.
+     */
+    private void deliver(int length) {
+        int start = readBuffer.position() + 4;
+        int end = start + length;
+        int limit = readBuffer.limit();
+        readBuffer.limit(end).position(start);
+        try {
+            listener.onFrame(readBuffer);
+        } catch (Throwable t) {
+            log.error("Frame listener failed: {}", t.getMessage(), t);
+        }
+        readBuffer.limit(limit).position(end);
+        if (readBuffer.capacity() > BUFFER_SIZE && length + 4 <= readBuffer.capacity() >>> 2) {
+            smallFrames++;
+        } else {
+            smallFrames = 0;
+        }
+    }
+
+    /**
+     * Grows the read buffer to fit a partially received frame, or shrinks it back by half once enough
+     * consecutive small frames went through, like {@link FrameBuffer}.
+     */
+    private void resizeReadBuffer(int needed) {
+        int capacity = readBuffer.capacity();
+        int target = capacity;
+        if (needed > capacity) {
+            target = FrameBuffer.grownCapacity(capacity, needed, options.maxFrameLength());
+        } else if (smallFrames >= FrameBuffer.SHRINK_AFTER && Math.max(needed, readBuffer.position()) <= capacity >>> 2) {
+            target = Math.max(BUFFER_SIZE, capacity >>> 1);
+        }
+        if (target == capacity) {
+            return;
+        }
+        var resized = ByteBuffer.allocateDirect(target);
+        readBuffer.flip();
+        resized.put(readBuffer);
+        readBuffer = resized;
+        smallFrames = 0;
+    }
+
+    private void flush() {
+        if (key == null || !key.isValid() || !channel.isConnected()) {
+            // Flushed once connected, see connected
+            return;
+        }
+        try {
+            for (int round = 0; round < MAX_FLUSH_ROUNDS; round++) {
+                if (!draining) {
+                    spillOverflow();
+                    if (!fill()) {
+                        setWriteInterest(false);
+                        writeScheduled.set(false);
+                        // A sender may have enqueued after the queue looked empty but before the flag was cleared
+                        if (writeQueue.isEmpty() || !writeScheduled.compareAndSet(false, true)) {
+                            return;
+                        }
+                        continue;
+                    }
+                    writeEvent = new FrameWriteEvent();
+                    writeEvent.begin();
+                    writeEvent.bytes = writeBuffer.position() + (oversized != null ? oversized.remaining() : 0);
+                    writeBuffer.flip();
+                    draining = true;
+                }
+                if (!writeOut()) {
+                    // Socket buffer is full, continue when the channel becomes writable
+                    setWriteInterest(true);
+                    return;
+                }
+                if (writeEvent.shouldCommit()) {
+                    writeEvent.connection = options.name();
+                    writeEvent.frames = bufferedFrames;
+                    writeEvent.commit();
+                }
+                writeBuffer.clear();
+                draining = false;
+            }
+            loop.execute(this::flush);
+        } catch (IOException e) {
+            closeWithError(e);
+        }
+    }
+
+    /**
+     * Moves the frames held back by the loop thread into the write queue as far as it has room, and reads
+     * again once all of them fit.
+     */
+    private void spillOverflow() {
+        if (overflow.isEmpty()) {
+            return;
+        }
+        Overflow next;
+        while ((next = overflow.peek()) != null && writeQueue.offer(next.frame(), next.priority(), next.ordered())) {
+            overflow.poll();
+        }
+        if (overflow.isEmpty()) {
+            updateReadInterest();
+        }
+    }
+
+    /**
+     * Copies queued frames into the write buffer.
+     *
+     * @return false if there was nothing to write
+     */
+    private boolean fill() {
+        int frames = 0;
+        while (frames < options.maxWriteBatchSize()) {
+            byte[] frame = carry != null ? carry : writeQueue.poll();
+            if (frame == null) {
+                break;
+            }
+            carry = null;
+            if (4 + frame.length <= writeBuffer.remaining()) {
+                writeBuffer.putInt(frame.length).put(frame);
+                frames++;
+            } else if (writeBuffer.position() == 0) {
+                // Larger than the whole buffer, written straight from the array after its length prefix
+                writeBuffer.putInt(frame.length);
+                oversized = ByteBuffer.wrap(frame);
+                frames++;
+                break;
+            } else {
+                carry = frame;
+                break;
+            }
+        }
+        bufferedFrames = frames;
+        return writeBuffer.position() > 0;
+    }
+
+    /**
+     * @return false if the socket did not accept all bytes
+     */
+    private boolean writeOut() throws IOException {
+        while (writeBuffer.hasRemaining()) {
+            if (channel.write(writeBuffer) == 0) {
+                return false;
+            }
+        }
+        if (oversized != null) {
+            while (oversized.hasRemaining()) {
+                if (channel.write(oversized) == 0) {
+                    return false;
+                }
+            }
+            oversized = null;
+        }
+        return true;
+    }
+
+    private void updateReadInterest() {
+        setReadInterest(!readPaused && overflow.isEmpty());
+    }
+
+    private void setReadInterest(boolean enabled) {
+        if (key == null || !key.isValid()) {
+            return;
+        }
+        int ops = key.interestOps();
+        int updated = enabled ? ops | SelectionKey.OP_READ : ops & ~SelectionKey.OP_READ;
+        if (ops != updated) {
+            key.interestOps(updated);
+        }
+    }
+
+    private void setWriteInterest(boolean enabled) {
+        int ops = key.interestOps();
+        int updated = enabled ? ops | SelectionKey.OP_WRITE : ops & ~SelectionKey.OP_WRITE;
+        if (ops != updated) {
+            key.interestOps(updated);
+        }
+    }
+
+    private void closeWithError(IOException e) {
+        closed.set(true);
+        release(e);
+    }
+
+    private void release(Throwable cause) {
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Error closing channel: {}", e.getMessage());
+        }
+        writeQueue.clear();
+        overflow.clear();
+        if (connecting != null && !connecting.isDone()) {
+            if (connectAwaited && key != null) {
+                // connect throws instead, the listener never saw the connection open
+                key.attach(null);
+            }
+            connecting.completeExceptionally(cause != null ? cause : new SocketException("Connection is closed"));
+        }
+        if (listener != null && key != null && key.attachment() != null) {
+            key.attach(null);
+            listener.onClosed(cause);
+        }
+    }
+
+    private record Overflow(byte[] frame, TimerPriority priority, boolean ordered) {
+    }
+}
@@ -0,0 +1,62 @@
+package space.jamestang.ktimer.transport;
+
+import space.jamestang.ktimer.core.FlowControl;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+
+/**
+ * A connection to a KTimer server exchanging length-prefixed frames.
+ * <p>
+ * Implementations own the threading model: inbound frames are pushed to the {@link FrameListener}
+ * given to {@link #connect}, outbound frames may be sent from any thread. Delivery can be paused from the
+ * listener, see {@link FlowControl}.
+ */
+public interface Transport extends Closeable, FlowControl {
+
+    /**
+     * Opens the connection and starts delivering inbound frames to the listener.
+     *
+     * @param host     the host of the KTimer server
+     * @param port     the port of the KTimer server
+     * @param listener receives inbound frames and the close notification
+     */
+    void connect(String host, int port, FrameListener listener) throws IOException;
+
+    /**
+     * Queues an encoded message for sending. Safe to call from any thread, frames are never interleaved.
+     * Queued frames are written by priority, see {@link space.jamestang.ktimer.core.WeightedFairQueue}.
+     *
+     * @param frame    the encoded message, without length prefix
+     * @param priority the lane of the frame, null for NORMAL
+     * @param ordered  true to write the frame only after every frame queued before it
+     */
+    void send(byte[] frame, TimerPriority priority, boolean ordered) throws IOException;
+
+    /**
+     * Queues an encoded message in the NORMAL lane.
+     */
+    default void send(byte[] frame) throws IOException {
+        send(frame, TimerPriority.NORMAL, false);
+    }
+
+    /**
+     * @return the local address of the connection, null if not connected
+     */
+    InetSocketAddress localAddress();
+
+    /**
+     * @return frames queued but not yet written, a measure of how loaded the connection is
+     */
+    int pendingFrames();
+
+    boolean isOpen();
+
+    /**
+     * Closes the connection. Frames already queued are written on a best-effort basis.
+     */
+    @Override
+    void close();
+}
@@ -0,0 +1,10 @@
+package space.jamestang.ktimer.transport;
+
+/**
+ * Creates the {@link Transport} used by a client connection.
+ */
+@FunctionalInterface
+public interface TransportFactory {
+
+    Transport create(TransportOptions options);
+}
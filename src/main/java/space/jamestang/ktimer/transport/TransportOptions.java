@@ -0,0 +1,19 @@
+package space.jamestang.ktimer.transport;
+
+/**
+ * Settings handed to a {@link TransportFactory} by the client.
+ *
+ * @param name                name of the connection, used for thread names and logging
+ * @param writeQueueCapacity  max frames waiting to be written, senders block when it is full
+ * @param maxWriteBatchSize   max frames coalesced into one flush
+ * @param maxWriteLingerNanos how long the writer may wait to fill a batch, 0 flushes immediately
+ * @param maxFrameLength      largest inbound frame accepted, longer length prefixes close the connection
+ */
+public record TransportOptions(
+        String name,
+        int writeQueueCapacity,
+        int maxWriteBatchSize,
+        long maxWriteLingerNanos,
+        int maxFrameLength
+) {
+}
@@ -0,0 +1,113 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.TimerAckResult;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BatchSchedulingTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        server.setFireTimers(false);
+        client = new KTimerClient("127.0.0.1", server.port(), "batch", "batch-0", "batch-test");
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    private static List<TaskSpec> tasks(int count, long delay) {
+        var tasks = new ArrayList<TaskSpec>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new TaskSpec("timer-" + i, new TestPayload("v" + i), delay, null, Map.of("batch", "a")));
+        }
+        return tasks;
+    }
+
+    private static List<String> timerIds(List<TimerAckResult> results) {
+        return results.stream().map(TimerAckResult::getTimerId).toList();
+    }
+
+    @Test
+    void tasksArePackedIntoBatchesOfMaxBatchItems() throws Exception {
+        client.setMaxBatchItems(1000);
+        client.startAsync();
+        var tasks = tasks(2500, 60_000L);
+
+        var results = client.scheduleTasks(tasks).get(10, TimeUnit.SECONDS);
+        assertEquals(tasks.stream().map(TaskSpec::uniqueTaskID).toList(), timerIds(results));
+        assertTrue(results.stream().map(TimerAckResult::getStatus).allMatch(AckStatus.SUCCESS::equals));
+        assertEquals(3, server.received(MessageType.TIMER_REGISTER_BATCH));
+        assertEquals(0, server.received(MessageType.TIMER_REGISTER));
+        assertEquals(2500, server.registeredTimers());
+        assertEquals(2500, client.getTaggedTasks());
+    }
+
+    @Test
+    void batchesLargerThanMaxBatchFrameBytesAreSplit() throws Exception {
+        client.setMaxBatchFrameBytes(4096);
+        client.startAsync();
+
+        var results = client.scheduleTasks(tasks(100, 60_000L)).get(10, TimeUnit.SECONDS);
+        assertEquals(100, results.size());
+        assertTrue(results.stream().map(TimerAckResult::getStatus).allMatch(AckStatus.SUCCESS::equals));
+        assertTrue(server.received(MessageType.TIMER_REGISTER_BATCH) > 1);
+        assertEquals(100, server.registeredTimers());
+    }
+
+    @Test
+    void localAndRemoteTasksKeepTheirOrder() throws Exception {
+        client.setLocalTimerThresholdMillis(1000L);
+        client.startAsync();
+        var tasks = new ArrayList<TaskSpec>();
+        for (int i = 0; i < 10; i++) {
+            tasks.add(new TaskSpec("timer-" + i, new TestPayload("v"), i % 2 == 0 ? 60_000L : 30_000L + i * 1000L));
+            tasks.add(new TaskSpec("local-" + i, new TestPayload("v"), 500L));
+        }
+
+        var results = client.scheduleTasks(tasks).get(10, TimeUnit.SECONDS);
+        assertEquals(tasks.stream().map(TaskSpec::uniqueTaskID).toList(), timerIds(results));
+        assertEquals(10, server.registeredTimers());
+    }
+
+    @Test
+    void unacknowledgedBatchFailsEveryTaskOfIt() throws Exception {
+        client.setAckTimeoutMillis(300L);
+        client.startAsync();
+        server.setAckDropRate(1);
+
+        var results = client.scheduleTasks(tasks(5, 60_000L)).get(10, TimeUnit.SECONDS);
+        assertEquals(5, results.size());
+        assertTrue(results.stream().map(TimerAckResult::getStatus).allMatch(AckStatus.FAILED::equals));
+        assertEquals(0, client.getTaggedTasks());
+    }
+
+    @Test
+    void invalidTaskRejectsTheWholeBatch() throws Exception {
+        client.startAsync();
+        var tasks = new ArrayList<>(tasks(3, 60_000L));
+        tasks.add(new TaskSpec("timer-bad", new TestPayload("v"), -1L));
+
+        assertThrows(IllegalArgumentException.class, () -> client.scheduleTasks(tasks));
+        assertEquals(0, server.received(MessageType.TIMER_REGISTER_BATCH));
+    }
+}
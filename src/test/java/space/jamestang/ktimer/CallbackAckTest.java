@@ -0,0 +1,58 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackAckTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @ParameterizedTest
+    @ValueSource(booleans = {true, false})
+    void everyCallbackIsAcknowledged(boolean serverAcceptsBatches) throws Exception {
+        server = new FakeKTimerServer();
+        server.setAcceptAckBatches(serverAcceptsBatches);
+        client = new KTimerClient("127.0.0.1", server.port(), "acks", "acks-0", "ack-test");
+        client.setAckFlushIntervalMillis(50L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+
+        var scheduled = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < 100; i++) {
+            scheduled.add(client.scheduleTaskAsync("timer-" + i, new TestPayload("v"), 20L, null, null));
+        }
+        CompletableFuture.allOf(scheduled.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.acknowledgedCallbacks() < 100) {
+            assertTrue(System.nanoTime() < deadline, "Acknowledged " + server.acknowledgedCallbacks() + " of 100");
+            Thread.sleep(10);
+        }
+        assertEquals(100, server.acknowledgedCallbacks());
+        assertEquals(0, server.failedCallbacks());
+        if (serverAcceptsBatches) {
+            assertTrue(server.received(MessageType.ACK_BATCH) > 0);
+            assertTrue(server.received(MessageType.ACK) + server.received(MessageType.ACK_BATCH) < 100);
+        } else {
+            assertEquals(0, server.received(MessageType.ACK_BATCH));
+            assertEquals(100, server.received(MessageType.ACK));
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.core.CallbackOverflowPolicy;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+import space.jamestang.ktimer.transport.NioEventLoop;
+import space.jamestang.ktimer.transport.NioTransport;
+import space.jamestang.ktimer.transport.TransportFactory;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * A full callback queue under {@link CallbackOverflowPolicy#BLOCK} pauses the connection it filled up on,
+ * never the I/O thread.
+ */
+class CallbackBackpressureTest {
+
+    private final NioEventLoop loop = new NioEventLoop("backpressure-test");
+    private final CountDownLatch handlerEntered = new CountDownLatch(1);
+    private final CountDownLatch releaseHandlers = new CountDownLatch(1);
+    private final AtomicInteger handled = new AtomicInteger();
+    private FakeKTimerServer server;
+    private KTimerClient slow;
+    private KTimerClient other;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        releaseHandlers.countDown();
+        if (slow != null) {
+            slow.shutdown();
+        }
+        if (other != null) {
+            other.shutdown();
+        }
+        server.close();
+        loop.close();
+    }
+
+    @Test
+    void fullQueueOnASharedLoopOnlyPausesItsConnection() throws Exception {
+        startClients(NioTransport.factory(loop));
+        assertOtherClientKeepsGoing();
+    }
+
+    @Test
+    void fullQueueOnABlockingTransportPausesItsReader() throws Exception {
+        startClients(null);
+        assertOtherClientKeepsGoing();
+    }
+
+    private void startClients(TransportFactory transportFactory) throws Exception {
+        slow = new KTimerClient("127.0.0.1", server.port(), "slow", "slow-0", "backpressure-test");
+        slow.setMaxPendingCallbacks(1);
+        slow.setCallbackOverflowPolicy(CallbackOverflowPolicy.BLOCK);
+        slow.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+            handlerEntered.countDown();
+            try {
+                releaseHandlers.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            handled.incrementAndGet();
+        });
+        other = new KTimerClient("127.0.0.1", server.port(), "other", "other-0", "backpressure-test");
+        other.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        if (transportFactory != null) {
+            slow.setTransportFactory(transportFactory);
+            other.setTransportFactory(transportFactory);
+        }
+        slow.startAsync();
+        other.startAsync();
+    }
+
+    private void assertOtherClientKeepsGoing() throws Exception {
+        // ACKs are held back too while the connection is paused, so all of them have to arrive first
+        var acks = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < 3; i++) {
+            acks.add(slow.scheduleTaskAsync("slow-" + i, new TestPayload("a"), 300L, null, null));
+        }
+        CompletableFuture.allOf(acks.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertTrue(handlerEntered.await(5, TimeUnit.SECONDS));
+        awaitCondition(() -> server.firedCallbacks() == 3);
+        // The second callback waits for the only slot, the third is still unread
+        Thread.sleep(100);
+        assertEquals(1, slow.getPendingCallbacks());
+
+        var ack = other.scheduleTaskAsync("other", new TestPayload("b"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+        assertEquals(AckStatus.SUCCESS, ack.getStatus());
+
+        releaseHandlers.countDown();
+        awaitCondition(() -> handled.get() == 3 && server.acknowledgedCallbacks() == 3);
+        assertEquals(0, slow.getRejectedCallbacks());
+    }
+
+    private static void awaitCondition(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not met within 5s");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Callbacks the handler executor rejects are answered with a FAILED ACK and give their queue slot back.
+ */
+class CallbackRejectionTest {
+
+    private final AtomicInteger handled = new AtomicInteger();
+    private FakeKTimerServer server;
+    private ExecutorService executor;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        executor = Executors.newFixedThreadPool(1);
+        client = new KTimerClient("127.0.0.1", server.port(), "rejection", "rejection-0", "rejection-test");
+        client.setHandlerExecutor(executor);
+        client.setMaxPendingCallbacks(2);
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @ParameterizedTest(name = "bulkhead: {0}")
+    @ValueSource(booleans = {false, true})
+    void rejectedCallbacksAreFailedAndFreeTheirSlot(boolean bulkhead) throws Exception {
+        if (bulkhead) {
+            client.registerCallbackHandler(TestPayload.class, (payload, raw) -> handled.incrementAndGet(), 1);
+        } else {
+            client.registerCallbackHandler(TestPayload.class, (payload, raw) -> handled.incrementAndGet());
+        }
+        client.startAsync();
+        executor.shutdown();
+
+        for (int i = 0; i < 5; i++) {
+            client.scheduleTaskAsync("timer-" + i, new TestPayload("a"), 1L, null, null).get(5, TimeUnit.SECONDS);
+        }
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.failedCallbacks() < 5) {
+            assertTrue(System.nanoTime() < deadline, "Only " + server.failedCallbacks() + " FAILED ACKs within 5s");
+            Thread.sleep(10);
+        }
+        assertEquals(0, handled.get());
+        assertEquals(0, client.getPendingCallbacks());
+        assertEquals(0, client.getRejectedCallbacks());
+    }
+}
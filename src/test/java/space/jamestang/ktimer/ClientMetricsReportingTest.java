@@ -0,0 +1,78 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientMetricsReportingTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        client = new KTimerClient("127.0.0.1", server.port(), "metrics", "metrics-0", "metrics-test");
+        client.setJmxMetrics(true);
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void trafficAndCallbacksAreRecorded() throws Exception {
+        var handled = new CountDownLatch(5);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> handled.countDown());
+        client.startAsync();
+        for (int i = 0; i < 5; i++) {
+            client.scheduleTaskAsync("timer-" + i, new TestPayload("v"), 20L, null, null).get(5, TimeUnit.SECONDS);
+        }
+        assertTrue(handled.await(5, TimeUnit.SECONDS));
+
+        var metrics = client.getMetrics();
+        assertEquals(5, metrics.framesSent(MessageType.TIMER_REGISTER));
+        assertEquals(5, metrics.framesReceived(MessageType.TIMER_CALLBACK));
+        assertEquals(5, metrics.getAckLatency().getCount());
+        assertEquals(5, metrics.getCallbackLateness().getCount());
+        assertTrue(metrics.getBytesSent() > 0 && metrics.getBytesReceived() > 0);
+        assertTrue(metrics.getEncodeTime().getCount() >= 5);
+        // Recorded once the handler returned
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (metrics.handlerTime(TestPayload.class) == null || metrics.handlerTime(TestPayload.class).getCount() < 5) {
+            assertTrue(System.nanoTime() < deadline, "handler times not recorded");
+            Thread.sleep(10);
+        }
+        assertTrue(metrics.getGauges().containsKey("pendingCallbacks"));
+    }
+
+    @Test
+    void metricsAreRegisteredWithJmxWhileRunning() throws Exception {
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+        var mbeans = ManagementFactory.getPlatformMBeanServer();
+        var name = new ObjectName("space.jamestang.ktimer:type=ClientMetrics,clientId=\"metrics\",instanceId=\"metrics-0\"");
+        assertTrue(mbeans.isRegistered(name));
+
+        client.scheduleTaskAsync("timer-1", new TestPayload("v"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+        assertTrue((Long) mbeans.getAttribute(name, "BytesSent") > 0);
+        var ackLatency = (CompositeData) mbeans.getAttribute(name, "AckLatency");
+        assertEquals(1L, ackLatency.get("count"));
+
+        client.shutdown();
+        assertFalse(mbeans.isRegistered(name));
+    }
+}
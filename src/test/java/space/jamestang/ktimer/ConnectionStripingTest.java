@@ -0,0 +1,68 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.ArrayList;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConnectionStripingTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    private void start(ConnectionStriping striping) throws Exception {
+        // Timers stay scheduled on the server, so cancellations find them
+        server = new FakeKTimerServer();
+        client = new KTimerClient("127.0.0.1", server.port(), "striping", "striping-0", "striping-test");
+        client.setConnectionCount(4);
+        client.setConnectionStriping(striping);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @ParameterizedTest
+    @EnumSource(ConnectionStriping.class)
+    void requestsAreSpreadOverEveryConnection(ConnectionStriping striping) throws Exception {
+        start(striping);
+        assertEquals(4, server.connections());
+
+        var acks = new ArrayList<CompletableFuture<AckData>>();
+        for (int i = 0; i < 200; i++) {
+            acks.add(client.scheduleTaskAsync("timer-" + i, new TestPayload("v"), 60_000L, null, null));
+        }
+        for (var ack : acks) {
+            assertEquals(AckStatus.SUCCESS, ack.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(200, server.registeredTimers());
+    }
+
+    @Test
+    void requestsForOneTimerStayInOrder() throws Exception {
+        start(ConnectionStriping.TIMER_ID);
+
+        // Not waiting for the registration, the cancellation must still reach the server after it
+        var cancels = new ArrayList<CompletableFuture<AckData>>();
+        for (int i = 0; i < 200; i++) {
+            client.scheduleTaskAsync("timer-" + i, new TestPayload("v"), 60_000L, null, null);
+            cancels.add(client.cancelTask("timer-" + i, null));
+        }
+        CompletableFuture.allOf(cancels.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(200, server.cancelledTimers());
+    }
+}
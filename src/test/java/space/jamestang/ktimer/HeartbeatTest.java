@@ -0,0 +1,60 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeartbeatTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        server.setFireTimers(false);
+        client = new KTimerClient("127.0.0.1", server.port(), "heartbeat", "heartbeat-0", "heartbeat-test");
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void heartbeatReportsActiveTimersAndPendingCallbacksApart() throws Exception {
+        client.scheduleTaskAsync("plain-1", new TestPayload("a"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+        client.scheduleTaskAsync("plain-2", new TestPayload("a"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+        client.scheduleTaskAsync("tagged", new TestPayload("a"), 60_000L, null, Map.of("tenant", "a")).get(5, TimeUnit.SECONDS);
+        client.cancelTask("plain-2", null).get(5, TimeUnit.SECONDS);
+        assertEquals(2, client.getActiveTasks());
+        assertEquals(1, client.getTaggedTasks());
+
+        // The first heartbeat goes out once the connection was quiet for half of the 5s interval
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (server.lastHeartbeat() == null) {
+            assertTrue(System.nanoTime() < deadline, "No heartbeat within 10s");
+            Thread.sleep(50);
+        }
+        var heartbeat = server.lastHeartbeat();
+        assertEquals(2, heartbeat.getActiveTimers());
+        assertEquals(0, heartbeat.getPendingCallbacks());
+        assertEquals(0L, heartbeat.getProcessedCount());
+        assertNull(heartbeat.getUptime());
+        var systemInfo = heartbeat.getSystemInfo();
+        assertNotNull(systemInfo.diskUsage());
+        // Whole percents, so an idle client sends the same heartbeat again
+        assertEquals(Math.round(systemInfo.memoryUsage() * 100) / 100.0, systemInfo.memoryUsage());
+        assertEquals(Math.round(systemInfo.diskUsage() * 100) / 100.0, systemInfo.diskUsage());
+    }
+}
@@ -0,0 +1,101 @@
+package space.jamestang.ktimer;
+
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingStream;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JfrEventsTest {
+
+    private static final List<String> EVENTS = List.of(
+            "space.jamestang.ktimer.FrameSent",
+            "space.jamestang.ktimer.FrameWrite",
+            "space.jamestang.ktimer.FrameReceived",
+            "space.jamestang.ktimer.CallbackDispatch",
+            "space.jamestang.ktimer.CallbackHandler",
+            "space.jamestang.ktimer.Reconnect");
+
+    private final Map<String, List<RecordedEvent>> recorded = new ConcurrentHashMap<>();
+    private RecordingStream stream;
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        stream = new RecordingStream();
+        for (var name : EVENTS) {
+            stream.enable(name).withoutThreshold();
+            stream.onEvent(name, event -> recorded.computeIfAbsent(name, ignored -> new CopyOnWriteArrayList<>()).add(event));
+        }
+        stream.startAsync();
+
+        server = new FakeKTimerServer();
+        client = new KTimerClient("127.0.0.1", server.port(), "jfr", "jfr-0", "jfr-test");
+        client.setReconnectInitialDelayMillis(20L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+        stream.close();
+    }
+
+    /**
+     * Waits for a matching event, streamed events arrive about once a second.
+     */
+    private RecordedEvent await(String name, Predicate<RecordedEvent> matching) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (System.nanoTime() < deadline) {
+            for (var event : recorded.getOrDefault(name, List.of())) {
+                if (matching.test(event)) {
+                    return event;
+                }
+            }
+            Thread.sleep(50);
+        }
+        return fail("No matching " + name + " event, got " + recorded.keySet());
+    }
+
+    @Test
+    void framesAndCallbacksAreRecorded() throws Exception {
+        client.scheduleTaskAsync("timer-1", new TestPayload("v"), 20L, null, null).get(5, TimeUnit.SECONDS);
+
+        var sent = await("space.jamestang.ktimer.FrameSent", event -> "TIMER_REGISTER".equals(event.getString("messageType")));
+        assertTrue(sent.getInt("size") > 0);
+        assertEquals(1, sent.getInt("batchSize"));
+        var write = await("space.jamestang.ktimer.FrameWrite", event -> event.getInt("frames") > 0);
+        assertTrue(write.getLong("bytes") > 0);
+        await("space.jamestang.ktimer.FrameReceived", event -> "TIMER_CALLBACK".equals(event.getString("messageType")));
+
+        var dispatch = await("space.jamestang.ktimer.CallbackDispatch", event -> "timer-1".equals(event.getString("timerId")));
+        assertEquals("submitted", dispatch.getString("outcome"));
+        assertEquals(TestPayload.class.getCanonicalName(), dispatch.getString("payloadClass"));
+        var handler = await("space.jamestang.ktimer.CallbackHandler", event -> "timer-1".equals(event.getString("timerId")));
+        assertTrue(handler.getBoolean("succeeded"));
+        assertEquals(1, handler.getInt("attempt"));
+    }
+
+    @Test
+    void reconnectsAreRecorded() throws Exception {
+        server.disconnectAll();
+
+        var reconnect = await("space.jamestang.ktimer.Reconnect", event -> event.getBoolean("succeeded"));
+        assertTrue(reconnect.getInt("attempts") >= 1);
+        assertTrue(reconnect.getString("server").contains(String.valueOf(server.port())));
+    }
+}
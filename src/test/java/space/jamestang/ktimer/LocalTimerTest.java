@@ -0,0 +1,125 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LocalTimerTest {
+
+    private final ConcurrentLinkedQueue<String> fired = new ConcurrentLinkedQueue<>();
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        server.setFireTimers(true);
+        client = new KTimerClient("127.0.0.1", server.port(), "local", "local-0", "local-test");
+        client.setLocalTimerThresholdMillis(1000L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> fired.add(payload.value));
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void shortDelaysFireWithoutTheServer() throws Exception {
+        var ack = client.scheduleTaskAsync("timer-1", new TestPayload("local"), 50L, null, null).get(5, TimeUnit.SECONDS);
+        assertEquals(AckStatus.SUCCESS, ack.getStatus());
+
+        awaitFired(1);
+        assertEquals("local", fired.peek());
+        assertEquals(0, server.received(MessageType.TIMER_REGISTER));
+    }
+
+    @Test
+    void longerDelaysStillGoToTheServer() throws Exception {
+        client.scheduleTaskAsync("timer-1", new TestPayload("remote"), 1000L, null, null).get(5, TimeUnit.SECONDS);
+        assertEquals(1, server.registeredTimers());
+    }
+
+    @Test
+    void cancelledLocalTasksNeverFire() throws Exception {
+        client.scheduleTaskAsync("timer-1", new TestPayload("cancelled"), 200L, null, null).get(5, TimeUnit.SECONDS);
+        client.scheduleTaskAsync("timer-2", new TestPayload("kept"), 300L, null, null).get(5, TimeUnit.SECONDS);
+
+        var cancelled = client.cancelTask("timer-1", null).get(5, TimeUnit.SECONDS);
+        assertEquals(AckStatus.SUCCESS, cancelled.getStatus());
+        assertEquals(0, server.received(MessageType.TIMER_CANCEL));
+
+        // The kept task fires after the cancelled one would have
+        awaitFired(1);
+        assertEquals("kept", fired.peek());
+        assertEquals(1, fired.size());
+    }
+
+    @Test
+    void cancellingWhileTheCallbackRunsIsAnsweredLocally() throws Exception {
+        var running = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+            running.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            throw new IllegalStateException("retried unless cancelled");
+        });
+        client.scheduleTaskAsync("timer-1", new TestPayload("running"), 20L, null, null).get(5, TimeUnit.SECONDS);
+        assertTrue(running.await(5, TimeUnit.SECONDS));
+
+        var cancelled = client.cancelTask("timer-1", null).get(5, TimeUnit.SECONDS);
+        assertEquals(AckStatus.FAILED, cancelled.getStatus());
+        assertEquals(0, server.received(MessageType.TIMER_CANCEL));
+        assertEquals(0, client.getActiveTasks());
+
+        // The failed callback is not retried
+        release.countDown();
+        Thread.sleep(300);
+        assertEquals(0, client.getMetrics().getGauges().get("localTimers"));
+    }
+
+    @Test
+    void localTasksAreIndexedByTagUntilTheyFire() throws Exception {
+        var tags = Map.of("order", "42");
+        client.scheduleTaskAsync("timer-1", new TestPayload("cancelled"), 500L, null, tags).get(5, TimeUnit.SECONDS);
+        client.scheduleTaskAsync("timer-2", new TestPayload("fired"), 20L, null, Map.of("order", "43")).get(5, TimeUnit.SECONDS);
+        assertEquals(2, client.getTaggedTasks());
+
+        var results = client.cancelTasksByTag("order", "42", null).get(5, TimeUnit.SECONDS);
+        assertEquals(1, results.size());
+        assertEquals(AckStatus.SUCCESS, results.getFirst().getStatus());
+        assertEquals(0, server.received(MessageType.TIMER_CANCEL));
+
+        awaitFired(1);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (client.getTaggedTasks() > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(0, client.getTaggedTasks());
+        assertEquals(0, client.getActiveTasks());
+    }
+
+    private void awaitFired(int count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (fired.size() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, fired.size());
+    }
+}
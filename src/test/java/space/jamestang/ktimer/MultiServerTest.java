@@ -0,0 +1,87 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MultiServerTest {
+
+    private FakeKTimerServer first;
+    private FakeKTimerServer second;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        first = new FakeKTimerServer();
+        second = new FakeKTimerServer();
+        first.setFireTimers(false);
+        second.setFireTimers(false);
+        client = new KTimerClient(List.of(
+                InetSocketAddress.createUnresolved("127.0.0.1", first.port()),
+                InetSocketAddress.createUnresolved("127.0.0.1", second.port())),
+                "multi", "multi-0", "multi-test");
+        client.setReconnectInitialDelayMillis(20L);
+        client.setReconnectMaxDelayMillis(100L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        first.close();
+        second.close();
+    }
+
+    private void scheduleAll(int from, int to) throws Exception {
+        var acks = new ArrayList<CompletableFuture<AckData>>();
+        for (int i = from; i < to; i++) {
+            acks.add(client.scheduleTaskAsync("timer-" + i, new TestPayload("v"), 60_000L, null, null));
+        }
+        for (var ack : acks) {
+            assertEquals(AckStatus.SUCCESS, ack.get(5, TimeUnit.SECONDS).getStatus());
+        }
+    }
+
+    @Test
+    void timersAreSpreadOverTheServers() throws Exception {
+        scheduleAll(0, 400);
+        assertEquals(400, first.registeredTimers() + second.registeredTimers());
+        assertTrue(first.registeredTimers() > 100, "first got " + first.registeredTimers());
+        assertTrue(second.registeredTimers() > 100, "second got " + second.registeredTimers());
+    }
+
+    @Test
+    void timersOfADownServerGoToTheOther() throws Exception {
+        // Whether or not the client noticed yet, requests for its timers fail over to the first server
+        second.close();
+        scheduleAll(0, 100);
+        assertEquals(100, first.registeredTimers());
+        assertEquals(ConnectionState.CONNECTED, client.getConnectionState());
+    }
+
+    @Test
+    void cancellationGoesToTheServerOfTheTimer() throws Exception {
+        first.setFireTimers(true);
+        second.setFireTimers(true);
+        scheduleAll(0, 50);
+        var cancels = new ArrayList<CompletableFuture<AckData>>();
+        for (int i = 0; i < 50; i++) {
+            cancels.add(client.cancelTask("timer-" + i, null));
+        }
+        CompletableFuture.allOf(cancels.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(50, first.cancelledTimers() + second.cancelledTimers());
+    }
+}
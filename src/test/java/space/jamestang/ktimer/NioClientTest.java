@@ -0,0 +1,58 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+import space.jamestang.ktimer.transport.NioEventLoop;
+import space.jamestang.ktimer.transport.NioTransport;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Requests made from completions, which run on the event loop thread with {@link NioTransport}.
+ */
+class NioClientTest {
+
+    private final NioEventLoop loop = new NioEventLoop("nio-client-test");
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        server.setFireTimers(false);
+        client = new KTimerClient("127.0.0.1", server.port(), "nio", "nio-0", "nio-test");
+        client.setTransportFactory(NioTransport.factory(loop));
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+        loop.close();
+    }
+
+    @Test
+    void requestChainedOnAnAckCompletes() throws Exception {
+        var second = client.scheduleTaskAsync("first", new TestPayload("a"), 60_000L, null, null)
+                .thenCompose(ack -> client.scheduleTaskAsync("second", new TestPayload("b"), 60_000L, null, null));
+        assertEquals(AckStatus.SUCCESS, second.get(5, TimeUnit.SECONDS).getStatus());
+    }
+
+    @Test
+    void rescheduleCompletesEveryTime() throws Exception {
+        for (int i = 0; i < 20; i++) {
+            client.scheduleTaskAsync("timer-" + i, new TestPayload("a"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+            var ack = client.rescheduleTask("timer-" + i, new TestPayload("b"), 30_000L, null, null);
+            assertEquals(AckStatus.SUCCESS, ack.get(5, TimeUnit.SECONDS).getStatus());
+        }
+        assertEquals(40, server.registeredTimers());
+    }
+}
@@ -0,0 +1,105 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class OutboxTest {
+
+    @TempDir
+    Path directory;
+
+    private KTimerClient client(FakeKTimerServer server) {
+        var client = new KTimerClient("127.0.0.1", server.port(), "outbox", "outbox-0", "outbox-test");
+        client.setOutboxDirectory(directory);
+        client.setOutboxSegmentBytes(64 * 1024);
+        client.setAckTimeoutMillis(200L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        return client;
+    }
+
+    private static boolean flusherRunning() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.getName().equals("ktimer-outbox-outbox-0") && thread.isAlive());
+    }
+
+    @Test
+    void unacknowledgedRegistrationsAreReplayedOnTheNextStart() throws Exception {
+        try (var server = new FakeKTimerServer()) {
+            server.setFireTimers(false);
+            server.setAckDropRate(1);
+            var client = client(server);
+            client.startAsync();
+            assertTrue(flusherRunning());
+            var ack = client.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, null);
+            assertThrows(Exception.class, () -> ack.get(5, TimeUnit.SECONDS));
+            client.shutdown();
+            assertEquals(1, server.registeredTimers());
+        }
+        awaitFlusherStopped();
+
+        try (var server = new FakeKTimerServer()) {
+            server.setFireTimers(false);
+            var client = client(server);
+            client.startAsync();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            // Until the replayed registration is acknowledged, shutting down would keep it in the outbox
+            while (server.registeredTimers() < 1 || client.getMetrics().getGauges().get("pendingRequests") > 0) {
+                assertTrue(System.nanoTime() < deadline, "Registration not replayed within 5s");
+                Thread.sleep(10);
+            }
+            client.shutdown();
+        }
+
+        // Acknowledged by the second server, nothing is left to replay
+        try (var server = new FakeKTimerServer()) {
+            var client = client(server);
+            client.startAsync();
+            Thread.sleep(200);
+            client.shutdown();
+            assertEquals(0, server.registeredTimers());
+        }
+    }
+
+    @Test
+    void unacknowledgedCancellationsAreReplayedAfterTheirRegistration() throws Exception {
+        try (var server = new FakeKTimerServer()) {
+            server.setAckDropRate(1);
+            var client = client(server);
+            client.startAsync();
+            var ack = client.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, null);
+            var cancel = client.cancelTask("timer-1", null);
+            assertThrows(Exception.class, () -> ack.get(5, TimeUnit.SECONDS));
+            assertThrows(Exception.class, () -> cancel.get(5, TimeUnit.SECONDS));
+            client.shutdown();
+        }
+        awaitFlusherStopped();
+
+        try (var server = new FakeKTimerServer()) {
+            var client = client(server);
+            client.startAsync();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            // Cancelled on the server only if the registration was replayed first
+            while (server.cancelledTimers() < 1) {
+                assertTrue(System.nanoTime() < deadline, "Cancellation not replayed within 5s");
+                Thread.sleep(10);
+            }
+            client.shutdown();
+            assertEquals(1, server.registeredTimers());
+        }
+    }
+
+    private static void awaitFlusherStopped() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (flusherRunning()) {
+            assertTrue(System.nanoTime() < deadline, "Outbox flusher still running after shutdown");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,66 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadBindingTest {
+
+    /**
+     * Serializes, but has no constructor Jackson could create it with.
+     */
+    public static class Unbindable {
+        public final String value;
+
+        public Unbindable(String value, int ignored) {
+            this.value = value;
+        }
+    }
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        client = new KTimerClient("127.0.0.1", server.port(), "binding", "binding-0", "binding-test");
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void handlerReceivesThePayloadAsItsOwnType() throws Exception {
+        var received = new LinkedBlockingQueue<Object>();
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> received.add(payload));
+        client.startAsync();
+
+        client.scheduleTaskAsync("timer-1", new TestPayload("hello"), 10L, null, null).get(5, TimeUnit.SECONDS);
+        var payload = assertInstanceOf(TestPayload.class, received.poll(5, TimeUnit.SECONDS));
+        assertEquals("hello", payload.value);
+    }
+
+    @Test
+    void payloadThatCannotBeBoundIsAcknowledgedAsFailed() throws Exception {
+        var handled = new LinkedBlockingQueue<Object>();
+        client.registerCallbackHandler(Unbindable.class, (payload, raw) -> handled.add(payload));
+        client.startAsync();
+
+        client.scheduleTaskAsync("timer-1", new Unbindable("x", 0), 10L, null, null).get(5, TimeUnit.SECONDS);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.failedCallbacks() == 0) {
+            assertTrue(System.nanoTime() < deadline, "No FAILED ACK");
+            Thread.sleep(10);
+        }
+        assertTrue(handled.isEmpty());
+    }
+}
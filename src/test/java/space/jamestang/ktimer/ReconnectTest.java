@@ -0,0 +1,103 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.io.IOException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ReconnectTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        server.setFireTimers(false);
+        client = new KTimerClient("127.0.0.1", server.port(), "reconnect", "reconnect-0", "reconnect-test");
+        client.setReconnectInitialDelayMillis(20L);
+        client.setReconnectMaxDelayMillis(100L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, description);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void unacknowledgedRegistrationIsResentAfterReconnect() throws Exception {
+        client.startAsync();
+        server.setAckDropRate(1);
+        var ack = client.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, null);
+        await(() -> server.registeredTimers() == 1, "registration not received");
+
+        server.setAckDropRate(0);
+        server.disconnectAll();
+        assertEquals(AckStatus.SUCCESS, ack.get(5, TimeUnit.SECONDS).getStatus());
+        // Replayed with the same message ID
+        assertEquals(2, server.registeredTimers());
+        assertEquals(ConnectionState.CONNECTED, client.getConnectionState());
+    }
+
+    @Test
+    void requestsMadeWhileReconnectingAreSentOnceBack() throws Exception {
+        client.startAsync();
+        int port = server.port();
+        server.close();
+        await(() -> client.getConnectionState() == ConnectionState.RECONNECTING, "not reconnecting");
+
+        var first = client.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, null);
+        var second = client.cancelTask("timer-1", null);
+        assertFalse(first.isDone());
+
+        server = new FakeKTimerServer(port);
+        server.setFireTimers(false);
+        assertEquals(AckStatus.SUCCESS, first.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(AckStatus.SUCCESS, second.get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(1, server.registeredTimers());
+        assertEquals(ConnectionState.CONNECTED, client.getConnectionState());
+    }
+
+    @Test
+    void requestsBeyondTheJournalSizeFail() throws Exception {
+        client.setMaxJournalSize(1);
+        client.startAsync();
+        server.close();
+        await(() -> client.getConnectionState() == ConnectionState.RECONNECTING, "not reconnecting");
+
+        var journaled = client.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, null);
+        var rejected = client.scheduleTaskAsync("timer-2", new TestPayload("a"), 60_000L, null, null);
+        var error = assertThrows(ExecutionException.class, () -> rejected.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, error.getCause());
+        assertFalse(journaled.isDone());
+    }
+
+    @Test
+    void shutsDownAfterMaxReconnectAttempts() throws Exception {
+        client.setMaxReconnectAttempts(3);
+        client.startAsync();
+        server.close();
+
+        await(() -> !client.isRunning(), "still running");
+        assertEquals(ConnectionState.DISCONNECTED, client.getConnectionState());
+    }
+}
@@ -0,0 +1,76 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ScheduleTaskAsyncTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        server.setFireTimers(false);
+        client = new KTimerClient("127.0.0.1", server.port(), "async", "async-0", "async-test");
+        client.setAckTimeoutMillis(500L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void futuresCompleteWithTheAckOfTheirOwnRegistration() throws Exception {
+        server.setAckLatencyMillis(20);
+        var futures = new ArrayList<CompletableFuture<AckData>>();
+        for (int i = 0; i < 200; i++) {
+            futures.add(client.scheduleTaskAsync("timer-" + i, new TestPayload("v" + i), 60_000L, null, null));
+        }
+        CompletableFuture.allOf(futures.toArray(CompletableFuture[]::new)).get(10, TimeUnit.SECONDS);
+
+        var acknowledged = new HashSet<String>();
+        for (var future : futures) {
+            var ack = future.get();
+            assertEquals(AckStatus.SUCCESS, ack.getStatus());
+            assertTrue(acknowledged.add(ack.getOriginalMessageId()), "ACK completed two futures");
+        }
+        assertEquals(200, server.registeredTimers());
+    }
+
+    @Test
+    void scheduleTaskReturnsTheAckOfItsRegistration() throws Exception {
+        var ack = client.scheduleTask("timer-sync", new TestPayload("v"), 60_000L, null, null)
+                .get(5, TimeUnit.SECONDS);
+
+        assertEquals(AckStatus.SUCCESS, ack.getStatus());
+        assertEquals(1, server.registeredTimers());
+    }
+
+    @Test
+    void futureFailsWithTimeoutWhenNoAckArrives() {
+        server.setAckDropRate(1);
+        var future = client.scheduleTaskAsync("timer-lost", new TestPayload("v"), 60_000L, null, null);
+
+        var error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+    }
+}
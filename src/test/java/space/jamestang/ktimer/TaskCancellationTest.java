@@ -0,0 +1,87 @@
+package space.jamestang.ktimer;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.TimerAckResult;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TaskCancellationTest {
+
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        client = new KTimerClient("127.0.0.1", server.port(), "cancel", "cancel-0", "cancel-test");
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> {
+        });
+        client.startAsync();
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    @Test
+    void cancelRemovesTheTaskFromTheTagIndex() throws Exception {
+        var tags = Map.of("order", "42");
+        client.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, tags).get(5, TimeUnit.SECONDS);
+        assertEquals(1, client.getTaggedTasks());
+
+        assertEquals(AckStatus.SUCCESS, client.cancelTask("timer-1", null).get(5, TimeUnit.SECONDS).getStatus());
+        assertEquals(0, client.getTaggedTasks());
+        assertTrue(client.cancelTasksByTag("order", "42", null).get(5, TimeUnit.SECONDS).isEmpty());
+    }
+
+    @Test
+    void rescheduledTasksAreRegisteredEvenIfTheCancellationTimesOut() throws Exception {
+        var impatient = new KTimerClient("127.0.0.1", server.port(), "cancel", "cancel-1", "cancel-test");
+        impatient.setAckTimeoutMillis(200L);
+        impatient.startAsync();
+        try {
+            impatient.scheduleTaskAsync("timer-1", new TestPayload("a"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+            server.setAckDropRate(1);
+
+            var rescheduled = impatient.rescheduleTask("timer-1", new TestPayload("b"), 60_000L, null, null);
+            // The registration is sent once the cancellation timed out, its own ACK is dropped too
+            var failure = assertThrows(ExecutionException.class, () -> rescheduled.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(TimeoutException.class, failure.getCause());
+            assertEquals(1, server.received(MessageType.TIMER_CANCEL));
+            assertEquals(2, server.received(MessageType.TIMER_REGISTER));
+        } finally {
+            impatient.shutdown();
+        }
+    }
+
+    @Test
+    void rescheduledTasksCanBeCancelledByTag() throws Exception {
+        var tags = Map.of("tenant", "a");
+        var rescheduled = new ArrayList<CompletableFuture<?>>();
+        for (int i = 0; i < 20; i++) {
+            client.scheduleTaskAsync("timer-" + i, new TestPayload("a"), 60_000L, null, tags).get(5, TimeUnit.SECONDS);
+            rescheduled.add(client.rescheduleTask("timer-" + i, new TestPayload("b"), 30_000L, null, tags));
+        }
+        CompletableFuture.allOf(rescheduled.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertEquals(20, client.getTaggedTasks());
+
+        var results = client.cancelTasksByTag("tenant", "a", "done").get(5, TimeUnit.SECONDS);
+        assertEquals(20, results.size());
+        assertTrue(results.stream().map(TimerAckResult::getStatus).allMatch(AckStatus.SUCCESS::equals));
+        assertEquals(0, client.getTaggedTasks());
+    }
+}
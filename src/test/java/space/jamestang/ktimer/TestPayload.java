@@ -0,0 +1,16 @@
+package space.jamestang.ktimer;
+
+/**
+ * Timer payload of the client tests.
+ */
+public class TestPayload {
+
+    public String value;
+
+    public TestPayload() {
+    }
+
+    public TestPayload(String value) {
+        this.value = value;
+    }
+}
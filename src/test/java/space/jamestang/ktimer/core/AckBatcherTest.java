@@ -0,0 +1,123 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.AckBatchData;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.MessageBuilder;
+import space.jamestang.ktimer.message.MessageIdGenerator;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AckBatcherTest {
+
+    private final MessageBuilder messages = new MessageBuilder(MessageIdGenerator.sequential("ack-test"));
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    private final LinkedBlockingQueue<KTimerMessage> sent = new LinkedBlockingQueue<>();
+
+    @AfterEach
+    void stopScheduler() {
+        scheduler.shutdownNow();
+    }
+
+    private AckBatcher batcher(int maxBatchSize, long flushIntervalMillis) {
+        return new AckBatcher("client", messages, sent::add, scheduler, maxBatchSize, flushIntervalMillis);
+    }
+
+    private AckData ack(String callbackId) {
+        return messages.createAckData(callbackId, AckStatus.SUCCESS, null, null);
+    }
+
+    @Test
+    void fullBatchIsSentAsOneFrameRightAway() {
+        var batcher = batcher(3, 60_000);
+        batcher.setBatchFrames(true);
+        batcher.add(ack("c1"));
+        batcher.add(ack("c2"));
+        assertTrue(sent.isEmpty());
+        assertEquals(2, batcher.pending());
+
+        batcher.add(ack("c3"));
+        var frame = sent.poll();
+        assertNotNull(frame);
+        assertEquals(MessageType.ACK_BATCH, frame.getType());
+        var acks = ((AckBatchData) frame.getData()).getAcks();
+        assertEquals(List.of("c1", "c2", "c3"), acks.stream().map(AckData::getOriginalMessageId).toList());
+        assertEquals(0, batcher.pending());
+    }
+
+    @Test
+    void partialBatchIsSentAfterTheFlushInterval() throws InterruptedException {
+        var batcher = batcher(100, 50);
+        batcher.setBatchFrames(true);
+        long start = System.nanoTime();
+        batcher.add(ack("c1"));
+        batcher.add(ack("c2"));
+
+        var frame = sent.poll(5, TimeUnit.SECONDS);
+        assertNotNull(frame);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        assertEquals(2, ((AckBatchData) frame.getData()).getAcks().size());
+        assertNull(sent.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    void singleAcksWhenTheServerDoesNotTakeBatches() {
+        var batcher = batcher(2, 60_000);
+        batcher.add(ack("c1"));
+        batcher.add(ack("c2"));
+
+        assertEquals(2, sent.size());
+        for (var frame : sent) {
+            assertEquals(MessageType.ACK, frame.getType());
+        }
+    }
+
+    @Test
+    void batchOfOneIsSentAsAPlainAck() {
+        var batcher = batcher(100, 60_000);
+        batcher.setBatchFrames(true);
+        batcher.add(ack("c1"));
+        batcher.flush();
+
+        assertEquals(MessageType.ACK, sent.remove().getType());
+    }
+
+    @Test
+    void zeroFlushIntervalSendsEveryAckImmediately() {
+        var batcher = batcher(100, 0);
+        batcher.setBatchFrames(true);
+        batcher.add(ack("c1"));
+        assertEquals(1, sent.size());
+        batcher.add(ack("c2"));
+        assertEquals(2, sent.size());
+    }
+
+    @Test
+    void acksThatCannotBeSentAreDropped() {
+        var batcher = new AckBatcher("client", messages, message -> {
+            throw new IOException("connection lost");
+        }, scheduler, 2, 60_000);
+        batcher.add(ack("c1"));
+        batcher.add(ack("c2"));
+        assertEquals(0, batcher.pending());
+    }
+
+    @Test
+    void rejectedFlushSendsRightAway() {
+        scheduler.shutdown();
+        var batcher = batcher(100, 60_000);
+        batcher.add(ack("c1"));
+        assertEquals(1, sent.size());
+    }
+}
@@ -0,0 +1,130 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkheadTest {
+
+    /**
+     * Queues tasks until the test runs them, or rejects every task.
+     */
+    private static final class ManualExecutor implements Executor {
+        private final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+        private final boolean rejecting;
+
+        private ManualExecutor(boolean rejecting) {
+            this.rejecting = rejecting;
+        }
+
+        @Override
+        public void execute(Runnable command) {
+            if (rejecting) {
+                throw new RejectedExecutionException("rejecting");
+            }
+            tasks.add(command);
+        }
+
+        void runNext() {
+            tasks.remove().run();
+        }
+    }
+
+    private static final class Task implements RejectableTask {
+        private final String name;
+        private final List<String> log;
+
+        private Task(String name, List<String> log) {
+            this.name = name;
+            this.log = log;
+        }
+
+        @Override
+        public void run() {
+            log.add("ran " + name);
+        }
+
+        @Override
+        public void rejected(RejectedExecutionException e) {
+            log.add("rejected " + name);
+        }
+    }
+
+    @Test
+    void tasksOverTheLimitWait() {
+        var bulkhead = new Bulkhead(2);
+        var executor = new ManualExecutor(false);
+        var log = new ArrayList<String>();
+        for (int i = 0; i < 5; i++) {
+            bulkhead.submit(new Task("t" + i, log), executor);
+        }
+        assertEquals(2, bulkhead.active());
+        assertEquals(3, bulkhead.waiting());
+        assertEquals(2, executor.tasks.size());
+
+        for (int i = 0; i < 5; i++) {
+            executor.runNext();
+        }
+        assertEquals(List.of("ran t0", "ran t1", "ran t2", "ran t3", "ran t4"), log);
+        assertEquals(0, bulkhead.active());
+        assertEquals(0, bulkhead.waiting());
+    }
+
+    @Test
+    void waitingTaskRunsOnTheExecutorItWasSubmittedWith() {
+        var bulkhead = new Bulkhead(1);
+        var first = new ManualExecutor(false);
+        var second = new ManualExecutor(false);
+        var log = new ArrayList<String>();
+        bulkhead.submit(new Task("a", log), first);
+        bulkhead.submit(new Task("b", log), second);
+
+        first.runNext();
+        assertTrue(first.tasks.isEmpty());
+        second.runNext();
+        assertEquals(List.of("ran a", "ran b"), log);
+    }
+
+    @Test
+    void rejectionIsReportedToTheTaskAndFreesItsSlot() {
+        var bulkhead = new Bulkhead(1);
+        var log = new ArrayList<String>();
+        bulkhead.submit(new Task("a", log), new ManualExecutor(true));
+
+        assertEquals(List.of("rejected a"), log);
+        assertEquals(0, bulkhead.active());
+    }
+
+    @Test
+    void rejectionOfAWaitingTaskIsReportedWhenItIsDrained() {
+        var bulkhead = new Bulkhead(1);
+        var accepting = new ManualExecutor(false);
+        var log = new ArrayList<String>();
+        bulkhead.submit(new Task("a", log), accepting);
+        bulkhead.submit(new Task("b", log), new ManualExecutor(true));
+        bulkhead.submit(new Task("c", log), accepting);
+        assertEquals(2, bulkhead.waiting());
+
+        // Running a drains b, which is rejected, and then c
+        accepting.runNext();
+        accepting.runNext();
+        assertEquals(List.of("ran a", "rejected b", "ran c"), log);
+        assertEquals(0, bulkhead.active());
+    }
+
+    @Test
+    void rejectionOfAPlainTaskIsOnlyLogged() {
+        var bulkhead = new Bulkhead(1);
+        var ran = new AtomicInteger();
+        assertDoesNotThrow(() -> bulkhead.submit(ran::incrementAndGet, new ManualExecutor(true)));
+        assertEquals(0, bulkhead.active());
+        assertEquals(0, ran.get());
+    }
+}
@@ -0,0 +1,62 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static space.jamestang.ktimer.message.enums.TimerPriority.*;
+
+class CallbackLanesTest {
+
+    private final ArrayDeque<Runnable> executed = new ArrayDeque<>();
+    private final Executor executor = executed::add;
+
+    @Test
+    void highCallbackOvertakesWaitingLowOnes() {
+        var lanes = new CallbackLanes(1);
+        var order = new ArrayList<String>();
+        for (int i = 0; i < 3; i++) {
+            var name = "low-" + i;
+            lanes.submit(() -> order.add(name), LOW, executor);
+        }
+        lanes.submit(() -> order.add("high"), HIGH, executor);
+        assertEquals(1, lanes.active());
+        assertEquals(3, lanes.waiting());
+
+        while (!executed.isEmpty()) {
+            executed.remove().run();
+        }
+        assertEquals(List.of("low-0", "high", "low-1", "low-2"), order);
+        assertEquals(0, lanes.active());
+    }
+
+    @Test
+    void rejectionIsThrownForPlainTasksAndReportedToRejectableOnes() {
+        var lanes = new CallbackLanes(1);
+        Executor rejecting = command -> {
+            throw new RejectedExecutionException("rejecting");
+        };
+        assertThrows(RejectedExecutionException.class, () -> lanes.submit(() -> {
+        }, NORMAL, rejecting));
+
+        var rejected = new ArrayList<RejectedExecutionException>();
+        lanes.submit(new RejectableTask() {
+            @Override
+            public void run() {
+                fail("rejected task ran");
+            }
+
+            @Override
+            public void rejected(RejectedExecutionException e) {
+                rejected.add(e);
+            }
+        }, NORMAL, rejecting);
+        assertEquals(1, rejected.size());
+        assertEquals(0, lanes.active());
+    }
+}
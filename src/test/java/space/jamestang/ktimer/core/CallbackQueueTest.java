@@ -0,0 +1,48 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CallbackQueueTest {
+
+    @Test
+    void acquireNeverWaitsWhateverThePolicy() {
+        for (var policy : CallbackOverflowPolicy.values()) {
+            var queue = new CallbackQueue(1, policy);
+            assertTrue(queue.acquire());
+            assertFalse(queue.acquire());
+            assertEquals(1, queue.rejectedCount());
+            assertFalse(queue.tryAcquire());
+            assertEquals(1, queue.rejectedCount());
+        }
+    }
+
+    @Test
+    void waitersRunOneAtATimeAsSlotsAreFreed() {
+        var queue = new CallbackQueue(2, CallbackOverflowPolicy.BLOCK);
+        assertTrue(queue.acquire());
+        assertTrue(queue.acquire());
+        var woken = new AtomicInteger();
+        queue.whenAvailable(woken::incrementAndGet);
+        queue.whenAvailable(woken::incrementAndGet);
+        assertEquals(0, woken.get());
+
+        queue.complete();
+        assertEquals(1, woken.get());
+        queue.release();
+        assertEquals(2, woken.get());
+        assertEquals(1, queue.completedCount());
+        assertEquals(0, queue.depth());
+    }
+
+    @Test
+    void waiterRunsRightAwayIfASlotIsFree() {
+        var queue = new CallbackQueue(1, CallbackOverflowPolicy.BLOCK);
+        var woken = new AtomicInteger();
+        queue.whenAvailable(woken::incrementAndGet);
+        assertEquals(1, woken.get());
+    }
+}
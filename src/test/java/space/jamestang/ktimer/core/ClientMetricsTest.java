@@ -0,0 +1,74 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.TimerCallbackData;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ClientMetricsTest {
+
+    @Test
+    void framesAreCountedByTypeWithTheirLengthPrefix() {
+        var metrics = new ClientMetrics();
+        metrics.frameSent(MessageType.TIMER_REGISTER, 100);
+        metrics.frameSent(MessageType.TIMER_REGISTER, 50);
+        metrics.frameSent(null, 10);
+        metrics.frameReceived(MessageType.ACK, 20, 1000);
+
+        assertEquals(2, metrics.framesSent(MessageType.TIMER_REGISTER));
+        assertEquals(2L, metrics.getFramesSent().get("TIMER_REGISTER"));
+        assertEquals(0L, metrics.getFramesSent().get("ACK"));
+        assertEquals(172, metrics.getBytesSent());
+        assertEquals(1, metrics.framesReceived(MessageType.ACK));
+        assertEquals(24, metrics.getBytesReceived());
+        assertEquals(1000, metrics.getDecodeTime().getMax());
+    }
+
+    @Test
+    void callbackLatenessIsMeasuredFromTheDueTime() {
+        var metrics = new ClientMetrics();
+        var callback = new TimerCallbackData("timer-1", 10_000L, 10_030L, 1, null, "x.Payload");
+        metrics.callbackReceived(callback, 10_050L);
+
+        assertEquals(50, metrics.getCallbackLateness().getMax());
+        assertEquals(30, metrics.getServerLateness().getMax());
+    }
+
+    @Test
+    void callbacksWithoutDueTimeAreSkipped() {
+        var metrics = new ClientMetrics();
+        metrics.callbackReceived(new TimerCallbackData("timer-1", null, null, 1, null, "x.Payload"), 10_050L);
+        metrics.callbackReceived(new TimerCallbackData("timer-2", 5_000L, null, 1, null, "x.Payload"), 6_000L);
+
+        assertEquals(1, metrics.getCallbackLateness().getCount());
+        assertEquals(0, metrics.getServerLateness().getCount());
+    }
+
+    @Test
+    void handlerTimeIsKeptPerPayloadClass() {
+        var metrics = new ClientMetrics();
+        metrics.callbackHandled(String.class, 100);
+        metrics.callbackHandled(String.class, 200);
+        metrics.callbackHandled(Integer.class, 300);
+
+        assertEquals(2, metrics.handlerTime(String.class).getCount());
+        assertNull(metrics.handlerTime(Long.class));
+        assertEquals(300, metrics.getHandlerTimes().get("java.lang.Integer").getMax());
+    }
+
+    @Test
+    void gaugesAreReadOnEveryRead() {
+        var metrics = new ClientMetrics();
+        var depth = new AtomicLong(3);
+        metrics.registerGauge("depth", depth::get);
+        assertEquals(3L, metrics.getGauges().get("depth"));
+
+        depth.set(7);
+        assertEquals(7L, metrics.getGauges().get("depth"));
+        metrics.registerGauge("depth", () -> 1);
+        assertEquals(1L, metrics.getGauges().get("depth"));
+    }
+}
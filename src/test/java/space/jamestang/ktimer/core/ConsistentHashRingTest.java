@@ -0,0 +1,143 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    private static ConsistentHashRing<String> ring(List<String> nodes) {
+        return new ConsistentHashRing<>(nodes, Function.identity(), 160);
+    }
+
+    @Test
+    void keysAreSpreadEvenly() {
+        var ring = ring(List.of("a", "b", "c"));
+        var counts = new HashMap<String, Integer>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.owner("timer-" + i), 1, Integer::sum);
+        }
+        assertEquals(Set.of("a", "b", "c"), counts.keySet());
+        for (var count : counts.values()) {
+            // Within 25% of a third
+            assertTrue(Math.abs(count - KEYS / 3) < KEYS / 12, counts.toString());
+        }
+    }
+
+    @Test
+    void placementOnlyDependsOnNodeNames() {
+        var ring = ring(List.of("a", "b", "c"));
+        var reordered = ring(List.of("c", "a", "b"));
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.owner("timer-" + i), reordered.owner("timer-" + i));
+        }
+    }
+
+    @Test
+    void addingANodeOnlyMovesKeysToIt() {
+        var before = ring(List.of("a", "b", "c"));
+        var after = ring(List.of("a", "b", "c", "d"));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var key = "timer-" + i;
+            var owner = after.owner(key);
+            if (!owner.equals(before.owner(key))) {
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+        assertTrue(moved > KEYS / 8 && moved < KEYS / 3, "moved " + moved);
+    }
+
+    @Test
+    void addNodeOnlyMovesAboutOneNthOfTheKeysToIt() {
+        var ring = ring(List.of("a", "b", "c", "d"));
+        var before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.owner("timer-" + i);
+        }
+        ring.addNode("e");
+        var rebuilt = ring(List.of("a", "b", "c", "d", "e"));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var key = "timer-" + i;
+            var owner = ring.owner(key);
+            assertEquals(rebuilt.owner(key), owner);
+            if (!owner.equals(before[i])) {
+                assertEquals("e", owner);
+                moved++;
+            }
+        }
+        // Within 25% of a fifth
+        assertTrue(Math.abs(moved - KEYS / 5) < KEYS / 20, "moved " + moved);
+        assertEquals(List.of("a", "b", "c", "d", "e"), ring.nodes());
+    }
+
+    @Test
+    void removeNodeOnlyMovesItsOwnKeys() {
+        var ring = ring(List.of("a", "b", "c", "d", "e"));
+        var before = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            before[i] = ring.owner("timer-" + i);
+        }
+        assertTrue(ring.removeNode("c"));
+        assertFalse(ring.removeNode("c"));
+        var rebuilt = ring(List.of("a", "b", "d", "e"));
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            var key = "timer-" + i;
+            var owner = ring.owner(key);
+            assertEquals(rebuilt.owner(key), owner);
+            if (before[i].equals("c")) {
+                moved++;
+            } else {
+                assertEquals(before[i], owner);
+            }
+        }
+        assertTrue(Math.abs(moved - KEYS / 5) < KEYS / 20, "moved " + moved);
+        assertEquals(List.of("a", "b", "d", "e"), ring.nodes());
+    }
+
+    @Test
+    void rejectsADuplicateOrTheLastNode() {
+        var ring = ring(List.of("a"));
+        assertThrows(IllegalArgumentException.class, () -> ring.addNode("a"));
+        assertThrows(IllegalArgumentException.class, () -> ring.removeNode("a"));
+        assertEquals("a", ring.owner("timer-1"));
+    }
+
+    @Test
+    void unavailableNodeOnlyReroutesItsOwnKeys() {
+        var ring = ring(List.of("a", "b", "c"));
+        for (int i = 0; i < KEYS; i++) {
+            var key = "timer-" + i;
+            var owner = ring.owner(key);
+            var routed = ring.route(key, node -> !node.equals("b"));
+            if (owner.equals("b")) {
+                assertNotEquals("b", routed);
+            } else {
+                assertEquals(owner, routed);
+            }
+        }
+    }
+
+    @Test
+    void routeReturnsNullIfNoNodeIsAvailable() {
+        var ring = ring(List.of("a", "b"));
+        assertNull(ring.route("timer-1", node -> false));
+        assertEquals(ring.owner("timer-1"), ring.route("timer-1", node -> true));
+    }
+
+    @Test
+    void rejectsAnEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> ring(List.of()));
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing<>(List.of("a"), Function.identity(), 0));
+    }
+}
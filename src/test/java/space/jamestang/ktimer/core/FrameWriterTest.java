@@ -0,0 +1,258 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameWriterTest {
+
+    /**
+     * Collects the bytes and counts the flushes. Writes wait while {@link #gate} is closed.
+     */
+    private static final class RecordingStream extends OutputStream {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final AtomicInteger flushes = new AtomicInteger();
+        private final CountDownLatch gate;
+        private final CountDownLatch writing = new CountDownLatch(1);
+
+        private RecordingStream(CountDownLatch gate) {
+            this.gate = gate;
+        }
+
+        @Override
+        public synchronized void write(int b) {
+            bytes.write(b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writing.countDown();
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            synchronized (this) {
+                bytes.write(b, off, len);
+            }
+        }
+
+        @Override
+        public void flush() {
+            flushes.incrementAndGet();
+        }
+
+        synchronized List<String> frames() throws IOException {
+            var in = new DataInputStream(new ByteArrayInputStream(bytes.toByteArray()));
+            var frames = new ArrayList<String>();
+            while (in.available() > 0) {
+                var frame = new byte[in.readInt()];
+                in.readFully(frame);
+                frames.add(new String(frame, StandardCharsets.UTF_8));
+            }
+            return frames;
+        }
+    }
+
+    private static byte[] frame(String text) {
+        return text.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Test
+    void framesOfConcurrentSendersAreNeverInterleaved() throws Exception {
+        var stream = new RecordingStream(new CountDownLatch(0));
+        var writer = new FrameWriter(stream, 64, 16, 0, "writer-test-concurrent");
+        writer.start();
+        int threads = 4;
+        int framesPerThread = 500;
+        var senders = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            int sender = t;
+            senders.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < framesPerThread; i++) {
+                    try {
+                        writer.send(frame("sender-" + sender + "-frame-" + i + "-" + "x".repeat(i % 50)));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+            }));
+        }
+        for (var sender : senders) {
+            sender.join();
+        }
+        writer.close();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+
+        var frames = stream.frames();
+        assertEquals(threads * framesPerThread, frames.size());
+        assertEquals(frames.size(), new HashSet<>(frames).size());
+        // Each sender's frames keep their order
+        for (int t = 0; t < threads; t++) {
+            var prefix = "sender-" + t + "-frame-";
+            var own = frames.stream().filter(f -> f.startsWith(prefix)).toList();
+            for (int i = 0; i < own.size(); i++) {
+                assertTrue(own.get(i).startsWith(prefix + i + "-"), own.get(i));
+            }
+        }
+    }
+
+    @Test
+    void framesQueuedDuringAWriteAreFlushedTogether() throws Exception {
+        var gate = new CountDownLatch(1);
+        var stream = new RecordingStream(gate);
+        var writer = new FrameWriter(stream, 64, 64, 0, "writer-test-coalesce");
+        writer.start();
+
+        writer.send(frame("first"));
+        assertTrue(stream.writing.await(5, TimeUnit.SECONDS));
+        for (int i = 0; i < 20; i++) {
+            writer.send(frame("queued-" + i));
+        }
+        gate.countDown();
+        writer.close();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+
+        assertEquals(21, stream.frames().size());
+        // One flush for the first frame, one for the 20 queued behind it
+        assertEquals(2, stream.flushes.get());
+    }
+
+    @Test
+    void lingerWaitsForMoreFramesBeforeFlushing() throws Exception {
+        var stream = new RecordingStream(new CountDownLatch(0));
+        var writer = new FrameWriter(stream, 64, 64, TimeUnit.MILLISECONDS.toNanos(200), "writer-test-linger");
+        writer.start();
+        for (int i = 0; i < 10; i++) {
+            writer.send(frame("frame-" + i));
+        }
+        writer.close();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+
+        assertEquals(10, stream.frames().size());
+        assertEquals(1, stream.flushes.get());
+    }
+
+    @Test
+    void closeWritesQueuedFramesThenRejectsNewOnes() throws Exception {
+        var gate = new CountDownLatch(1);
+        var stream = new RecordingStream(gate);
+        var writer = new FrameWriter(stream, 64, 1, 0, "writer-test-close");
+        writer.start();
+        writer.send(frame("first"));
+        assertTrue(stream.writing.await(5, TimeUnit.SECONDS));
+        writer.send(frame("second"), TimerPriority.LOW, false);
+        writer.send(frame("third"), TimerPriority.HIGH, false);
+        gate.countDown();
+        writer.close();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+
+        assertEquals(List.of("first", "third", "second"), stream.frames());
+        assertEquals(0, writer.pendingFrames());
+        assertThrows(SocketException.class, () -> writer.send(frame("late")));
+    }
+
+    @Test
+    void closeDoesNotWaitForQueuedFrames() throws Exception {
+        var gate = new CountDownLatch(1);
+        var stream = new RecordingStream(gate);
+        var writer = new FrameWriter(stream, 64, 1, 0, "writer-test-close-async");
+        writer.start();
+        writer.send(frame("first"));
+        assertTrue(stream.writing.await(5, TimeUnit.SECONDS));
+        writer.send(frame("second"));
+
+        long start = System.nanoTime();
+        writer.close();
+        assertTrue(System.nanoTime() - start < TimeUnit.MILLISECONDS.toNanos(100));
+        assertFalse(writer.awaitStopped(50, TimeUnit.MILLISECONDS));
+
+        gate.countDown();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+        assertEquals(List.of("first", "second"), stream.frames());
+    }
+
+    @Test
+    void queuedAndWaitingFramesFailOnceTheWriterStopped() throws Exception {
+        var gate = new CountDownLatch(1);
+        var writing = new CountDownLatch(1);
+        var failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                writing.countDown();
+                try {
+                    gate.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                throw new IOException("broken pipe");
+            }
+        };
+        var writer = new FrameWriter(failing, 1, 1, 0, "writer-test-stopped");
+        writer.start();
+        writer.send(frame("written"));
+        assertTrue(writing.await(5, TimeUnit.SECONDS));
+        writer.send(frame("queued"));
+        // The queue is full, this sender waits for room
+        var waiting = new CompletableFuture<Void>();
+        Thread.ofPlatform().start(() -> {
+            try {
+                writer.send(frame("waiting"));
+                waiting.complete(null);
+            } catch (IOException e) {
+                waiting.completeExceptionally(e);
+            }
+        });
+
+        gate.countDown();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+        var error = assertThrows(ExecutionException.class, () -> waiting.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(SocketException.class, error.getCause());
+        assertEquals(0, writer.pendingFrames());
+        assertThrows(SocketException.class, () -> writer.send(frame("late")));
+    }
+
+    @Test
+    void sendFailsOnceTheStreamFailed() throws Exception {
+        var failing = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                throw new IOException("broken pipe");
+            }
+        };
+        var writer = new FrameWriter(failing, 64, 16, 0, "writer-test-failure");
+        writer.start();
+        writer.send(frame("lost"));
+
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (true) {
+            try {
+                writer.send(frame("next"));
+            } catch (SocketException e) {
+                assertTrue(e.getMessage().contains("broken pipe"), e.getMessage());
+                break;
+            }
+            assertTrue(System.nanoTime() < deadline, "send kept succeeding");
+            Thread.sleep(5);
+        }
+        writer.close();
+        assertTrue(writer.awaitStopped(5, TimeUnit.SECONDS));
+    }
+}
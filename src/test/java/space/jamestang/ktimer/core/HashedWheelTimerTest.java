@@ -0,0 +1,101 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HashedWheelTimerTest {
+
+    private static Thread worker(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> thread.getName().equals(name))
+                .findFirst()
+                .orElseThrow();
+    }
+
+    private static void awaitParked(Thread thread) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != Thread.State.WAITING) {
+            assertTrue(System.nanoTime() < deadline, "Worker still " + thread.getState());
+            Thread.sleep(5);
+        }
+    }
+
+    @Test
+    void firesAfterTheDelay() throws InterruptedException {
+        var timer = new HashedWheelTimer("wheel-test-delay", 10, 8);
+        var fired = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(fired::countDown, 50, TimeUnit.MILLISECONDS);
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+    }
+
+    @Test
+    void firesInDeadlineOrderAcrossRounds() throws InterruptedException {
+        // One round of the wheel is 40ms
+        var timer = new HashedWheelTimer("wheel-test-rounds", 10, 4);
+        var order = new CopyOnWriteArrayList<Integer>();
+        var done = new CountDownLatch(3);
+        long start = System.nanoTime();
+        for (int delay : new int[]{130, 20, 70}) {
+            timer.newTimeout(() -> {
+                order.add(delay);
+                done.countDown();
+            }, delay, TimeUnit.MILLISECONDS);
+        }
+        assertTrue(done.await(5, TimeUnit.SECONDS));
+        assertEquals(List.of(20, 70, 130), order);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(130));
+    }
+
+    @Test
+    void cancelledTimeoutDoesNotRun() throws InterruptedException {
+        var timer = new HashedWheelTimer("wheel-test-cancel", 10, 8);
+        var cancelled = timer.newTimeout(() -> fail("cancelled timeout ran"), 30, TimeUnit.MILLISECONDS);
+        var fired = new CountDownLatch(1);
+        timer.newTimeout(fired::countDown, 60, TimeUnit.MILLISECONDS);
+
+        assertTrue(cancelled.cancel());
+        assertTrue(cancelled.isCancelled());
+        assertFalse(cancelled.cancel());
+        assertTrue(fired.await(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void workerParksWhileTheWheelIsEmpty() throws InterruptedException {
+        var timer = new HashedWheelTimer("wheel-test-park", 1, 8);
+        var first = new CountDownLatch(1);
+        timer.newTimeout(first::countDown, 5, TimeUnit.MILLISECONDS);
+        assertTrue(first.await(5, TimeUnit.SECONDS));
+        var worker = worker("wheel-test-park");
+        // A ticking worker would be TIMED_WAITING in its sleep
+        awaitParked(worker);
+
+        Thread.sleep(50);
+        var second = new CountDownLatch(1);
+        long start = System.nanoTime();
+        timer.newTimeout(second::countDown, 20, TimeUnit.MILLISECONDS);
+        assertTrue(second.await(5, TimeUnit.SECONDS));
+        // The ticks slept through are skipped, not used to fire the new timeout early
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(19));
+        awaitParked(worker);
+    }
+
+    @Test
+    void workerParksOnceEveryTimeoutIsCancelled() throws InterruptedException {
+        var timer = new HashedWheelTimer("wheel-test-park-cancel", 1, 8);
+        var timeout = timer.newTimeout(() -> fail("cancelled timeout ran"), 60_000, TimeUnit.MILLISECONDS);
+        Thread.sleep(20);
+        var worker = worker("wheel-test-park-cancel");
+        assertEquals(Thread.State.TIMED_WAITING, worker.getState());
+
+        timeout.cancel();
+        awaitParked(worker);
+    }
+}
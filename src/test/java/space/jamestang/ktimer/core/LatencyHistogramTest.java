@@ -0,0 +1,93 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class LatencyHistogramTest {
+
+    @Test
+    void emptyHistogramReadsZero() {
+        var snapshot = new LatencyHistogram().snapshot();
+        assertEquals(0, snapshot.getCount());
+        assertEquals(0, snapshot.getP99());
+        assertEquals(0, snapshot.getMean());
+    }
+
+    @Test
+    void smallValuesAreExact() {
+        var histogram = new LatencyHistogram();
+        for (int value = 0; value < 8; value++) {
+            histogram.record(value);
+        }
+        var snapshot = histogram.snapshot();
+        assertEquals(8, snapshot.getCount());
+        assertEquals(28, snapshot.getSum());
+        assertEquals(7, snapshot.getMax());
+        assertEquals(3, snapshot.getP50());
+    }
+
+    @Test
+    void percentilesAreWithinTheBucketPrecision() {
+        var histogram = new LatencyHistogram();
+        for (long value = 1; value <= 100_000; value++) {
+            histogram.record(value * 1000);
+        }
+        var snapshot = histogram.snapshot();
+        assertEquals(100_000, snapshot.getCount());
+        assertEquals(100_000_000, snapshot.getMax());
+        assertWithin(50_000_000, snapshot.getP50());
+        assertWithin(90_000_000, snapshot.getP90());
+        assertWithin(99_000_000, snapshot.getP99());
+        assertWithin(99_900_000, snapshot.getP999());
+        assertEquals(50_000_500, snapshot.getMean(), 1);
+    }
+
+    @Test
+    void percentilesNeverExceedTheMax() {
+        var histogram = new LatencyHistogram();
+        histogram.record(1001);
+        assertEquals(1001, histogram.snapshot().getP999());
+    }
+
+    @Test
+    void negativeValuesCountAsZero() {
+        var histogram = new LatencyHistogram();
+        histogram.record(-5);
+        var snapshot = histogram.snapshot();
+        assertEquals(1, snapshot.getCount());
+        assertEquals(0, snapshot.getMax());
+        assertEquals(0, snapshot.getSum());
+    }
+
+    @Test
+    void largestValuesFitTheLastBucket() {
+        var histogram = new LatencyHistogram();
+        histogram.record(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, histogram.snapshot().getP50());
+    }
+
+    @Test
+    void concurrentRecordingsAreAllCounted() throws InterruptedException {
+        var histogram = new LatencyHistogram();
+        var threads = new ArrayList<Thread>();
+        for (int t = 0; t < 4; t++) {
+            threads.add(Thread.ofPlatform().start(() -> {
+                for (int i = 0; i < 100_000; i++) {
+                    histogram.record(i);
+                }
+            }));
+        }
+        for (var thread : threads) {
+            thread.join();
+        }
+        assertEquals(400_000, histogram.snapshot().getCount());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        // Eight buckets per power of two, a bucket spans at most 12.5% of its values
+        assertTrue(actual >= expected * 0.875 && actual <= expected * 1.125, "expected ~" + expected + ", got " + actual);
+    }
+}
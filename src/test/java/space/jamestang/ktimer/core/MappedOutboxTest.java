@@ -0,0 +1,182 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+class MappedOutboxTest {
+
+    private static final int SEGMENT_BYTES = 4096;
+
+    @TempDir
+    Path directory;
+
+    private static byte[] frame(int index) {
+        var frame = new byte[500];
+        Arrays.fill(frame, (byte) index);
+        return frame;
+    }
+
+    private List<String> segmentFiles() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(path -> path.getFileName().toString())
+                    .filter(name -> name.startsWith("outbox-"))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private List<String> recoveredIds() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            return outbox.recovered().stream().map(MappedOutbox.Record::messageId).toList();
+        }
+    }
+
+    @Test
+    void recoversUnacknowledgedRequestsInOrder() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            outbox.append("m1", "json", frame(1));
+            outbox.append("m2", "smile", frame(2));
+            outbox.append("m3", "json", frame(3));
+            outbox.acknowledge("m2");
+            outbox.acknowledge("unknown");
+            assertEquals(2, outbox.size());
+        }
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            var recovered = outbox.recovered();
+            assertEquals(List.of("m1", "m3"), recovered.stream().map(MappedOutbox.Record::messageId).toList());
+            assertEquals("json", recovered.get(0).codec());
+            assertArrayEquals(frame(3), recovered.get(1).frame());
+            assertEquals(List.of(), outbox.recovered());
+        }
+    }
+
+    @Test
+    void acknowledgedSegmentsAreDeleted() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            for (int i = 0; i < 100; i++) {
+                outbox.append("m" + i, "json", frame(i));
+                outbox.acknowledge("m" + i);
+            }
+            assertTrue(segmentFiles().size() <= 2, segmentFiles()::toString);
+        }
+        assertEquals(List.of(), recoveredIds());
+    }
+
+    @Test
+    void unacknowledgedRequestDoesNotPinItsSegment() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            outbox.append("stuck", "json", frame(42));
+            for (int i = 0; i < 100; i++) {
+                outbox.append("m" + i, "json", frame(i));
+                outbox.acknowledge("m" + i);
+                outbox.force();
+            }
+            assertTrue(segmentFiles().size() <= 2, segmentFiles()::toString);
+            assertEquals(1, outbox.size());
+        }
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            var recovered = outbox.recovered();
+            assertEquals(1, recovered.size());
+            assertEquals("stuck", recovered.get(0).messageId());
+            assertArrayEquals(frame(42), recovered.get(0).frame());
+        }
+    }
+
+    @Test
+    void compactedRequestsKeepTheirReplayOrder() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            outbox.append("register", "json", frame(1));
+            for (int i = 0; i < 20; i++) {
+                outbox.append("m" + i, "json", frame(i));
+                outbox.acknowledge("m" + i);
+            }
+            outbox.append("cancel", "json", frame(2));
+            for (int i = 20; i < 40; i++) {
+                outbox.append("m" + i, "json", frame(i));
+                outbox.acknowledge("m" + i);
+            }
+        }
+        assertEquals(List.of("register", "cancel"), recoveredIds());
+    }
+
+    @Test
+    void segmentFullOfUnacknowledgedRequestsIsKept() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            for (int i = 0; i < 7; i++) {
+                outbox.append("stuck" + i, "json", frame(i));
+            }
+            for (int i = 0; i < 30; i++) {
+                outbox.append("m" + i, "json", frame(i));
+                outbox.acknowledge("m" + i);
+            }
+            assertTrue(segmentFiles().contains(String.format("outbox-%020d.log", 0)), segmentFiles()::toString);
+        }
+        assertEquals(List.of("stuck0", "stuck1", "stuck2", "stuck3", "stuck4", "stuck5", "stuck6"), recoveredIds());
+    }
+
+    @Test
+    void segmentsAreUnmappedOnceDeletedAndOnClose() throws IOException {
+        var maps = Path.of("/proc/self/maps");
+        assumeTrue(Files.isReadable(maps), "needs /proc/self/maps");
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            for (int i = 0; i < 100; i++) {
+                outbox.append("m" + i, "json", frame(i));
+                outbox.acknowledge("m" + i);
+            }
+            outbox.force();
+            // Only the segments still on disk are mapped
+            assertEquals(segmentFiles().size(), mappedSegments(maps), segmentFiles()::toString);
+        }
+        assertEquals(0, mappedSegments(maps));
+    }
+
+    private long mappedSegments(Path maps) throws IOException {
+        var prefix = directory.toRealPath().resolve("outbox-").toString();
+        try (var lines = Files.lines(maps)) {
+            return lines.filter(line -> line.contains(prefix)).count();
+        }
+    }
+
+    @Test
+    void corruptRecordEndsTheSegment() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            outbox.append("m1", "json", frame(1));
+            outbox.append("m2", "json", frame(2));
+        }
+        var segment = directory.resolve(segmentFiles().get(0));
+        try (var channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // Inside the frame of the second record
+            channel.write(ByteBuffer.wrap(new byte[]{99}), channel.size() - SEGMENT_BYTES + 900);
+        }
+        assertEquals(List.of("m1"), recoveredIds());
+    }
+
+    @Test
+    void directoryCanOnlyBeOpenedOnce() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            assertThrows(IOException.class, () -> MappedOutbox.open(directory, SEGMENT_BYTES));
+        }
+    }
+
+    @Test
+    void recordLargerThanASegmentIsRefused() throws IOException {
+        try (var outbox = MappedOutbox.open(directory, SEGMENT_BYTES)) {
+            assertThrows(IOException.class, () -> outbox.append("big", "json", new byte[SEGMENT_BYTES]));
+            outbox.append("small", "json", frame(1));
+            assertEquals(1, outbox.size());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package space.jamestang.ktimer.core;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PayloadTypeResolverTest {
+
+    public static class Order {
+        public String id;
+        public int quantity;
+    }
+
+    /**
+     * Counts the classes looked up through it.
+     */
+    private static final class CountingClassLoader extends ClassLoader {
+        private final AtomicInteger lookups = new AtomicInteger();
+
+        private CountingClassLoader() {
+            super(PayloadTypeResolverTest.class.getClassLoader());
+        }
+
+        @Override
+        protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+            lookups.incrementAndGet();
+            return super.loadClass(name, resolve);
+        }
+    }
+
+    private final Map<Class<?>, CallbackHandler<?>> handlers = new ConcurrentHashMap<>();
+    private final CountingClassLoader classLoader = new CountingClassLoader();
+    private final PayloadTypeResolver resolver = new PayloadTypeResolver(handlers, classLoader, new ObjectMapper(), 16);
+
+    @Test
+    void registeredHandlerTypesResolveByCanonicalAndBinaryName() {
+        handlers.put(Order.class, (payload, raw) -> {
+        });
+        resolver.handlerRegistered(Order.class);
+
+        assertSame(Order.class, resolver.resolve(Order.class.getCanonicalName()));
+        assertSame(Order.class, resolver.resolve(Order.class.getName()));
+        assertEquals(0, classLoader.lookups.get());
+    }
+
+    @Test
+    void nestedClassesResolveByCanonicalNameWithoutAHandler() {
+        assertSame(Order.class, resolver.resolve(Order.class.getCanonicalName()));
+        assertSame(String.class, resolver.resolve("java.lang.String"));
+    }
+
+    @Test
+    void resolutionsAndMissesAreCached() {
+        assertNull(resolver.resolve("com.example.Missing"));
+        int lookups = classLoader.lookups.get();
+        assertTrue(lookups > 0);
+
+        assertNull(resolver.resolve("com.example.Missing"));
+        assertSame(Order.class, resolver.resolve(Order.class.getCanonicalName()));
+        lookups = classLoader.lookups.get();
+        assertSame(Order.class, resolver.resolve(Order.class.getCanonicalName()));
+        assertEquals(lookups, classLoader.lookups.get());
+    }
+
+    @Test
+    void registeringAHandlerForgetsCachedMisses() {
+        var handlers = new ConcurrentHashMap<Class<?>, CallbackHandler<?>>();
+        // A loader that finds nothing, only registered handlers resolve
+        var resolver = new PayloadTypeResolver(handlers, new ClassLoader(null) {
+        }, new ObjectMapper(), 16);
+        assertNull(resolver.resolve(Order.class.getName()));
+
+        handlers.put(Order.class, (payload, raw) -> {
+        });
+        resolver.handlerRegistered(Order.class);
+        assertSame(Order.class, resolver.resolve(Order.class.getName()));
+
+        handlers.remove(Order.class);
+        resolver.handlerUnregistered(Order.class);
+        assertNull(resolver.resolve(Order.class.getName()));
+    }
+
+    @Test
+    void cacheStaysUsableBeyondMaxEntries() {
+        for (int i = 0; i < 100; i++) {
+            assertNull(resolver.resolve("com.example.Missing" + i));
+        }
+        assertSame(Order.class, resolver.resolve(Order.class.getCanonicalName()));
+    }
+
+    @Test
+    void convertsGenericPayloadsToTheTargetType() throws IOException {
+        var map = new HashMap<String, Object>();
+        map.put("id", "o-1");
+        map.put("quantity", 3);
+        var order = (Order) resolver.convert(map, Order.class);
+        assertEquals("o-1", order.id);
+        assertEquals(3, order.quantity);
+
+        assertSame(order, resolver.convert(order, Order.class));
+        assertNull(resolver.convert(null, Order.class));
+    }
+}
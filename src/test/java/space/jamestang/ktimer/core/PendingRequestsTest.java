@@ -0,0 +1,133 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.AckData;
+import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PendingRequestsTest {
+
+    private static final HashedWheelTimer TIMER = new HashedWheelTimer("pending-requests-test", 10, 64);
+
+    private static KTimerMessage request(String messageId, long timestamp) {
+        return new KTimerMessage("1.0", MessageType.TIMER_REGISTER, messageId, "client", timestamp, null);
+    }
+
+    private static AckData ack(String originalMessageId, AckStatus status) {
+        return new AckData(originalMessageId, status, null, null, null, null);
+    }
+
+    @Test
+    void ackCompletesTheRequestWithTheSameMessageId() throws Exception {
+        var requests = new PendingRequests(TIMER);
+        var first = requests.register(request("m1", 1), 60_000);
+        var second = requests.register(request("m2", 2), 60_000);
+
+        assertTrue(requests.complete(ack("m2", AckStatus.FAILED)));
+        assertFalse(first.isDone());
+        assertEquals(AckStatus.FAILED, second.get().getStatus());
+        assertTrue(requests.complete(ack("m1", AckStatus.SUCCESS)));
+        assertEquals(AckStatus.SUCCESS, first.get().getStatus());
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    void unknownAndRepeatedAcksAreIgnored() {
+        var requests = new PendingRequests(TIMER);
+        requests.register(request("m1", 1), 60_000);
+
+        assertFalse(requests.complete(ack("other", AckStatus.SUCCESS)));
+        assertFalse(requests.complete(ack(null, AckStatus.SUCCESS)));
+        assertTrue(requests.complete(ack("m1", AckStatus.SUCCESS)));
+        assertFalse(requests.complete(ack("m1", AckStatus.SUCCESS)));
+    }
+
+    @Test
+    void requestWithoutAckTimesOut() {
+        var requests = new PendingRequests(TIMER);
+        var future = requests.register(request("m1", 1), 50);
+
+        var error = assertThrows(ExecutionException.class, () -> future.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(TimeoutException.class, error.getCause());
+        assertEquals(0, requests.size());
+        assertFalse(requests.complete(ack("m1", AckStatus.SUCCESS)));
+    }
+
+    @Test
+    void duplicateMessageIdFailsOnlyTheNewRequest() {
+        var requests = new PendingRequests(TIMER);
+        var first = requests.register(request("m1", 1), 60_000);
+        var duplicate = requests.register(request("m1", 2), 60_000);
+
+        assertTrue(duplicate.isCompletedExceptionally());
+        assertFalse(first.isDone());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    void failAllFailsEveryWaitingRequest() {
+        var requests = new PendingRequests(TIMER);
+        var first = requests.register(request("m1", 1), 60_000);
+        var second = requests.register(request("m2", 2), 60_000);
+
+        requests.failAll(new IOException("connection lost"));
+        for (var future : List.of(first, second)) {
+            var error = assertThrows(ExecutionException.class, future::get);
+            assertInstanceOf(IOException.class, error.getCause());
+        }
+        assertEquals(0, requests.size());
+    }
+
+    @Test
+    void requestsAreListedOldestFirstPerRoute() {
+        var requests = new PendingRequests(TIMER);
+        var serverA = new Object();
+        var serverB = new Object();
+        requests.register(request("m3", 3), serverA, 60_000);
+        requests.register(request("m1", 1), serverB, 60_000);
+        requests.register(request("m2", 2), serverA, 60_000);
+
+        assertEquals(List.of("m1", "m2", "m3"), ids(requests.requests()));
+        assertEquals(List.of("m2", "m3"), ids(requests.routedTo(serverA)));
+
+        assertTrue(requests.reroute("m3", serverB));
+        assertFalse(requests.reroute("unknown", serverB));
+        assertEquals(List.of("m1", "m3"), ids(requests.routedTo(serverB)));
+    }
+
+    @Test
+    void aRequestIsReroutedOnceFromItsRoute() {
+        var requests = new PendingRequests(TIMER);
+        var serverA = new Object();
+        var serverB = new Object();
+        requests.register(request("m1", 1), serverA, 60_000);
+
+        // A second failover of server A finds the request moved already
+        assertTrue(requests.reroute("m1", serverA, serverB));
+        assertFalse(requests.reroute("m1", serverA, serverB));
+        assertEquals(List.of("m1"), ids(requests.routedTo(serverB)));
+    }
+
+    @Test
+    void ackLatencyIsRecorded() {
+        var latency = new LatencyHistogram();
+        var requests = new PendingRequests(TIMER, latency);
+        requests.register(request("m1", 1), 60_000);
+        requests.complete(ack("m1", AckStatus.SUCCESS));
+
+        assertEquals(1, latency.snapshot().getCount());
+    }
+
+    private static List<String> ids(List<KTimerMessage> messages) {
+        return messages.stream().map(KTimerMessage::getMessageId).toList();
+    }
+}
@@ -0,0 +1,108 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.HashSet;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecentCallbackSetTest {
+
+    @Test
+    void keysDependOnTimerIdAndAttempt() {
+        long key = RecentCallbackSet.key("timer-1", 1);
+        assertEquals(key, RecentCallbackSet.key("timer-1", 1));
+        assertNotEquals(key, RecentCallbackSet.key("timer-1", 2));
+        assertNotEquals(key, RecentCallbackSet.key("timer-2", 1));
+        assertEquals(RecentCallbackSet.key("timer-1", 0), RecentCallbackSet.key("timer-1", null));
+
+        var keys = new HashSet<Long>();
+        for (int i = 0; i < 100_000; i++) {
+            long k = RecentCallbackSet.key("timer-" + i, 1);
+            assertNotEquals(0, k);
+            keys.add(k);
+        }
+        assertEquals(100_000, keys.size());
+    }
+
+    @Test
+    void remembersAddedCallbacksAndCountsLookups() {
+        var recent = new RecentCallbackSet(60_000, 1000);
+        for (int i = 0; i < 1000; i++) {
+            recent.add(RecentCallbackSet.key("timer-" + i, 1));
+        }
+        for (int i = 0; i < 1000; i++) {
+            assertTrue(recent.contains(RecentCallbackSet.key("timer-" + i, 1)), "timer-" + i);
+        }
+        assertFalse(recent.contains(RecentCallbackSet.key("timer-0", 2)));
+        assertEquals(1000, recent.hits());
+        assertEquals(1, recent.misses());
+    }
+
+    @Test
+    void callbacksAreForgottenAfterTwoWindows() throws InterruptedException {
+        var recent = new RecentCallbackSet(100, 1000);
+        long key = RecentCallbackSet.key("timer-1", 1);
+        recent.add(key);
+
+        Thread.sleep(120);
+        // Rotated into the previous window, still remembered
+        assertTrue(recent.contains(key));
+        Thread.sleep(220);
+        assertFalse(recent.contains(key));
+    }
+
+    @Test
+    void aFullWindowRotatesEarly() {
+        var recent = new RecentCallbackSet(60_000, 10);
+        for (int i = 0; i < 10; i++) {
+            recent.add(RecentCallbackSet.key("old-" + i, 1));
+        }
+        // The 11th starts a new window, the old one stays readable
+        recent.add(RecentCallbackSet.key("new-0", 1));
+        assertTrue(recent.contains(RecentCallbackSet.key("old-0", 1)));
+        assertTrue(recent.contains(RecentCallbackSet.key("new-0", 1)));
+
+        for (int i = 1; i < 11; i++) {
+            recent.add(RecentCallbackSet.key("new-" + i, 1));
+        }
+        assertFalse(recent.contains(RecentCallbackSet.key("old-0", 1)));
+        assertTrue(recent.contains(RecentCallbackSet.key("new-10", 1)));
+    }
+
+    @Test
+    void addingTwiceTakesOneEntry() {
+        var recent = new RecentCallbackSet(60_000, 2);
+        long key = RecentCallbackSet.key("timer-1", 1);
+        recent.add(key);
+        recent.add(key);
+        recent.add(RecentCallbackSet.key("timer-2", 1));
+        recent.add(RecentCallbackSet.key("timer-3", 1));
+        recent.add(RecentCallbackSet.key("timer-4", 1));
+        // timer-1 and timer-2 filled the first window, had the second add counted timer-2 would have
+        // started a window and timer-4 another, losing timer-1
+        assertTrue(recent.contains(key));
+        assertTrue(recent.contains(RecentCallbackSet.key("timer-4", 1)));
+    }
+
+    @Test
+    void lookupsOfAFullWindowEndForEverySize() {
+        // A table without an empty slot would probe forever on a miss
+        assertTimeoutPreemptively(Duration.ofSeconds(5), () -> {
+            for (int maxEntries = 1; maxEntries <= 64; maxEntries++) {
+                var recent = new RecentCallbackSet(60_000, maxEntries);
+                for (int i = 0; i < maxEntries; i++) {
+                    recent.add(RecentCallbackSet.key("timer-" + i, 1));
+                }
+                assertFalse(recent.contains(RecentCallbackSet.key("missing", 1)), "maxEntries " + maxEntries);
+            }
+        });
+    }
+
+    @Test
+    void rejectsInvalidSettings() {
+        assertThrows(IllegalArgumentException.class, () -> new RecentCallbackSet(0, 10));
+        assertThrows(IllegalArgumentException.class, () -> new RecentCallbackSet(1000, 0));
+    }
+}
@@ -0,0 +1,79 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.KTimerMessage;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RequestJournalTest {
+
+    private static KTimerMessage request(String messageId) {
+        return new KTimerMessage("1.0", MessageType.TIMER_REGISTER, messageId, "client", 1L, null);
+    }
+
+    @Test
+    void closedJournalLetsRequestsThrough() {
+        var journal = new RequestJournal(10);
+        assertFalse(journal.isOpen());
+        assertNull(journal.append(request("m1")));
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void openJournalKeepsRequestsInOrder() {
+        var journal = new RequestJournal(10);
+        journal.open();
+        var first = journal.append(request("m1"));
+        journal.append(request("m2"));
+        assertNotNull(first);
+        assertFalse(first.isDone());
+
+        var drained = journal.drain();
+        assertEquals(List.of("m1", "m2"), drained.stream().map(entry -> entry.message().getMessageId()).toList());
+        assertSame(first, drained.get(0).ack());
+        assertTrue(journal.isOpen());
+        assertEquals(0, journal.size());
+    }
+
+    @Test
+    void fullJournalFailsFurtherRequests() {
+        var journal = new RequestJournal(1);
+        journal.open();
+        journal.append(request("m1"));
+        var rejected = journal.append(request("m2"));
+
+        var error = assertThrows(ExecutionException.class, rejected::get);
+        assertInstanceOf(IOException.class, error.getCause());
+        assertEquals(1, journal.size());
+    }
+
+    @Test
+    void closesOnlyOnceDrained() {
+        var journal = new RequestJournal(10);
+        journal.open();
+        journal.append(request("m1"));
+        assertFalse(journal.closeIfEmpty());
+        assertTrue(journal.isOpen());
+
+        journal.drain();
+        assertTrue(journal.closeIfEmpty());
+        assertNull(journal.append(request("m2")));
+    }
+
+    @Test
+    void closeFailsTheJournaledRequests() {
+        var journal = new RequestJournal(10);
+        journal.open();
+        var ack = journal.append(request("m1"));
+        journal.close(new IOException("shut down"));
+
+        assertFalse(journal.isOpen());
+        var error = assertThrows(ExecutionException.class, ack::get);
+        assertEquals("shut down", error.getCause().getMessage());
+    }
+}
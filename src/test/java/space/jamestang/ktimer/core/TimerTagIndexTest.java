@@ -0,0 +1,55 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class TimerTagIndexTest {
+
+    @Test
+    void findsTimersByTagInTheOrderTheyWereAdded() {
+        var index = new TimerTagIndex();
+        index.add("t1", Map.of("tenant", "a", "kind", "retry"));
+        index.add("t2", Map.of("tenant", "b"));
+        index.add("t3", Map.of("tenant", "a"));
+
+        assertEquals(List.of("t1", "t3"), index.timers("tenant", "a"));
+        assertEquals(List.of("t1"), index.timers("kind", "retry"));
+        assertEquals(List.of(), index.timers("tenant", "c"));
+        assertEquals(List.of(), index.timers("unknown", "a"));
+    }
+
+    @Test
+    void addingAnIdAgainReplacesItsTags() {
+        var index = new TimerTagIndex();
+        index.add("t1", Map.of("tenant", "a"));
+        index.add("t1", Map.of("tenant", "b"));
+        assertEquals(List.of(), index.timers("tenant", "a"));
+        assertEquals(List.of("t1"), index.timers("tenant", "b"));
+
+        index.add("t1", null);
+        assertEquals(List.of(), index.timers("tenant", "b"));
+        assertEquals(0, index.size());
+        assertEquals(1, index.liveTimers());
+    }
+
+    @Test
+    void countsTimersWithAndWithoutTags() {
+        var index = new TimerTagIndex();
+        index.add("tagged", Map.of("tenant", "a"));
+        index.add("plain", null);
+        index.add("empty", Map.of());
+        assertEquals(1, index.size());
+        assertEquals(3, index.liveTimers());
+
+        index.remove("plain");
+        index.remove("tagged");
+        index.remove("unknown");
+        assertEquals(0, index.size());
+        assertEquals(1, index.liveTimers());
+        assertEquals(List.of(), index.timers("tenant", "a"));
+    }
+}
@@ -0,0 +1,209 @@
+package space.jamestang.ktimer.core;
+
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static space.jamestang.ktimer.message.enums.TimerPriority.*;
+
+class WeightedFairQueueTest {
+
+    private record Item(TimerPriority priority, int index) {
+    }
+
+    private static WeightedFairQueue<Item> filled(int perLane, TimerPriority... priorities) {
+        var queue = new WeightedFairQueue<Item>(10_000);
+        for (var priority : priorities) {
+            for (int i = 0; i < perLane; i++) {
+                assertTrue(queue.offer(new Item(priority, i), priority, false));
+            }
+        }
+        return queue;
+    }
+
+    private static Map<TimerPriority, Integer> poll(WeightedFairQueue<Item> queue, int count) {
+        var taken = new EnumMap<TimerPriority, Integer>(TimerPriority.class);
+        for (int i = 0; i < count; i++) {
+            taken.merge(queue.poll().priority(), 1, Integer::sum);
+        }
+        return taken;
+    }
+
+    @Test
+    void busyLanesShareByWeight() {
+        var queue = filled(1000, LOW, NORMAL, HIGH);
+        // Every round of 10 picks has the exact shares, not only the total
+        for (int round = 0; round < 10; round++) {
+            assertEquals(Map.of(HIGH, 6, NORMAL, 3, LOW, 1), poll(queue, 10));
+        }
+    }
+
+    @Test
+    void idleLaneLeavesItsShareToTheOthers() {
+        var queue = filled(1000, LOW, NORMAL);
+        assertEquals(Map.of(NORMAL, 75, LOW, 25), poll(queue, 100));
+    }
+
+    @Test
+    void picksAreInterleaved() {
+        var queue = filled(100, LOW, HIGH);
+        var order = new ArrayList<TimerPriority>();
+        for (int i = 0; i < 14; i++) {
+            order.add(queue.poll().priority());
+        }
+        // LOW once in every 7 picks, never two HIGH rounds in a row without it
+        assertEquals(1, order.subList(0, 7).stream().filter(LOW::equals).count());
+        assertEquals(1, order.subList(7, 14).stream().filter(LOW::equals).count());
+    }
+
+    @Test
+    void lanesAreFifo() {
+        var queue = filled(50, LOW, NORMAL, HIGH);
+        var next = new EnumMap<TimerPriority, Integer>(TimerPriority.class);
+        Item item;
+        while ((item = queue.poll()) != null) {
+            assertEquals(next.getOrDefault(item.priority(), 0), item.index());
+            next.put(item.priority(), item.index() + 1);
+        }
+        assertEquals(Map.of(LOW, 50, NORMAL, 50, HIGH, 50), next);
+    }
+
+    @Test
+    void nullPriorityIsNormal() {
+        var queue = new WeightedFairQueue<String>(4);
+        queue.offer("normal", null, false);
+        queue.offer("high", HIGH, false);
+        assertEquals("high", queue.poll());
+        assertEquals("normal", queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    void orderedElementWaitsForEverythingQueuedBeforeIt() {
+        var queue = new WeightedFairQueue<String>(100);
+        queue.offer("low-1", LOW, false);
+        queue.offer("normal-1", NORMAL, false);
+        queue.offer("low-2", LOW, false);
+        queue.offer("ordered", HIGH, true);
+        queue.offer("high-1", HIGH, false);
+        queue.offer("normal-2", NORMAL, false);
+
+        var order = new ArrayList<String>();
+        queue.drainTo(order, 100);
+        int ordered = order.indexOf("ordered");
+        assertTrue(ordered > order.indexOf("low-1"), order::toString);
+        assertTrue(ordered > order.indexOf("low-2"), order::toString);
+        assertTrue(ordered > order.indexOf("normal-1"), order::toString);
+        // Lanes stay FIFO, later elements of the same lane wait too
+        assertTrue(ordered < order.indexOf("high-1"), order::toString);
+        assertEquals(6, order.size());
+    }
+
+    @Test
+    void orderedElementMayBeOvertakenByLaterElementsOfOtherLanes() {
+        var queue = new WeightedFairQueue<String>(100);
+        queue.offer("low", LOW, false);
+        queue.offer("ordered", LOW, true);
+        queue.offer("high", HIGH, false);
+        assertEquals("high", queue.poll());
+        assertEquals("low", queue.poll());
+        assertEquals("ordered", queue.poll());
+    }
+
+    @Test
+    void lowLaneIsNotStarvedByAFloodOfHighElements() {
+        var queue = new WeightedFairQueue<Item>(10_000);
+        for (int i = 0; i < 100; i++) {
+            queue.offer(new Item(LOW, i), LOW, false);
+        }
+        int low = 0;
+        int high = 0;
+        // HIGH is refilled after every pick, so its lane is never empty
+        for (int pick = 0; pick < 700; pick++) {
+            queue.offer(new Item(HIGH, pick), HIGH, false);
+            if (queue.poll().priority() == LOW) {
+                low++;
+            } else {
+                high++;
+            }
+        }
+        assertEquals(100, low);
+        assertEquals(600, high);
+    }
+
+    @Test
+    void orderedHighElementGoesRightAfterItsBarrierClears() {
+        // A cancellation behind the registration it cancels, then a burst of registrations
+        var queue = new WeightedFairQueue<String>(10_000);
+        queue.offer("register", LOW, false);
+        queue.offer("cancel", HIGH, true);
+        for (int i = 0; i < 1000; i++) {
+            queue.offer("burst-" + i, HIGH, false);
+        }
+        assertEquals("register", queue.poll());
+        assertEquals("cancel", queue.poll());
+    }
+
+    @Test
+    void offerFailsAndPutWaitsWhileFull() throws Exception {
+        var queue = new WeightedFairQueue<String>(2);
+        assertTrue(queue.offer("a", LOW, false));
+        assertTrue(queue.offer("b", LOW, false));
+        assertFalse(queue.offer("c", HIGH, false));
+
+        var put = CompletableFuture.runAsync(() -> {
+            try {
+                queue.put("c", HIGH, false);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        Thread.sleep(50);
+        assertFalse(put.isDone());
+        assertEquals("a", queue.poll());
+        put.get(5, TimeUnit.SECONDS);
+        assertEquals(2, queue.size());
+    }
+
+    @Test
+    void pollWithTimeoutWaitsForAnElement() throws Exception {
+        var queue = new WeightedFairQueue<String>(2);
+        assertNull(queue.poll(10, TimeUnit.MILLISECONDS));
+        var polled = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queue.poll(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        queue.offer("a", NORMAL, false);
+        assertEquals("a", polled.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void clearDropsBarriersToo() {
+        var queue = new WeightedFairQueue<String>(10);
+        queue.offer("low", LOW, false);
+        queue.offer("ordered", HIGH, true);
+        queue.clear();
+        assertTrue(queue.isEmpty());
+
+        // A stale barrier at the head of the lane would hide the new one
+        queue.offer("normal", NORMAL, false);
+        queue.offer("high", HIGH, true);
+        assertEquals(List.of("normal", "high"), drain(queue));
+    }
+
+    private static List<String> drain(WeightedFairQueue<String> queue) {
+        var drained = new ArrayList<String>();
+        queue.drainTo(drained, Integer.MAX_VALUE);
+        return drained;
+    }
+}
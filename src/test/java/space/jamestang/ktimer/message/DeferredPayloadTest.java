@@ -0,0 +1,70 @@
+package space.jamestang.ktimer.message;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DeferredPayloadTest {
+
+    public static class Order {
+        public String id;
+        public List<Integer> lines;
+    }
+
+    private static JacksonMessageCodec codec(String name) {
+        return "smile".equals(name) ? JacksonMessageCodec.smile() : JacksonMessageCodec.json();
+    }
+
+    private static TimerCallbackData decodeCallback(JacksonMessageCodec codec, Object payload) throws IOException {
+        var message = new KTimerMessage("1.0", MessageType.TIMER_CALLBACK,
+                "callback-1", "server", 1L, new TimerCallbackData("timer-1", 1L, 2L, 1, payload, Order.class.getName()));
+        return (TimerCallbackData) codec.decode(ByteBuffer.wrap(codec.encode(message))).getData();
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "smile"})
+    void payloadBindsStraightToTheHandlerType(String codecName) throws IOException {
+        var codec = codec(codecName);
+        var callback = decodeCallback(codec, Map.of("id", "o-1", "lines", List.of(1, 2, 3)));
+        var deferred = assertInstanceOf(DeferredPayload.class, callback.getPayload());
+
+        Order order = deferred.bind(codec.mapper().readerFor(Order.class));
+        assertEquals("o-1", order.id);
+        assertEquals(List.of(1, 2, 3), order.lines);
+        // Binding again reads the same tokens
+        Order again = deferred.bind(codec.mapper().readerFor(Order.class));
+        assertEquals("o-1", again.id);
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "smile"})
+    void nonObjectPayloadsAreCapturedToo(String codecName) throws IOException {
+        var codec = codec(codecName);
+        var callback = decodeCallback(codec, List.of("a", "b"));
+        var deferred = assertInstanceOf(DeferredPayload.class, callback.getPayload());
+        assertEquals(List.of("a", "b"), deferred.bind(codec.mapper().readerFor(List.class)));
+
+        var text = decodeCallback(codec, "plain");
+        assertEquals("plain", ((DeferredPayload) text.getPayload()).bind(codec.mapper().readerFor(String.class)));
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"json", "smile"})
+    void serializesBackToTheOriginalPayload(String codecName) throws IOException {
+        var codec = codec(codecName);
+        var payload = Map.of("id", "o-1", "lines", List.of(1, 2));
+        var deferred = (DeferredPayload) decodeCallback(codec, payload).getPayload();
+
+        var mapper = JacksonMessageCodec.json().mapper();
+        JsonNode tree = mapper.valueToTree(deferred);
+        assertEquals(mapper.valueToTree(payload), tree);
+    }
+}
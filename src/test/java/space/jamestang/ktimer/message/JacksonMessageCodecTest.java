@@ -0,0 +1,184 @@
+package space.jamestang.ktimer.message;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.Arguments;
+import org.junit.jupiter.params.provider.MethodSource;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+import space.jamestang.ktimer.message.enums.TimerPriority;
+import space.jamestang.ktimer.testing.FakeKTimerServer;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JacksonMessageCodecTest {
+
+    private static final MessageBuilder MESSAGES = new MessageBuilder(MessageIdGenerator.sequential("test"));
+    private static final Map<String, Object> PAYLOAD = Map.of("value", "payload", "count", 3);
+
+    static Stream<String> codecs() {
+        return Stream.of("json", "smile");
+    }
+
+    static Stream<Arguments> codecsAndTypes() {
+        return codecs().flatMap(codec -> Arrays.stream(MessageType.values()).map(type -> Arguments.of(codec, type)));
+    }
+
+    @ParameterizedTest(name = "{0} {1}")
+    @MethodSource("codecsAndTypes")
+    void roundTripsEveryMessageType(String codecName, MessageType type) throws IOException {
+        var codec = codec(codecName);
+        var message = sample(type);
+        var decoded = codec.decode(ByteBuffer.wrap(codec.encode(message)));
+
+        assertEquals(message.getType(), decoded.getType());
+        assertEquals(message.getMessageId(), decoded.getMessageId());
+        assertEquals(message.getTimestamp(), decoded.getTimestamp());
+        if (message.getData() instanceof TimerCallbackData callback) {
+            // Payloads of callbacks are decoded lazily, bound once the handler type is known
+            var decodedCallback = (TimerCallbackData) decoded.getData();
+            assertEquals(callback.getTimerId(), decodedCallback.getTimerId());
+            assertEquals(callback.getAttempt(), decodedCallback.getAttempt());
+            assertEquals(callback.getPriority(), decodedCallback.getPriority());
+            var payload = assertInstanceOf(DeferredPayload.class, decodedCallback.getPayload());
+            assertEquals(PAYLOAD, payload.bind(codec.mapper().readerFor(Map.class)));
+        } else {
+            // The data classes compare by identity, their JSON trees by value
+            var mapper = JacksonMessageCodec.json().mapper();
+            assertEquals(mapper.valueToTree(message.getData()), mapper.valueToTree(decoded.getData()));
+        }
+    }
+
+    @Test
+    void smileIsMoreCompactThanJson() throws IOException {
+        var batch = sample(MessageType.TIMER_REGISTER_BATCH);
+        assertTrue(JacksonMessageCodec.smile().encode(batch).length < JacksonMessageCodec.json().encode(batch).length);
+    }
+
+    @Test
+    void fieldsMissingFromTheFrameKeepTheirDefaults() throws IOException {
+        var json = """
+                {"type":"TIMER_CALLBACK","messageId":"m1","clientId":"server","timestamp":1,
+                 "data":{"type":"timer_callback_data","timerId":"t1","payload":{"value":"x"},"classInfo":"x.Y"}}
+                """;
+        var decoded = JacksonMessageCodec.json().decode(ByteBuffer.wrap(json.getBytes(StandardCharsets.UTF_8)));
+
+        assertEquals("1.0", decoded.getVersion());
+        var callback = (TimerCallbackData) decoded.getData();
+        assertEquals(1, callback.getAttempt());
+        assertEquals(TimerPriority.NORMAL, callback.getPriority());
+    }
+
+    /**
+     * Registers with a raw connection, then sends a frame of every type in the negotiated codec. The server
+     * has to decode all of them, and the client side has to decode its ACKs and callbacks.
+     */
+    @ParameterizedTest
+    @MethodSource("codecs")
+    void fakeServerDecodesEveryMessageTypeInTheNegotiatedCodec(String codecName) throws Exception {
+        var codec = codec(codecName);
+        try (var server = new FakeKTimerServer();
+             var socket = new Socket(InetAddress.getLoopbackAddress(), server.port())) {
+            socket.setSoTimeout(5000);
+            var out = new DataOutputStream(socket.getOutputStream());
+            var in = new DataInputStream(socket.getInputStream());
+
+            var json = JacksonMessageCodec.json();
+            write(out, json, MESSAGES.createClientRegister("client", "instance", "service", "1.0",
+                    new ClientMetadata("host", "127.0.0.1", 1234, "test"),
+                    List.of(MessageCodec.CAPABILITY_PREFIX + codecName)));
+            var registered = read(in, json);
+            assertEquals(MessageType.ACK, registered.getType());
+            assertEquals(codec.name(), ((AckData) registered.getData()).getDetails().get(MessageCodec.ACK_DETAIL));
+
+            for (var type : MessageType.values()) {
+                if (type != MessageType.CLIENT_REGISTER) {
+                    write(out, codec, sample(type));
+                }
+            }
+            // ACKs of the registration, the batch and the cancellation, and the callback of the 1ms timer
+            int acks = 0;
+            TimerCallbackData callback = null;
+            while (acks < 3 || callback == null) {
+                var reply = read(in, codec);
+                if (reply.getType() == MessageType.ACK) {
+                    assertEquals(AckStatus.SUCCESS, ((AckData) reply.getData()).getStatus());
+                    acks++;
+                } else {
+                    assertEquals(MessageType.TIMER_CALLBACK, reply.getType());
+                    callback = (TimerCallbackData) reply.getData();
+                }
+            }
+            assertEquals("timer-1", callback.getTimerId());
+            assertEquals(TimerPriority.HIGH, callback.getPriority());
+
+            // The frames after the cancellation may still be on their way
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            for (var type : MessageType.values()) {
+                while (server.received(type) == 0 && System.nanoTime() < deadline) {
+                    Thread.sleep(10);
+                }
+                assertEquals(1, server.received(type), type.name());
+            }
+        }
+    }
+
+    private static JacksonMessageCodec codec(String name) {
+        return "smile".equals(name) ? JacksonMessageCodec.smile() : JacksonMessageCodec.json();
+    }
+
+    private static KTimerMessage sample(MessageType type) {
+        return switch (type) {
+            case CLIENT_REGISTER -> MESSAGES.createClientRegister("client", "instance", "service", "1.0",
+                    new ClientMetadata("host", "127.0.0.1", 1234, "test"),
+                    List.of(MessageCodec.CAPABILITY_PREFIX + "smile", MessageCodec.CAPABILITY_PREFIX + "json"));
+            case CLIENT_UNREGISTER -> new KTimerMessage("1.0", type, "unregister-1", "client", 1L, null);
+            case TIMER_REGISTER -> MESSAGES.createTimerRegister("client", "timer-1", 1L, PAYLOAD, "x.Payload",
+                    TimerPriority.HIGH, Map.of("tenant", "a"));
+            case TIMER_REGISTER_BATCH -> MESSAGES.createTimerRegisterBatch("client", List.of(
+                    MESSAGES.createTimerRegisterData("timer-2", 60_000L, PAYLOAD, "x.Payload", TimerPriority.LOW, null),
+                    MESSAGES.createTimerRegisterData("timer-3", 60_000L, PAYLOAD, "x.Payload", null, Map.of("k", "v"))));
+            case TIMER_CANCEL -> MESSAGES.createTimerCancel("client", "timer-2", "no longer needed");
+            case TIMER_CALLBACK -> new KTimerMessage("1.0", type, "callback-1", "server", 1L,
+                    new TimerCallbackData("timer-1", 1L, 2L, 2, PAYLOAD, "x.Payload", TimerPriority.HIGH));
+            case HEARTBEAT -> {
+                var heartbeat = new HeartbeatData("healthy", 7, 3, 10L, 1000L);
+                heartbeat.setSystemInfo(new SystemInfo(0.5, 0.25, null));
+                yield MESSAGES.createHeartbeat("client", heartbeat);
+            }
+            case ACK -> MESSAGES.createAck("client", "callback-1", AckStatus.FAILED, "handler failed",
+                    Map.of("error", "boom"));
+            case ACK_BATCH -> MESSAGES.createAckBatch("client", List.of(
+                    MESSAGES.createAckData("callback-2", AckStatus.SUCCESS, null, null),
+                    MESSAGES.createAckData("callback-3", AckStatus.FAILED, "failed", Map.of("attempt", 2))));
+            case ERROR -> MESSAGES.createError("client", "m1", "BAD_FRAME", "could not decode",
+                    Map.of("length", 12), List.of("retry"));
+        };
+    }
+
+    private static void write(DataOutputStream out, MessageCodec codec, KTimerMessage message) throws IOException {
+        var frame = codec.encode(message);
+        out.writeInt(frame.length);
+        out.write(frame);
+        out.flush();
+    }
+
+    private static KTimerMessage read(DataInputStream in, MessageCodec codec) throws IOException {
+        var frame = new byte[in.readInt()];
+        in.readFully(frame);
+        return codec.decode(ByteBuffer.wrap(frame));
+    }
+}
@@ -0,0 +1,70 @@
+package space.jamestang.ktimer.message;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MessageIdGeneratorTest {
+
+    @Test
+    void sequentialIdsCountInBase36AfterThePrefix() {
+        var ids = MessageIdGenerator.sequential("client");
+        assertEquals("client_0", ids.nextId());
+        for (int i = 1; i < 35; i++) {
+            ids.nextId();
+        }
+        assertEquals("client_z", ids.nextId());
+        assertEquals("client_10", ids.nextId());
+    }
+
+    @Test
+    void uniqueGeneratorsWithTheSameNameStartDifferentSeries() {
+        var ids = new HashSet<String>();
+        for (int i = 0; i < 20; i++) {
+            ids.add(MessageIdGenerator.unique("client").nextId());
+        }
+        // Same millisecond and same random suffix for all 20 is as good as impossible
+        assertTrue(ids.size() > 1);
+        assertTrue(ids.stream().allMatch(id -> id.startsWith("client_")));
+    }
+
+    @Test
+    void noDuplicatesAcrossThreads() throws InterruptedException {
+        var generator = MessageIdGenerator.unique("client");
+        int threads = 8;
+        int idsPerThread = 20_000;
+        var start = new CountDownLatch(1);
+        var results = new ArrayList<String[]>();
+        var workers = new ArrayList<Thread>();
+        for (int t = 0; t < threads; t++) {
+            var generated = new String[idsPerThread];
+            results.add(generated);
+            workers.add(Thread.ofPlatform().start(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < generated.length; i++) {
+                    generated[i] = generator.nextId();
+                }
+            }));
+        }
+        start.countDown();
+        for (var worker : workers) {
+            worker.join();
+        }
+
+        var seen = new HashSet<String>();
+        for (var generated : results) {
+            for (var id : generated) {
+                assertTrue(seen.add(id), "Duplicate ID " + id);
+            }
+        }
+        assertEquals(threads * idsPerThread, seen.size());
+    }
+}
@@ -0,0 +1,348 @@
+package space.jamestang.ktimer.testing;
+
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+import space.jamestang.ktimer.message.*;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process stand-in for a KTimer server on a loopback port, speaking the same length-prefixed protocol.
+ * It acknowledges registrations, timers and cancellations, and fires each timer as a TIMER_CALLBACK on the
+ * connection that registered it once its delay has passed. Latency, dropped ACKs and disconnects can be
+ * injected to see how clients cope.
+ * <p>
+ * The intended fire time of a callback is sent as its {@code originalTimestamp}, the actual one as its
+ * {@code executeTimestamp}.
+ */
+@Slf4j
+public class FakeKTimerServer implements Closeable {
+
+    @Setter
+    private volatile long ackLatencyMillis = 0; // Delay before each ACK is sent
+    @Setter
+    private volatile double ackDropRate = 0; // Fraction of timer registrations and cancellations never acknowledged
+    @Setter
+    private volatile boolean fireTimers = true; // Send a TIMER_CALLBACK once a timer is due, false only acknowledges
+    @Setter
+    private volatile boolean acceptPreferredCodec = true; // Switch to the codec a client prefers, if known
+    @Setter
+    private volatile boolean acceptAckBatches = true; // Let clients acknowledge callbacks with ACK_BATCH frames
+
+    private final ServerSocket serverSocket;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(
+            Thread.ofPlatform().name("fake-ktimer-server-timer").daemon().factory());
+    private final Set<Peer> peers = ConcurrentHashMap.newKeySet();
+    private final Map<String, ScheduledFuture<?>> timers = new ConcurrentHashMap<>();
+    private final AtomicLong messageIds = new AtomicLong();
+
+    private final LongAdder registeredTimers = new LongAdder();
+    private final LongAdder cancelledTimers = new LongAdder();
+    private final LongAdder firedCallbacks = new LongAdder();
+    private final LongAdder droppedAcks = new LongAdder();
+    private final LongAdder acknowledgedCallbacks = new LongAdder();
+    private final LongAdder failedCallbacks = new LongAdder();
+    private final Map<MessageType, LongAdder> received = new EnumMap<>(MessageType.class);
+    private volatile HeartbeatData lastHeartbeat;
+
+    /**
+     * Starts listening on a free loopback port, see {@link #port()}.
+     */
+    public FakeKTimerServer() throws IOException {
+        this(0);
+    }
+
+    public FakeKTimerServer(int port) throws IOException {
+        for (var type : MessageType.values()) {
+            received.put(type, new LongAdder());
+        }
+        serverSocket = new ServerSocket(port, 128, InetAddress.getLoopbackAddress());
+        Thread.ofPlatform().name("fake-ktimer-server-accept").daemon().start(this::accept);
+    }
+
+    public int port() {
+        return serverSocket.getLocalPort();
+    }
+
+    public int connections() {
+        return peers.size();
+    }
+
+    /**
+     * Closes every client connection, as if the server restarted. Timers not yet fired are dropped.
+     */
+    public void disconnectAll() {
+        for (var peer : peers) {
+            peer.close();
+        }
+        timers.values().forEach(timer -> timer.cancel(false));
+        timers.clear();
+    }
+
+    public long registeredTimers() {
+        return registeredTimers.sum();
+    }
+
+    public long cancelledTimers() {
+        return cancelledTimers.sum();
+    }
+
+    public long firedCallbacks() {
+        return firedCallbacks.sum();
+    }
+
+    public long droppedAcks() {
+        return droppedAcks.sum();
+    }
+
+    public long acknowledgedCallbacks() {
+        return acknowledgedCallbacks.sum();
+    }
+
+    /**
+     * @return callback ACKs with a status other than SUCCESS, counted in {@link #acknowledgedCallbacks()} too
+     */
+    public long failedCallbacks() {
+        return failedCallbacks.sum();
+    }
+
+    /**
+     * @return the last heartbeat received from any client, null if none yet
+     */
+    public HeartbeatData lastHeartbeat() {
+        return lastHeartbeat;
+    }
+
+    /**
+     * @return frames of the given type decoded so far, from all clients
+     */
+    public long received(MessageType type) {
+        return received.get(type).sum();
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        disconnectAll();
+        scheduler.shutdownNow();
+    }
+
+    private void accept() {
+        while (!serverSocket.isClosed()) {
+            try {
+                var socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                var peer = new Peer(socket);
+                peers.add(peer);
+                Thread.ofPlatform().name("fake-ktimer-server-connection").daemon().start(peer::serve);
+            } catch (IOException e) {
+                if (!serverSocket.isClosed()) {
+                    log.warn("Failed to accept connection: {}", e.getMessage());
+                }
+            }
+        }
+    }
+
+    private void handle(Peer peer, KTimerMessage message) throws IOException {
+        received.get(message.getType()).increment();
+        switch (message.getType()) {
+            case CLIENT_REGISTER -> register(peer, message);
+            case TIMER_REGISTER -> {
+                var timer = (TimerRegisterData) message.getData();
+                schedule(peer, timer);
+                acknowledge(peer, ack(message.getMessageId()));
+            }
+            case TIMER_REGISTER_BATCH -> {
+                var batch = ((TimerRegisterBatchData) message.getData()).getTimers();
+                var ack = ack(message.getMessageId());
+                ack.setResults(batch.stream()
+                        .map(timer -> new TimerAckResult(timer.getTimerId(), AckStatus.SUCCESS, 0, "ok"))
+                        .toList());
+                batch.forEach(timer -> schedule(peer, timer));
+                acknowledge(peer, ack);
+            }
+            case TIMER_CANCEL -> {
+                var timer = timers.remove(((TimerCancelData) message.getData()).getTimerId());
+                if (timer != null && timer.cancel(false)) {
+                    cancelledTimers.increment();
+                }
+                acknowledge(peer, ack(message.getMessageId()));
+            }
+            case HEARTBEAT -> lastHeartbeat = (HeartbeatData) message.getData();
+            case ACK -> acknowledgeCallback((AckData) message.getData());
+            case ACK_BATCH -> ((AckBatchData) message.getData()).getAcks().forEach(this::acknowledgeCallback);
+            default -> log.trace("Ignoring {} from {}", message.getType(), message.getClientId());
+        }
+    }
+
+    private void acknowledgeCallback(AckData ack) {
+        acknowledgedCallbacks.increment();
+        if (ack.getStatus() != AckStatus.SUCCESS) {
+            failedCallbacks.increment();
+        }
+    }
+
+    private void register(Peer peer, KTimerMessage message) throws IOException {
+        var capabilities = ((ClientRegisterData) message.getData()).getCapabilities();
+        var details = new HashMap<String, Object>();
+        MessageCodec negotiated = null;
+        if (capabilities != null) {
+            // The first codec the client lists is the one it prefers
+            var preferred = capabilities.stream()
+                    .filter(capability -> capability.startsWith(MessageCodec.CAPABILITY_PREFIX))
+                    .map(capability -> capability.substring(MessageCodec.CAPABILITY_PREFIX.length()))
+                    .findFirst();
+            if (acceptPreferredCodec && preferred.isPresent()) {
+                negotiated = switch (preferred.get()) {
+                    case "json" -> JacksonMessageCodec.json();
+                    case "smile" -> JacksonMessageCodec.smile();
+                    default -> null;
+                };
+            }
+            if (acceptAckBatches && capabilities.contains(AckBatchData.CAPABILITY)) {
+                details.put(AckBatchData.ACK_DETAIL, true);
+            }
+            if (negotiated != null) {
+                details.put(MessageCodec.ACK_DETAIL, negotiated.name());
+            }
+        }
+        var ack = ack(message.getMessageId());
+        ack.setDetails(details);
+        // Answered in JSON, the client switches before decoding the next frame
+        peer.send(message(MessageType.ACK, ack), true);
+        if (negotiated != null) {
+            peer.codec = negotiated;
+        }
+    }
+
+    private void schedule(Peer peer, TimerRegisterData timer) {
+        registeredTimers.increment();
+        if (!fireTimers) {
+            return;
+        }
+        long dueAt = System.currentTimeMillis() + timer.getDelayMillis();
+        var timerId = timer.getTimerId();
+        var previous = timers.put(timerId, scheduler.schedule(
+                () -> fire(peer, timer, dueAt), timer.getDelayMillis(), TimeUnit.MILLISECONDS));
+        if (previous != null) {
+            previous.cancel(false);
+        }
+    }
+
+    private void fire(Peer peer, TimerRegisterData timer, long dueAt) {
+        timers.remove(timer.getTimerId());
+        var callback = new TimerCallbackData(timer.getTimerId(), dueAt, System.currentTimeMillis(), 1,
+                timer.getPayload(), timer.getClassInfo(), timer.getPriority());
+        try {
+            peer.send(message(MessageType.TIMER_CALLBACK, callback), true);
+            firedCallbacks.increment();
+        } catch (IOException e) {
+            log.debug("Failed to fire timer {}: {}", timer.getTimerId(), e.getMessage());
+        }
+    }
+
+    private KTimerMessage message(MessageType type, MessageData data) {
+        return new KTimerMessage("1.0", type, "server-" + messageIds.incrementAndGet(), "server",
+                System.currentTimeMillis(), data);
+    }
+
+    private AckData ack(String originalMessageId) {
+        return new AckData(originalMessageId, AckStatus.SUCCESS, 0, "ok", Map.of(), null);
+    }
+
+    /**
+     * Sends an ACK after the injected latency, unless it's dropped.
+     */
+    private void acknowledge(Peer peer, AckData ack) throws IOException {
+        if (ackDropRate > 0 && ThreadLocalRandom.current().nextDouble() < ackDropRate) {
+            droppedAcks.increment();
+            return;
+        }
+        var message = message(MessageType.ACK, ack);
+        if (ackLatencyMillis <= 0) {
+            // Flushed by the read loop once the client has nothing more in flight
+            peer.send(message, false);
+            return;
+        }
+        scheduler.schedule(() -> {
+            try {
+                peer.send(message, true);
+            } catch (IOException e) {
+                log.debug("Failed to send delayed ACK: {}", e.getMessage());
+            }
+        }, ackLatencyMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * One client connection. Frames are read on its own thread, and written by it or the timer thread.
+     */
+    private class Peer {
+
+        private final Socket socket;
+        private final DataOutputStream out;
+        private volatile MessageCodec codec = JacksonMessageCodec.json();
+
+        private Peer(Socket socket) throws IOException {
+            this.socket = socket;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 64 * 1024));
+        }
+
+        private void serve() {
+            try (socket) {
+                var in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 64 * 1024));
+                while (true) {
+                    var frame = new byte[in.readInt()];
+                    in.readFully(frame);
+                    handle(this, codec.decode(ByteBuffer.wrap(frame)));
+                    // Replies to a burst of requests go out in a few writes
+                    if (in.available() == 0) {
+                        flush();
+                    }
+                }
+            } catch (IOException e) {
+                log.debug("Connection closed: {}", e.getMessage());
+            } finally {
+                peers.remove(this);
+            }
+        }
+
+        private synchronized void send(KTimerMessage message, boolean flush) throws IOException {
+            var encoded = codec.encode(message);
+            out.writeInt(encoded.length);
+            out.write(encoded);
+            if (flush) {
+                out.flush();
+            }
+        }
+
+        private synchronized void flush() throws IOException {
+            out.flush();
+        }
+
+        private void close() {
+            try {
+                socket.close();
+            } catch (IOException e) {
+                log.debug("Failed to close connection: {}", e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package space.jamestang.ktimer.testing;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import space.jamestang.ktimer.ConnectionState;
+import space.jamestang.ktimer.KTimerClient;
+import space.jamestang.ktimer.TestPayload;
+import space.jamestang.ktimer.message.JacksonMessageCodec;
+import space.jamestang.ktimer.message.enums.AckStatus;
+import space.jamestang.ktimer.message.enums.MessageType;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FakeKTimerServerTest {
+
+    private final LinkedBlockingQueue<String> handled = new LinkedBlockingQueue<>();
+    private FakeKTimerServer server;
+    private KTimerClient client;
+
+    @BeforeEach
+    void start() throws Exception {
+        server = new FakeKTimerServer();
+        client = new KTimerClient("127.0.0.1", server.port(), "fake", "fake-0", "fake-server-test");
+        client.setReconnectInitialDelayMillis(20L);
+        client.registerCallbackHandler(TestPayload.class, (payload, raw) -> handled.add(payload.value));
+    }
+
+    @AfterEach
+    void stop() throws Exception {
+        client.shutdown();
+        server.close();
+    }
+
+    private static void await(BooleanSupplier condition, String description) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, description);
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void firesDueTimersAndCountsTheirAcks() throws Exception {
+        client.startAsync();
+        assertEquals(1, server.connections());
+        client.scheduleTaskAsync("timer-1", new TestPayload("fired"), 20L, null, null).get(5, TimeUnit.SECONDS);
+
+        assertEquals("fired", handled.poll(5, TimeUnit.SECONDS));
+        await(() -> server.acknowledgedCallbacks() == 1, "callback not acknowledged");
+        assertEquals(1, server.registeredTimers());
+        assertEquals(1, server.firedCallbacks());
+        assertEquals(0, server.failedCallbacks());
+        assertEquals(1, server.received(MessageType.TIMER_REGISTER));
+    }
+
+    @Test
+    void onlyAcknowledgesWhenNotFiringTimers() throws Exception {
+        server.setFireTimers(false);
+        client.startAsync();
+        client.scheduleTaskAsync("timer-1", new TestPayload("v"), 1L, null, null).get(5, TimeUnit.SECONDS);
+
+        assertNull(handled.poll(200, TimeUnit.MILLISECONDS));
+        assertEquals(1, server.registeredTimers());
+        assertEquals(0, server.firedCallbacks());
+    }
+
+    @Test
+    void delaysAcksByTheAckLatency() throws Exception {
+        server.setAckLatencyMillis(150);
+        client.startAsync();
+        long start = System.nanoTime();
+        client.scheduleTaskAsync("timer-1", new TestPayload("v"), 60_000L, null, null).get(5, TimeUnit.SECONDS);
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(150));
+    }
+
+    @Test
+    void dropsAcksAtTheAckDropRate() throws Exception {
+        server.setAckDropRate(1);
+        client.startAsync();
+        var ack = client.scheduleTaskAsync("timer-1", new TestPayload("v"), 60_000L, null, null);
+
+        await(() -> server.droppedAcks() == 1, "ACK not dropped");
+        assertFalse(ack.isDone());
+    }
+
+    @Test
+    void disconnectAllDropsTheConnectionsAndPendingTimers() throws Exception {
+        client.startAsync();
+        client.scheduleTaskAsync("timer-1", new TestPayload("dropped"), 300L, null, null).get(5, TimeUnit.SECONDS);
+        server.disconnectAll();
+
+        await(() -> client.getConnectionState() == ConnectionState.CONNECTED && server.connections() >= 1,
+                "client did not reconnect");
+        assertNull(handled.poll(500, TimeUnit.MILLISECONDS));
+        assertEquals(0, server.firedCallbacks());
+    }
+
+    @Test
+    void servesClientsWhosePreferredCodecItDeclines() throws Exception {
+        server.setAcceptPreferredCodec(false);
+        client.setPreferredCodec(JacksonMessageCodec.smile());
+        client.startAsync();
+
+        var ack = client.scheduleTaskAsync("timer-1", new TestPayload("json"), 20L, null, null).get(5, TimeUnit.SECONDS);
+        assertEquals(AckStatus.SUCCESS, ack.getStatus());
+        assertEquals("json", handled.poll(5, TimeUnit.SECONDS));
+    }
+}
@@ -0,0 +1,207 @@
+package space.jamestang.ktimer.testing;
+
+import space.jamestang.ktimer.KTimerClient;
+import space.jamestang.ktimer.message.JacksonMessageCodec;
+
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Soak test against a {@link FakeKTimerServer} in the same JVM: N clients each schedule M timers per second
+ * for a while, and every second the throughput, callback lateness and heap usage are printed.
+ * <p>
+ * Usage: {@code LoadGenerator [--option value]...}, options and defaults:
+ * <pre>
+ * --clients 4          clients, each with its own connection
+ * --rate 1000          timers scheduled per second per client
+ * --duration 30        seconds of scheduling
+ * --delay 1000         delay of every timer in milliseconds
+ * --payload 128        payload size in bytes
+ * --ack-latency 0      server delay before each ACK in milliseconds
+ * --ack-drop 0         fraction of requests the server never acknowledges
+ * --disconnect 0       seconds between server-side disconnects of all clients, 0 never
+ * --codec json         json or smile
+ * </pre>
+ * Lateness is measured from the time a timer was due to the time its handler ran, so it covers the server,
+ * the network and queueing in the client.
+ */
+public class LoadGenerator {
+
+    // Lateness buckets of one millisecond, later callbacks fall in the last one
+    private static final int MAX_LATENESS_MILLIS = 10_000;
+
+    public static void main(String[] args) throws Exception {
+        var options = options(args);
+        int clientCount = Integer.parseInt(options.getOrDefault("clients", "4"));
+        int rate = Integer.parseInt(options.getOrDefault("rate", "1000"));
+        int duration = Integer.parseInt(options.getOrDefault("duration", "30"));
+        long delay = Long.parseLong(options.getOrDefault("delay", "1000"));
+        int payloadSize = Integer.parseInt(options.getOrDefault("payload", "128"));
+        int disconnectSeconds = Integer.parseInt(options.getOrDefault("disconnect", "0"));
+
+        var server = new FakeKTimerServer();
+        server.setAckLatencyMillis(Long.parseLong(options.getOrDefault("ack-latency", "0")));
+        server.setAckDropRate(Double.parseDouble(options.getOrDefault("ack-drop", "0")));
+
+        var stats = new Stats();
+        var clients = new ArrayList<KTimerClient>();
+        for (int i = 0; i < clientCount; i++) {
+            var client = new KTimerClient("127.0.0.1", server.port(), "load", "load-" + i, "load-generator");
+            if ("smile".equals(options.get("codec"))) {
+                client.setPreferredCodec(JacksonMessageCodec.smile());
+            }
+            client.registerCallbackHandler(LoadPayload.class, (payload, raw) -> stats.callback(payload));
+            client.startAsync();
+            clients.add(client);
+        }
+        System.out.printf("%d clients x %d timers/s for %ds, delay %dms, payload %d bytes%n",
+                clientCount, rate, duration, delay, payloadSize);
+
+        var filler = "x".repeat(payloadSize);
+        var pacer = Executors.newSingleThreadScheduledExecutor();
+        long start = System.nanoTime();
+        var scheduled = new long[clientCount];
+        pacer.scheduleAtFixedRate(() -> {
+            // Catches up to where the rate says each client should be, so a slow tick doesn't lower the rate
+            long due = (System.nanoTime() - start) * rate / TimeUnit.SECONDS.toNanos(1);
+            for (int i = 0; i < clientCount; i++) {
+                var client = clients.get(i);
+                for (; scheduled[i] < due; scheduled[i]++) {
+                    var payload = new LoadPayload(System.currentTimeMillis() + delay, filler);
+                    stats.sent.increment();
+                    try {
+                        client.scheduleTaskAsync("load-" + i + "-" + scheduled[i], payload, delay, null, null)
+                                .whenComplete((ack, error) -> (error == null ? stats.acked : stats.failed).increment());
+                    } catch (RuntimeException e) {
+                        stats.failed.increment();
+                    }
+                }
+            }
+        }, 0, 10, TimeUnit.MILLISECONDS);
+
+        System.out.println("  time    sent/s   acked/s  failed/s    fired/s  late p50  late p99  late max   heap MB  gc ms");
+        long lastGcMillis = gcMillis();
+        for (int second = 1; second <= duration + delay / 1000 + 2; second++) {
+            Thread.sleep(1000);
+            if (second == duration) {
+                pacer.shutdownNow();
+            }
+            if (disconnectSeconds > 0 && second < duration && second % disconnectSeconds == 0) {
+                System.out.println("  -- server disconnects all clients");
+                server.disconnectAll();
+            }
+            long gc = gcMillis();
+            stats.print(second, gc - lastGcMillis);
+            lastGcMillis = gc;
+        }
+
+        for (var client : clients) {
+            client.shutdown();
+        }
+        server.close();
+        System.out.printf("Total: %d sent, %d acked, %d failed, %d fired by the server, %d callbacks handled, %d ACKs dropped%n",
+                stats.sent.sum(), stats.acked.sum(), stats.failed.sum(), server.firedCallbacks(),
+                stats.handledTotal.sum(), server.droppedAcks());
+        System.exit(0);
+    }
+
+    private static Map<String, String> options(String[] args) {
+        var options = new HashMap<String, String>();
+        for (int i = 0; i + 1 < args.length; i += 2) {
+            if (!args[i].startsWith("--")) {
+                throw new IllegalArgumentException("Expected an option, got: " + args[i]);
+            }
+            options.put(args[i].substring(2), args[i + 1]);
+        }
+        return options;
+    }
+
+    private static long gcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Timer payload carrying the time it's due, so lateness needs no bookkeeping per timer.
+     */
+    public static class LoadPayload {
+
+        public long dueAt;
+        public String filler;
+
+        public LoadPayload() {
+        }
+
+        public LoadPayload(long dueAt, String filler) {
+            this.dueAt = dueAt;
+            this.filler = filler;
+        }
+    }
+
+    /**
+     * Counters of the current second, reset when printed, except the totals.
+     */
+    private static class Stats {
+
+        private final LongAdder sent = new LongAdder();
+        private final LongAdder acked = new LongAdder();
+        private final LongAdder failed = new LongAdder();
+        private final LongAdder handled = new LongAdder();
+        private final LongAdder handledTotal = new LongAdder();
+        private final AtomicLongArray lateness = new AtomicLongArray(MAX_LATENESS_MILLIS + 1);
+        private long lastSent;
+        private long lastAcked;
+        private long lastFailed;
+
+        private void callback(LoadPayload payload) {
+            long late = Math.max(0, System.currentTimeMillis() - payload.dueAt);
+            lateness.incrementAndGet((int) Math.min(late, MAX_LATENESS_MILLIS));
+            handled.increment();
+            handledTotal.increment();
+        }
+
+        private void print(int second, long gcMillis) {
+            long sentNow = sent.sum();
+            long ackedNow = acked.sum();
+            long failedNow = failed.sum();
+            long fired = handled.sumThenReset();
+            var counts = new long[lateness.length()];
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = lateness.getAndSet(i, 0);
+            }
+            var runtime = Runtime.getRuntime();
+            System.out.printf("%5ds %9d %9d %9d %10d %8s %9s %9s %9d %6d%n", second,
+                    sentNow - lastSent, ackedNow - lastAcked, failedNow - lastFailed, fired,
+                    percentile(counts, fired, 0.5), percentile(counts, fired, 0.99), percentile(counts, fired, 1.0),
+                    (runtime.totalMemory() - runtime.freeMemory()) / (1024 * 1024), gcMillis);
+            lastSent = sentNow;
+            lastAcked = ackedNow;
+            lastFailed = failedNow;
+        }
+
+        private static String percentile(long[] counts, long total, double fraction) {
+            if (total == 0) {
+                return "-";
+            }
+            long rank = Math.max(1, (long) Math.ceil(total * fraction));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return i == MAX_LATENESS_MILLIS ? ">" + i + "ms" : i + "ms";
+                }
+            }
+            return "-";
+        }
+    }
+}
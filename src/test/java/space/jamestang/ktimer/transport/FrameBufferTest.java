@@ -0,0 +1,72 @@
+package space.jamestang.ktimer.transport;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class FrameBufferTest {
+
+    @Test
+    void framesThatFitReuseTheSameArray() throws IOException {
+        var buffer = new FrameBuffer(1024, 1 << 20);
+        var first = buffer.acquire(100);
+        assertSame(first, buffer.acquire(1024));
+        assertSame(first, buffer.acquire(0));
+        assertEquals(1024, buffer.capacity());
+    }
+
+    @Test
+    void growsByPowersOfTwoToFitTheFrame() throws IOException {
+        var buffer = new FrameBuffer(1024, 1 << 20);
+        assertTrue(buffer.acquire(5000).length >= 5000);
+        assertEquals(8192, buffer.capacity());
+    }
+
+    @Test
+    void growthIsCappedAtTheMaxFrameLength() throws IOException {
+        var buffer = new FrameBuffer(1024, 3000);
+        buffer.acquire(3000);
+        assertEquals(3004, buffer.capacity());
+    }
+
+    @Test
+    void shrinksByHalfAfterEnoughSmallFrames() throws IOException {
+        var buffer = new FrameBuffer(1024, 1 << 20);
+        buffer.acquire(16 * 1024);
+        assertEquals(16 * 1024, buffer.capacity());
+
+        for (int i = 0; i < FrameBuffer.SHRINK_AFTER - 1; i++) {
+            buffer.acquire(100);
+        }
+        assertEquals(16 * 1024, buffer.capacity());
+        buffer.acquire(100);
+        assertEquals(8 * 1024, buffer.capacity());
+
+        for (int i = 0; i < 10 * FrameBuffer.SHRINK_AFTER; i++) {
+            buffer.acquire(100);
+        }
+        assertEquals(1024, buffer.capacity());
+    }
+
+    @Test
+    void aLargerFrameRestartsTheShrinkCount() throws IOException {
+        var buffer = new FrameBuffer(1024, 1 << 20);
+        buffer.acquire(16 * 1024);
+        for (int i = 0; i < FrameBuffer.SHRINK_AFTER - 1; i++) {
+            buffer.acquire(100);
+        }
+        buffer.acquire(10 * 1024);
+        buffer.acquire(100);
+        assertEquals(16 * 1024, buffer.capacity());
+    }
+
+    @Test
+    void rejectsNegativeAndOversizedLengths() {
+        var buffer = new FrameBuffer(1024, 4096);
+        assertThrows(IOException.class, () -> buffer.acquire(-1));
+        assertThrows(IOException.class, () -> buffer.acquire(4097));
+        assertEquals(1024, buffer.capacity());
+    }
+}
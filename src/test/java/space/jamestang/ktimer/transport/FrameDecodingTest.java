@@ -0,0 +1,117 @@
+package space.jamestang.ktimer.transport;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Inbound framing of both transports, which decode from reused buffers.
+ */
+class FrameDecodingTest {
+
+    private static final NioEventLoop LOOP = new NioEventLoop("frame-decoding-test");
+    private static final int MAX_FRAME_LENGTH = 64 * 1024;
+
+    @AfterAll
+    static void closeLoop() {
+        LOOP.close();
+    }
+
+    private static Transport transport(String kind) {
+        var options = new TransportOptions("decoding-" + kind, 1024, 64, 0, MAX_FRAME_LENGTH);
+        return kind.equals("nio") ? new NioTransport(LOOP, options) : new BlockingSocketTransport(options);
+    }
+
+    private record Listener(LinkedBlockingQueue<String> frames, CompletableFuture<Throwable> closed) implements FrameListener {
+
+        Listener() {
+            this(new LinkedBlockingQueue<>(), new CompletableFuture<>());
+        }
+
+        @Override
+        public void onFrame(ByteBuffer frame) {
+            frames.add(StandardCharsets.UTF_8.decode(frame).toString());
+        }
+
+        @Override
+        public void onClosed(Throwable cause) {
+            closed.complete(cause);
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"nio", "blocking"})
+    void framesSplitAcrossReadsAndOfChangingSizesDecodeIntact(String kind) throws Exception {
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            var transport = transport(kind);
+            var listener = new Listener();
+            transport.connect("127.0.0.1", server.getLocalPort(), listener);
+            try (var peer = server.accept()) {
+                peer.setTcpNoDelay(true);
+                var out = peer.getOutputStream();
+                // Written a few bytes at a time, so length prefixes and bodies are split across reads
+                var frames = new String[]{"a", "b".repeat(40_000), "c".repeat(10), "d".repeat(60_000), "e"};
+                for (var text : frames) {
+                    var bytes = encode(text);
+                    for (int offset = 0; offset < bytes.length; offset += 3000) {
+                        out.write(bytes, offset, Math.min(3000, bytes.length - offset));
+                        out.flush();
+                    }
+                }
+                for (var text : frames) {
+                    assertEquals(text, listener.frames.poll(5, TimeUnit.SECONDS));
+                }
+                // Many small frames after the large ones, decoded from a shrinking buffer
+                for (int i = 0; i < 200; i++) {
+                    out.write(encode("small-" + i));
+                }
+                out.flush();
+                for (int i = 0; i < 200; i++) {
+                    assertEquals("small-" + i, listener.frames.poll(5, TimeUnit.SECONDS));
+                }
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @ParameterizedTest
+    @ValueSource(strings = {"nio", "blocking"})
+    void oversizedLengthPrefixClosesTheConnection(String kind) throws Exception {
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            var transport = transport(kind);
+            var listener = new Listener();
+            transport.connect("127.0.0.1", server.getLocalPort(), listener);
+            try (var peer = server.accept()) {
+                var out = new DataOutputStream(peer.getOutputStream());
+                out.writeInt(MAX_FRAME_LENGTH + 1);
+                out.flush();
+
+                var cause = listener.closed.get(5, TimeUnit.SECONDS);
+                assertInstanceOf(IOException.class, cause);
+                assertTrue(cause.getMessage().contains("exceeds the max frame length"), cause.getMessage());
+                assertTrue(listener.frames.isEmpty());
+                assertFalse(transport.isOpen());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    private static byte[] encode(String text) {
+        var body = text.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(4 + body.length).putInt(body.length).put(body).array();
+    }
+}
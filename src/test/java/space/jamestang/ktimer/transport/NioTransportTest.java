@@ -0,0 +1,185 @@
+package space.jamestang.ktimer.transport;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioTransportTest {
+
+    private final NioEventLoop loop = new NioEventLoop("nio-transport-test");
+
+    @AfterEach
+    void closeLoop() {
+        loop.close();
+    }
+
+    @Test
+    void framesSentFromTheListenerAreWrittenWithoutFurtherTraffic() throws Exception {
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            var transport = new NioTransport(loop, options());
+            transport.connect("127.0.0.1", server.getLocalPort(), new FrameListener() {
+                @Override
+                public void onFrame(ByteBuffer frame) {
+                    try {
+                        // Runs on the loop thread, like ACK completions and callback ACKs do
+                        transport.send(("re:" + StandardCharsets.UTF_8.decode(frame)).getBytes(StandardCharsets.UTF_8));
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                @Override
+                public void onClosed(Throwable cause) {
+                }
+            });
+            try (Socket peer = server.accept()) {
+                peer.setSoTimeout(5000);
+                var out = new DataOutputStream(peer.getOutputStream());
+                var in = new DataInputStream(peer.getInputStream());
+                writeFrame(out, "ping");
+                // Nothing else is sent, the reply must not wait for another I/O event
+                assertEquals("re:ping", readFrame(in));
+                writeFrame(out, "again");
+                assertEquals("re:again", readFrame(in));
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    void framesArriveInOrderAndFramesLargerThanTheBufferAreSplit() throws Exception {
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            var received = new java.util.concurrent.LinkedBlockingQueue<String>();
+            var closed = new CountDownLatch(1);
+            var transport = new NioTransport(loop, options());
+            transport.connect("127.0.0.1", server.getLocalPort(), new FrameListener() {
+                @Override
+                public void onFrame(ByteBuffer frame) {
+                    received.add(StandardCharsets.UTF_8.decode(frame).toString());
+                }
+
+                @Override
+                public void onClosed(Throwable cause) {
+                    closed.countDown();
+                }
+            });
+            try (Socket peer = server.accept()) {
+                var out = new DataOutputStream(peer.getOutputStream());
+                var large = "x".repeat(200 * 1024);
+                writeFrame(out, "first");
+                writeFrame(out, large);
+                writeFrame(out, "last");
+                assertEquals("first", received.poll(5, TimeUnit.SECONDS));
+                assertEquals(large, received.poll(5, TimeUnit.SECONDS));
+                assertEquals("last", received.poll(5, TimeUnit.SECONDS));
+
+                var in = new DataInputStream(peer.getInputStream());
+                transport.send(large.getBytes(StandardCharsets.UTF_8));
+                for (int i = 0; i < 100; i++) {
+                    transport.send(("frame-" + i).getBytes(StandardCharsets.UTF_8));
+                }
+                peer.setSoTimeout(5000);
+                assertEquals(large, readFrame(in));
+                for (int i = 0; i < 100; i++) {
+                    assertEquals("frame-" + i, readFrame(in));
+                }
+            }
+            // The peer closed the connection
+            assertTrue(closed.await(5, TimeUnit.SECONDS));
+            assertFalse(transport.isOpen());
+        }
+    }
+
+    @Test
+    void framesSentFromTheListenerWaitWhileTheWriteQueueIsFull() throws Exception {
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            var transport = new NioTransport(loop, new TransportOptions("test", 1, 64, 0, 1024 * 1024));
+            transport.connect("127.0.0.1", server.getLocalPort(), new FrameListener() {
+                @Override
+                public void onFrame(ByteBuffer frame) {
+                    var text = StandardCharsets.UTF_8.decode(frame).toString();
+                    try {
+                        // More than the queue holds, the loop thread can't wait for room
+                        for (int i = 0; i < 50; i++) {
+                            transport.send((text + "-" + i).getBytes(StandardCharsets.UTF_8));
+                        }
+                    } catch (IOException e) {
+                        throw new RuntimeException(e);
+                    }
+                }
+
+                @Override
+                public void onClosed(Throwable cause) {
+                }
+            });
+            try (Socket peer = server.accept()) {
+                peer.setSoTimeout(5000);
+                var out = new DataOutputStream(peer.getOutputStream());
+                var in = new DataInputStream(peer.getInputStream());
+                for (var request : new String[]{"ping", "again"}) {
+                    writeFrame(out, request);
+                    for (int i = 0; i < 50; i++) {
+                        assertEquals(request + "-" + i, readFrame(in));
+                    }
+                }
+                assertTrue(transport.isOpen());
+            } finally {
+                transport.close();
+            }
+        }
+    }
+
+    @Test
+    void connectFailsWhenNothingListens() throws Exception {
+        int port;
+        try (var server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            port = server.getLocalPort();
+        }
+        var closed = new CountDownLatch(1);
+        var transport = new NioTransport(loop, options());
+
+        assertThrows(IOException.class, () -> transport.connect("127.0.0.1", port, new FrameListener() {
+            @Override
+            public void onFrame(ByteBuffer frame) {
+            }
+
+            @Override
+            public void onClosed(Throwable cause) {
+                closed.countDown();
+            }
+        }));
+        assertFalse(transport.isOpen());
+        // connect threw, the listener is not told as well
+        assertFalse(closed.await(100, TimeUnit.MILLISECONDS));
+    }
+
+    private static TransportOptions options() {
+        return new TransportOptions("test", 1024, 64, 0, 1024 * 1024);
+    }
+
+    private static void writeFrame(DataOutputStream out, String text) throws IOException {
+        var bytes = text.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+        out.flush();
+    }
+
+    private static String readFrame(DataInputStream in) throws IOException {
+        var bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}